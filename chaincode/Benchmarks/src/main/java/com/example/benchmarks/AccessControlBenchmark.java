@@ -0,0 +1,98 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import main.java.com.example.recordrelationshipcontract.Entity;
+import main.java.com.example.recordrelationshipcontract.Event;
+import main.java.com.example.recordrelationshipcontract.RRCInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the access checks and changes of an RRC with aclSize clients
+ * besides the creator
+ *
+ * @author karthik
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessControlBenchmark {
+
+    @Param({"4", "64", "512", "1000", "10000"})
+    public int aclSize; // number of clients granted access besides the creator
+
+    private RRCInstance rrc;
+    private String lastClient; // client granted access last
+    private String unknownClient; // client without access
+    private String newClient; // client granted and revoked by the benchmark
+
+    /**
+     * Build the RRC
+     */
+    @Setup
+    public void setup() {
+        this.rrc = new RRCInstance(RRCInstanceBenchmark.id(0), "Org1MSP", 10);
+        for (int i = 1; i <= this.aclSize; i++) {
+            this.rrc.grant(RRCInstanceBenchmark.id(i), Entity.CLIENT, Event.READ);
+        }
+        this.lastClient = RRCInstanceBenchmark.id(this.aclSize);
+        this.unknownClient = RRCInstanceBenchmark.id(this.aclSize + 1);
+        this.newClient = RRCInstanceBenchmark.id(this.aclSize + 2);
+    }
+
+    /**
+     * Check access of a client in the ACL
+     *
+     * @return True
+     */
+    @Benchmark
+    public boolean hasAccessGranted() {
+        return this.rrc.hasAccess(this.lastClient, Entity.CLIENT, Event.READ);
+    }
+
+    /**
+     * Check access of a client that is not in the ACL
+     *
+     * @return False
+     */
+    @Benchmark
+    public boolean hasAccessDenied() {
+        return this.rrc.hasAccess(this.unknownClient, Entity.CLIENT, Event.WRITE);
+    }
+
+    /**
+     * Grant access to a new client and revoke it again, leaving the ACL
+     * unchanged
+     *
+     * @return RRC
+     */
+    @Benchmark
+    public RRCInstance grantRevoke() {
+        this.rrc.grant(this.newClient, Entity.CLIENT, Event.WRITE);
+        this.rrc.revoke(this.newClient, Entity.CLIENT, Event.WRITE);
+        return this.rrc;
+    }
+
+    /**
+     * Get the creator of the RRC
+     *
+     * @return Creator id
+     */
+    @Benchmark
+    public String getCreator() {
+        return this.rrc.getCreator();
+    }
+}
@@ -0,0 +1,211 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that every benchmark reports
+ * its allocation rate next to its time, and compares the results with a
+ * baseline file. A benchmark regresses if its time or its allocation per
+ * operation exceeds the baseline by more than the threshold (and, for the
+ * time, by more than the combined error of both measurements). The process
+ * exits with status 1 on regressions.
+ *
+ * Arguments given as key=value are handled by the runner: baseline (path of
+ * the baseline file, default baseline.json), update (true to write the
+ * results as the new baseline) and threshold (percent, default 10). All other
+ * arguments are passed to JMH, e.g. a benchmark name pattern or -f 3. The raw
+ * JMH results are written to jmh-result.json. Unless update=true is given,
+ * the baseline file has to exist; otherwise the runner exits with status 2
+ * before running the benchmarks.
+ *
+ * @author karthik
+ */
+public class BenchmarkRunner {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String ALLOCATION = "gc.alloc.rate.norm"; // secondary result of the GC profiler (allocated bytes per operation)
+
+    /**
+     * Run the benchmarks and compare them with the baseline
+     *
+     * @param args Runner arguments as key=value and JMH arguments
+     * @throws Exception if the benchmarks cannot be run or the baseline
+     * cannot be read or written
+     */
+    public static void main(String[] args) throws Exception {
+        Path baselinePath = Paths.get("baseline.json");
+        boolean update = false;
+        double threshold = 10;
+        List<String> jmhArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("baseline=")) {
+                baselinePath = Paths.get(arg.substring("baseline=".length()));
+            } else if (arg.startsWith("update=")) {
+                update = Boolean.parseBoolean(arg.substring("update=".length()));
+            } else if (arg.startsWith("threshold=")) {
+                threshold = Double.parseDouble(arg.substring("threshold=".length()));
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+        if ((!update) && (!Files.exists(baselinePath))) {
+            System.err.println(String.format("Baseline %s does not exist. Run with update=true to write it", baselinePath));
+            System.exit(2);
+        }
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result.json")
+            .build();
+        Map<String, Measurement> results = getMeasurements(new Runner(options).run());
+        if (update) {
+            try (Writer writer = Files.newBufferedWriter(baselinePath, StandardCharsets.UTF_8)) {
+                GSON.toJson(results, writer);
+            }
+            System.out.println(String.format("Wrote baseline of %d benchmarks to %s", results.size(), baselinePath));
+            return;
+        }
+        Map<String, Measurement> baseline;
+        try (Reader reader = Files.newBufferedReader(baselinePath, StandardCharsets.UTF_8)) {
+            baseline = GSON.fromJson(reader, new TypeToken<TreeMap<String, Measurement>>() {}.getType());
+        }
+        if (compare(baseline, results, threshold / 100) > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Get the measurements of the benchmark runs
+     *
+     * @param runs JMH results
+     * @return Measurements by benchmark name and parameters
+     */
+    private static Map<String, Measurement> getMeasurements(Collection<RunResult> runs) {
+        Map<String, Measurement> measurements = new TreeMap<>();
+        for (RunResult run : runs) {
+            BenchmarkParams params = run.getParams();
+            StringBuilder key = new StringBuilder(params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.', params.getBenchmark().lastIndexOf('.') - 1) + 1));
+            String separator = ":";
+            for (String param : params.getParamsKeys()) {
+                key.append(separator).append(param).append('=').append(params.getParam(param));
+                separator = ",";
+            }
+            Result primary = run.getPrimaryResult();
+            Double allocation = null;
+            for (Map.Entry<String, Result> secondary : run.getSecondaryResults().entrySet()) {
+                // the label is prefixed with a middle dot in some JMH versions
+                if (secondary.getKey().endsWith(ALLOCATION)) {
+                    allocation = secondary.getValue().getScore();
+                }
+            }
+            measurements.put(key.toString(), new Measurement(primary.getScore(), primary.getScoreError(), primary.getScoreUnit(), allocation));
+        }
+        return measurements;
+    }
+
+    /**
+     * Print the comparison of the results with the baseline
+     *
+     * @param baseline Baseline measurements
+     * @param results Current measurements
+     * @param threshold Relative threshold (e.g. 0.1 for 10 %)
+     * @return Number of regressions
+     */
+    private static int compare(Map<String, Measurement> baseline, Map<String, Measurement> results, double threshold) {
+        int regressions = 0;
+        System.out.println(String.format("%-72s %14s %14s %8s %12s %12s %8s", "benchmark", "baseline", "current", "change", "base B/op", "B/op", "change"));
+        // scores are in the unit of each benchmark (ns/op or us/op)
+        for (Map.Entry<String, Measurement> entry : results.entrySet()) {
+            Measurement current = entry.getValue();
+            Measurement base = baseline.get(entry.getKey());
+            if ((base == null) || (!base.unit.equals(current.unit))) {
+                System.out.println(String.format("%-72s %14s %14.3f %8s   (not in baseline)", entry.getKey(), "-", current.score, "-"));
+                continue;
+            }
+            boolean slower = (current.score > base.score * (1 + threshold)) && (current.score - base.score > current.error + base.error);
+            boolean allocates = (base.allocation != null) && (current.allocation != null) && (current.allocation > base.allocation * (1 + threshold)) && (current.allocation - base.allocation >= 8);
+            System.out.println(String.format("%-72s %14.3f %14.3f %7.1f%% %12s %12s %8s%s", entry.getKey(), base.score, current.score, 100 * (current.score / base.score - 1),
+                format(base.allocation), format(current.allocation), change(base.allocation, current.allocation), (slower || allocates) ? "  REGRESSION" : ""));
+            if ((slower) || (allocates)) {
+                regressions++;
+            }
+        }
+        System.out.println(String.format("%d regressions (threshold %.0f%%)", regressions, threshold * 100));
+        return regressions;
+    }
+
+    /**
+     * Returns formatted allocation
+     *
+     * @param allocation Bytes per operation or null
+     * @return Formatted allocation
+     */
+    private static String format(Double allocation) {
+        return allocation == null ? "-" : String.format("%.1f", allocation);
+    }
+
+    /**
+     * Returns formatted relative change of the allocation
+     *
+     * @param base Baseline bytes per operation or null
+     * @param current Current bytes per operation or null
+     * @return Formatted change
+     */
+    private static String change(Double base, Double current) {
+        if ((base == null) || (current == null) || (base == 0)) {
+            return "-";
+        }
+        return String.format("%.1f%%", 100 * (current / base - 1));
+    }
+
+    /**
+     * Class to represent the measurement of one benchmark in the baseline
+     */
+    static class Measurement {
+
+        private final double score; // average time per operation
+        private final double error; // error of the score (99.9 % confidence interval)
+        private final String unit; // unit of the score
+        private final Double allocation; // allocated bytes per operation (null if not measured)
+
+        /**
+         * Constructor for Measurement object
+         *
+         * @param score Average time per operation
+         * @param error Error of the score
+         * @param unit Unit of the score
+         * @param allocation Allocated bytes per operation or null
+         */
+        Measurement(double score, double error, String unit, Double allocation) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.allocation = allocation;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import main.java.com.example.harness.Identity;
+import main.java.com.example.harness.InMemoryLedger;
+import main.java.com.example.harness.Transaction;
+import main.java.com.example.incentivemechanism.IncentiveMechanism;
+import main.java.com.example.recordrelationshipcontract.RecordRelationshipContract;
+import main.java.com.example.summarycontract.SummaryContract;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of contract functions simulated on the in-memory ledger: the
+ * duplicate provider check of SummaryContract.add, the lookup of the user of
+ * an RRC in SummaryContract.update and the candidate selection of
+ * IncentiveMechanism.selectEndorser. Simulations are not committed, so every
+ * invocation runs against the same state.
+ *
+ * @author karthik
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContractBenchmark {
+
+    private static final Instant TIMESTAMP = Instant.parse("2021-01-01T00:00:00Z");
+    private static final String USER = "00000000001"; // user of the Summary Contract benchmarks
+
+    /**
+     * Ledger with the three contracts deployed and initialized
+     */
+    public abstract static class LedgerState {
+
+        protected final InMemoryLedger ledger = new InMemoryLedger("providerschannel");
+        protected final Identity client = new Identity("Org1MSP", "client");
+
+        /**
+         * Deploy the contracts and initialize them, with the given members
+         * registered with the Incentive Mechanism
+         *
+         * @param members Number of members
+         */
+        protected void deploy(int members) {
+            quietLogging();
+            this.ledger.deploy("SummaryContract", new SummaryContract());
+            this.ledger.deploy("RecordRelationshipContract", new RecordRelationshipContract());
+            this.ledger.deploy("IncentiveMechanism", new IncentiveMechanism());
+            List<String> init = new ArrayList<>();
+            init.add("init");
+            for (int i = 0; i < members; i++) {
+                init.add(String.format("Org%dMSP", i + 1));
+            }
+            for (int i = 0; i < members; i++) {
+                init.add(Integer.toString(i * 10));
+            }
+            List<Transaction> block = new ArrayList<>();
+            block.add(this.ledger.init("SummaryContract", Arrays.asList("init"), this.client, TIMESTAMP));
+            block.add(this.ledger.init("RecordRelationshipContract", Arrays.asList("init"), this.client, TIMESTAMP));
+            block.add(this.ledger.init("IncentiveMechanism", init, this.client, TIMESTAMP));
+            commit(block);
+        }
+
+        /**
+         * Add references to Summary Contracts in batches
+         *
+         * @param references References (user id, RRC reference and provider id)
+         */
+        protected void addReferences(List<String[]> references) {
+            for (int n = 0; n < references.size(); n += 500) {
+                StringBuilder json = new StringBuilder("[");
+                for (int i = n; i < Math.min(n + 500, references.size()); i++) {
+                    String[] reference = references.get(i);
+                    json.append(i == n ? "" : ",").append(String.format("{\"userId\":\"%s\",\"rrcRef\":\"%s\",\"providerId\":\"%s\"}", reference[0], reference[1], reference[2]));
+                }
+                commit(Arrays.asList(this.ledger.simulate("SummaryContract", Arrays.asList("addBatch", json.append("]").toString()), this.client, TIMESTAMP)));
+            }
+        }
+
+        /**
+         * Commit block and fail if a transaction is not valid
+         *
+         * @param block Transactions
+         */
+        private void commit(List<Transaction> block) {
+            List<InMemoryLedger.Validation> validations = this.ledger.commit(block);
+            for (int i = 0; i < block.size(); i++) {
+                if (validations.get(i) != InMemoryLedger.Validation.VALID) {
+                    throw new IllegalStateException(String.format("Setup transaction %s of %s failed: %s %s", block.get(i).getFunction(), block.get(i).getChaincode(), validations.get(i), block.get(i).getResponse().getMessage()));
+                }
+            }
+        }
+
+        /**
+         * Simulate a transaction of the client
+         *
+         * @param chaincode Chaincode name
+         * @param args Function and parameters
+         * @return Response of the chaincode
+         */
+        protected Response simulate(String chaincode, String... args) {
+            return this.ledger.simulate(chaincode, Arrays.asList(args), this.client, TIMESTAMP).getResponse();
+        }
+    }
+
+    /**
+     * User with a reference to an RRC of each of the providers
+     */
+    @State(Scope.Benchmark)
+    public static class AddState extends LedgerState {
+
+        @Param({"4", "64"})
+        public int providers; // number of providers the user has an RRC with
+
+        /**
+         * Build the ledger
+         */
+        @Setup
+        public void setup() {
+            deploy(1);
+            List<String[]> references = new ArrayList<>();
+            for (int i = 0; i < this.providers; i++) {
+                references.add(new String[]{USER, String.format("rrc%08d", i), String.format("Org%dMSP", i + 1)});
+            }
+            addReferences(references);
+        }
+    }
+
+    /**
+     * Users with one reference each, indexed by RRC reference
+     */
+    @State(Scope.Benchmark)
+    public static class UpdateState extends LedgerState {
+
+        @Param({"1000", "10000"})
+        public int users; // number of users
+
+        /**
+         * Build the ledger
+         */
+        @Setup
+        public void setup() {
+            deploy(1);
+            List<String[]> references = new ArrayList<>();
+            for (int i = 0; i < this.users; i++) {
+                references.add(new String[]{String.format("%011d", i), String.format("rrc%08d", i), "Org1MSP"});
+            }
+            addReferences(references);
+        }
+    }
+
+    /**
+     * Incentive Mechanism with members of increasing significance
+     */
+    @State(Scope.Benchmark)
+    public static class SelectState extends LedgerState {
+
+        @Param({"4", "64"})
+        public int members; // number of members
+
+        /**
+         * Build the ledger
+         */
+        @Setup
+        public void setup() {
+            deploy(this.members);
+        }
+    }
+
+    /**
+     * Add a reference to a provider the user already has an RRC with, which
+     * is rejected by the duplicate provider check
+     *
+     * @param state Ledger
+     * @return Error Response
+     */
+    @Benchmark
+    public Response addDuplicateProvider(AddState state) {
+        return state.simulate("SummaryContract", "add", USER, "rrcnew", "Org1MSP");
+    }
+
+    /**
+     * Add a reference to a provider the user has no RRC with
+     *
+     * @param state Ledger
+     * @return Success Response
+     */
+    @Benchmark
+    public Response addNewProvider(AddState state) {
+        return state.simulate("SummaryContract", "add", USER, "rrcnew", "OrgNewMSP");
+    }
+
+    /**
+     * Update the last edit of an RRC, which looks up the user of the RRC
+     *
+     * @param state Ledger
+     * @return Success Response
+     */
+    @Benchmark
+    public Response updateLastEdit(UpdateState state) {
+        return state.simulate("SummaryContract", "update", String.format("rrc%08d", state.users / 2));
+    }
+
+    /**
+     * Select the next endorser
+     *
+     * @param state Ledger
+     * @return Success Response with the selected provider
+     */
+    @Benchmark
+    public Response selectEndorser(SelectState state) {
+        return state.simulate("IncentiveMechanism", "selectEndorser");
+    }
+
+    /**
+     * Raise the log level to WARNING, as the contracts log every call
+     */
+    static void quietLogging() {
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.incentivemechanism.Member;
+import main.java.com.example.incentivemechanism.MemberCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the serialization of Incentive Mechanism members
+ *
+ * @author karthik
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberBenchmark {
+
+    private static final MemberCodec CODEC = new MemberCodec();
+
+    private Member member;
+    private String json;
+    private byte[] binary;
+
+    /**
+     * Build the member and its serialized forms
+     */
+    @Setup
+    public void setup() {
+        this.member = new Member(1250, "2021-01-01T12:34:56.789Z");
+        this.json = JSONParser.getJSON(this.member);
+        this.binary = CODEC.encode(this.member, Encoding.BINARY);
+    }
+
+    /**
+     * Serialize member to JSON
+     *
+     * @return JSON document
+     */
+    @Benchmark
+    public String toJSON() {
+        return JSONParser.getJSON(this.member);
+    }
+
+    /**
+     * Parse member from JSON
+     *
+     * @return Member
+     */
+    @Benchmark
+    public Member fromJSON() {
+        return JSONParser.getFromJSON(this.json, Member.class);
+    }
+
+    /**
+     * Encode member in the binary format
+     *
+     * @return Binary document
+     */
+    @Benchmark
+    public byte[] encodeBinary() {
+        return CODEC.encode(this.member, Encoding.BINARY);
+    }
+
+    /**
+     * Decode member from the binary format
+     *
+     * @return Member
+     */
+    @Benchmark
+    public Member decodeBinary() {
+        return CODEC.decode(this.binary);
+    }
+}
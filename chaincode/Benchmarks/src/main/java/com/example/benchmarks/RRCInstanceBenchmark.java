@@ -0,0 +1,146 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.recordrelationshipcontract.Entity;
+import main.java.com.example.recordrelationshipcontract.Event;
+import main.java.com.example.recordrelationshipcontract.LogEntry;
+import main.java.com.example.recordrelationshipcontract.RRCInstance;
+import main.java.com.example.recordrelationshipcontract.RRCInstanceCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the serialization of RRCs. The ACL holds the creator, its
+ * MSP and aclSize further clients; logSize entries are stored in the document
+ * as in documents written before the log was stored separately (0 for the
+ * current layout).
+ *
+ * @author karthik
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RRCInstanceBenchmark {
+
+    private static final RRCInstanceCodec CODEC = new RRCInstanceCodec();
+
+    @Param({"4", "64"})
+    public int aclSize; // number of clients granted access besides the creator
+
+    @Param({"0", "10", "100", "1000", "10000"})
+    public int logSize; // number of log entries stored in the document
+
+    private RRCInstance rrc;
+    private String json;
+    private byte[] jsonBytes;
+    private byte[] binary;
+
+    /**
+     * Build the RRC and its serialized forms
+     */
+    @Setup
+    public void setup() {
+        RRCInstance rrc = new RRCInstance(id(0), "Org1MSP", 10);
+        for (int i = 1; i <= this.aclSize; i++) {
+            rrc.grant(id(i), Entity.CLIENT, Event.READ);
+            if (i % 2 == 0) {
+                rrc.grant(id(i), Entity.CLIENT, Event.WRITE);
+            }
+        }
+        JsonObject document = JSONParser.getJSONTree(rrc).getAsJsonObject();
+        if (this.logSize > 0) {
+            JsonArray log = new JsonArray();
+            Instant timestamp = Instant.parse("2021-01-01T00:00:00Z");
+            for (int i = 0; i < this.logSize; i++) {
+                String event = i == 0 ? Event.CREATE.toString() : (i % 3 == 0 ? Event.WRITE.toString() : Event.READ.toString());
+                log.add(JSONParser.getJSONTree(new LogEntry(event, "UPDATE patient SET field" + i + " = ?", id(i % (this.aclSize + 1)), timestamp.plusSeconds(i * 60).toString())));
+            }
+            document.add("log", log);
+            document.remove("logSize");
+        }
+        this.json = document.toString();
+        this.jsonBytes = this.json.getBytes(StandardCharsets.UTF_8);
+        this.rrc = JSONParser.getFromJSON(this.json, RRCInstance.class);
+        this.binary = CODEC.encode(this.rrc, Encoding.BINARY);
+    }
+
+    /**
+     * Returns client id as stored in the ACL (hex fingerprint)
+     *
+     * @param n Client number
+     * @return Client id
+     */
+    static String id(int n) {
+        return String.format("%064x", n + 1);
+    }
+
+    /**
+     * Serialize RRC to JSON
+     *
+     * @return JSON document
+     */
+    @Benchmark
+    public String toJSON() {
+        return JSONParser.getJSON(this.rrc);
+    }
+
+    /**
+     * Parse RRC from JSON
+     *
+     * @return RRC
+     */
+    @Benchmark
+    public RRCInstance fromJSON() {
+        return JSONParser.getFromJSON(this.json, RRCInstance.class);
+    }
+
+    /**
+     * Encode RRC in the binary format
+     *
+     * @return Binary document
+     */
+    @Benchmark
+    public byte[] encodeBinary() {
+        return CODEC.encode(this.rrc, Encoding.BINARY);
+    }
+
+    /**
+     * Decode RRC from the binary format
+     *
+     * @return RRC
+     */
+    @Benchmark
+    public RRCInstance decodeBinary() {
+        return CODEC.decode(this.binary);
+    }
+
+    /**
+     * Decode the head of the RRC (without the log stored in the document)
+     * from JSON, as done for ACL checks
+     *
+     * @return RRC head
+     */
+    @Benchmark
+    public RRCInstance decodeHeadJSON() {
+        return CODEC.decodeHead(this.jsonBytes);
+    }
+}
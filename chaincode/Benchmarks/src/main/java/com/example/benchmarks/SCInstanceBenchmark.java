@@ -0,0 +1,98 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.benchmarks;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.summarycontract.SCInstance;
+import main.java.com.example.summarycontract.SCInstanceCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the serialization of Summary Contracts with one reference
+ * per provider of the user
+ *
+ * @author karthik
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SCInstanceBenchmark {
+
+    private static final SCInstanceCodec CODEC = new SCInstanceCodec();
+
+    @Param({"4", "64", "512"})
+    public int references; // number of RRC references of the user
+
+    private SCInstance sc;
+    private String json;
+    private byte[] binary;
+
+    /**
+     * Build the Summary Contract and its serialized forms
+     */
+    @Setup
+    public void setup() {
+        this.sc = new SCInstance();
+        Instant timestamp = Instant.parse("2021-01-01T00:00:00Z");
+        for (int i = 0; i < this.references; i++) {
+            this.sc.addReference(String.format("Org%dMSP", i + 1), String.format("rrc%08d", i), timestamp.plusSeconds(i * 3600).toString());
+        }
+        this.json = JSONParser.getJSON(this.sc);
+        this.binary = CODEC.encode(this.sc, Encoding.BINARY);
+    }
+
+    /**
+     * Serialize Summary Contract to JSON
+     *
+     * @return JSON document
+     */
+    @Benchmark
+    public String toJSON() {
+        return JSONParser.getJSON(this.sc);
+    }
+
+    /**
+     * Parse Summary Contract from JSON
+     *
+     * @return Summary Contract
+     */
+    @Benchmark
+    public SCInstance fromJSON() {
+        return JSONParser.getFromJSON(this.json, SCInstance.class);
+    }
+
+    /**
+     * Encode Summary Contract in the binary format
+     *
+     * @return Binary document
+     */
+    @Benchmark
+    public byte[] encodeBinary() {
+        return CODEC.encode(this.sc, Encoding.BINARY);
+    }
+
+    /**
+     * Decode Summary Contract from the binary format
+     *
+     * @return Summary Contract
+     */
+    @Benchmark
+    public SCInstance decodeBinary() {
+        return CODEC.decode(this.binary);
+    }
+}
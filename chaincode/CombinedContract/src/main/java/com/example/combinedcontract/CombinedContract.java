@@ -0,0 +1,193 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.combinedcontract;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import main.java.com.example.contractruntime.ChaincodeLauncher;
+import main.java.com.example.incentivemechanism.IncentiveMechanism;
+import main.java.com.example.recordrelationshipcontract.RecordRelationshipContract;
+import main.java.com.example.summarycontract.SummaryContract;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.shim.ChaincodeBase;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Chaincode hosting the Summary Contract, the Record Relationship Contract and
+ * the Incentive Mechanism in one process. Functions are invoked as
+ * "Contract:function" (e.g. "RecordRelationshipContract:create") and each
+ * contract keeps its state under its own namespace. Invocations between the
+ * contracts become method calls in the same transaction instead of round
+ * trips through the peer. The contracts can still be deployed as three
+ * separate chaincodes; state is not shared between the two deployment modes.
+ *
+ * @author karthik
+ */
+public class CombinedContract extends ChaincodeBase {
+
+    private static final Log LOG = LogFactory.getLog(CombinedContract.class);
+
+    private final Map<String, ChaincodeBase> contracts = new LinkedHashMap<>(); // hosted contracts by chaincode name
+    private final Map<String, String> namespaces = new LinkedHashMap<>(); // key namespaces by chaincode name
+    private final List<IntConsumer> warmUps = new ArrayList<>(); // warm ups of the hosted contracts
+
+    /**
+     * Constructor for CombinedContract object
+     */
+    public CombinedContract() {
+        SummaryContract sc = new SummaryContract();
+        RecordRelationshipContract rrc = new RecordRelationshipContract();
+        IncentiveMechanism im = new IncentiveMechanism();
+        host("SummaryContract", "SC", sc, sc::warmUp);
+        host("RecordRelationshipContract", "RRC", rrc, rrc::warmUp);
+        host("IncentiveMechanism", "IM", im, im::warmUp);
+    }
+
+    /**
+     * Add contract to the hosted contracts
+     *
+     * @param name Chaincode name the contract is invoked with
+     * @param namespace Namespace of the keys of the contract
+     * @param contract Contract
+     * @param warmUp Warm up of the contract
+     */
+    private void host(String name, String namespace, ChaincodeBase contract, IntConsumer warmUp) {
+        this.contracts.put(name, contract);
+        this.namespaces.put(name, namespace);
+        this.warmUps.add(warmUp);
+    }
+
+    @Override
+    public Response init(ChaincodeStub stub) {
+        try {
+            LOG.info("Init CombinedContract");
+            String func = stub.getFunction();
+            if (func.equals("init")) {
+                // initialize all contracts with their defaults
+                if (!stub.getParameters().isEmpty()) {
+                    return newErrorResponse("Incorrect number of arguments. Expecting 0, or use Contract:init");
+                }
+                for (String name : this.contracts.keySet()) {
+                    Response response = this.contracts.get(name).init(getStub(stub, name, stub.getArgs()));
+                    if (response.getStatus() != Response.Status.SUCCESS) {
+                        return response;
+                    }
+                }
+                return newSuccessResponse("Init finished successfully");
+            }
+            String name = getContract(func);
+            if (name == null) {
+                return newErrorResponse("Function not supported!");
+            }
+            // the init functions (init, setEncoding, ...) are checked by the contract
+            return this.contracts.get(name).init(getStub(stub, name, getArgs(stub, name)));
+        } catch (Throwable e) {
+            return newErrorResponse(e);
+        }
+    }
+
+    @Override
+    public Response invoke(ChaincodeStub stub) {
+        String func = stub.getFunction();
+        String name = getContract(func);
+        if (name == null) {
+            return newErrorResponse(String.format("Invalid invoke function name. Expecting Contract:function with Contract one of: %s", this.contracts.keySet()));
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Invoke CombinedContract %s", func));
+        }
+        return call(stub, name, getArgs(stub, name));
+    }
+
+    /**
+     * Returns true if the chaincode name is a hosted contract
+     *
+     * @param name Chaincode name
+     * @return True if the contract is hosted
+     */
+    boolean hosts(String name) {
+        return this.contracts.containsKey(name);
+    }
+
+    /**
+     * Invoke hosted contract in the current transaction
+     *
+     * @param stub Stub of the transaction
+     * @param name Chaincode name of the contract
+     * @param args Function and parameters
+     * @return Response of the contract
+     */
+    Response call(ChaincodeStub stub, String name, List<byte[]> args) {
+        return this.contracts.get(name).invoke(getStub(stub, name, args));
+    }
+
+    /**
+     * Get the stub of a hosted contract
+     *
+     * @param stub Stub of the transaction
+     * @param name Chaincode name of the contract
+     * @param args Function and parameters of the call
+     * @return Namespaced stub
+     */
+    private ChaincodeStub getStub(ChaincodeStub stub, String name, List<byte[]> args) {
+        return new NamespacedChaincodeStub(stub, this.namespaces.get(name), args, this);
+    }
+
+    /**
+     * Get the contract a qualified function name belongs to
+     *
+     * @param func Function name (Contract:function)
+     * @return Chaincode name of the contract or null if it is not hosted
+     */
+    private String getContract(String func) {
+        int separator = func.indexOf(':');
+        if ((separator < 0) || (!hosts(func.substring(0, separator)))) {
+            return null;
+        }
+        return func.substring(0, separator);
+    }
+
+    /**
+     * Get the arguments of the invocation with the contract name removed from
+     * the function name
+     *
+     * @param stub Stub of the transaction
+     * @param name Chaincode name of the contract
+     * @return Function and parameters
+     */
+    private List<byte[]> getArgs(ChaincodeStub stub, String name) {
+        List<byte[]> args = new ArrayList<>(stub.getArgs());
+        args.set(0, stub.getFunction().substring(name.length() + 1).getBytes(StandardCharsets.UTF_8));
+        return args;
+    }
+
+    /**
+     * Warm up the codecs and dispatch tables of the hosted contracts before
+     * accepting transactions
+     *
+     * @param rounds Number of round trips
+     */
+    public void warmUp(int rounds) {
+        for (IntConsumer warmUp : warmUps) {
+            warmUp.accept(rounds);
+        }
+    }
+
+    /**
+     * Main method
+     *
+     * @param args Arguments
+     * @throws IOException if the chaincode server cannot be started
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LOG.info("CombinedContract main method called");
+        CombinedContract chaincode = new CombinedContract();
+        ChaincodeLauncher.launch(chaincode, chaincode::warmUp, args);
+    }
+}
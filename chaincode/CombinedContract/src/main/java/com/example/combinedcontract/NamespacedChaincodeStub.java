@@ -0,0 +1,314 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.combinedcontract;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import main.java.com.example.contractruntime.ForwardingChaincodeStub;
+import main.java.com.example.contractruntime.JSONParser;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Stub of one contract hosted by the combined chaincode. Simple keys are
+ * prefixed with the namespace of the contract and composite keys get it in
+ * front of their object type, so the contracts keep their keys apart in the
+ * shared world state. Composite keys are only ever created through this stub
+ * and are passed on as they are. The stub carries the arguments of the call
+ * and runs invocations of the other hosted contracts in-process.
+ *
+ * The selectors of rich queries are combined with a condition on the _id of
+ * the documents, so they only match keys of the namespace. Private data is not
+ * namespaced, as none of the contracts use it.
+ *
+ * @author karthik
+ */
+public class NamespacedChaincodeStub extends ForwardingChaincodeStub {
+
+    private final String prefix; // namespace followed by the separator
+    private final List<byte[]> args; // function and parameters of the call
+    private final CombinedContract contracts; // contracts reachable in-process
+
+    /**
+     * Constructor for NamespacedChaincodeStub object
+     *
+     * @param delegate Stub of the transaction
+     * @param namespace Namespace of the contract
+     * @param args Function and parameters of the call
+     * @param contracts Contracts reachable in-process
+     */
+    public NamespacedChaincodeStub(ChaincodeStub delegate, String namespace, List<byte[]> args, CombinedContract contracts) {
+        super(delegate);
+        this.prefix = namespace + ":";
+        this.args = args;
+        this.contracts = contracts;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return this.args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> strings = new ArrayList<>(this.args.size());
+        for (byte[] arg : this.args) {
+            strings.add(new String(arg, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    @Override
+    public String getFunction() {
+        return this.args.isEmpty() ? null : getStringArgs().get(0);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        List<String> strings = getStringArgs();
+        return strings.isEmpty() ? strings : strings.subList(1, strings.size());
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args, String channel) {
+        if (this.contracts.hosts(chaincodeName)) {
+            // all hosted contracts share the channel of the combined chaincode
+            return this.contracts.call(delegate, chaincodeName, args);
+        }
+        return delegate.invokeChaincode(chaincodeName, args, channel);
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args) {
+        if (this.contracts.hosts(chaincodeName)) {
+            return this.contracts.call(delegate, chaincodeName, args);
+        }
+        return delegate.invokeChaincode(chaincodeName, args);
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args, String channel) {
+        return invokeChaincode(chaincodeName, toBytes(args), channel);
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args) {
+        return invokeChaincode(chaincodeName, toBytes(args));
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, String... args) {
+        return invokeChaincode(chaincodeName, toBytes(Arrays.asList(args)));
+    }
+
+    @Override
+    public byte[] getState(String key) {
+        return delegate.getState(toKey(key));
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(String key) {
+        return delegate.getStateValidationParameter(toKey(key));
+    }
+
+    @Override
+    public void putState(String key, byte[] value) {
+        delegate.putState(toKey(key), value);
+    }
+
+    @Override
+    public void setStateValidationParameter(String key, byte[] value) {
+        delegate.setStateValidationParameter(toKey(key), value);
+    }
+
+    @Override
+    public void delState(String key) {
+        delegate.delState(toKey(key));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+        return new KeyMappingIterator(delegate.getStateByRange(toStartKey(startKey), toEndKey(endKey)));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(String startKey, String endKey, int pageSize, String bookmark) {
+        return new KeyMappingIterator(delegate.getStateByRangeWithPagination(toStartKey(startKey), toEndKey(endKey), pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+        return delegate.getStateByPartialCompositeKey(this.prefix + objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(String objectType, String... attributes) {
+        return delegate.createCompositeKey(this.prefix + objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(String compositeKey) {
+        CompositeKey key = delegate.splitCompositeKey(compositeKey);
+        if (!key.getObjectType().startsWith(this.prefix)) {
+            return key;
+        }
+        return new CompositeKey(key.getObjectType().substring(this.prefix.length()), key.getAttributes());
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+        return new KeyMappingIterator(delegate.getQueryResult(toQuery(query)));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(String query, int pageSize, String bookmark) {
+        return new KeyMappingIterator(delegate.getQueryResultWithPagination(toQuery(query), pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(String key) {
+        return delegate.getHistoryForKey(toKey(key));
+    }
+
+    /**
+     * Get the key in the shared world state
+     *
+     * @param key Key of the contract (simple or composite)
+     * @return Namespaced key
+     */
+    private String toKey(String key) {
+        // composite keys start with U+0000 and already carry the namespace in their object type
+        return key.startsWith(CompositeKey.NAMESPACE) ? key : this.prefix + key;
+    }
+
+    /**
+     * Get the start key of a range in the shared world state
+     *
+     * @param startKey Start key of the contract (empty for the first key)
+     * @return Namespaced start key
+     */
+    private String toStartKey(String startKey) {
+        return this.prefix + startKey;
+    }
+
+    /**
+     * Get the end key of a range in the shared world state
+     *
+     * @param endKey End key of the contract (empty for no end)
+     * @return Namespaced end key
+     */
+    private String toEndKey(String endKey) {
+        if (endKey.isEmpty()) {
+            // the separator is followed by the next character, so this ends after the last key of the namespace
+            return this.prefix.substring(0, this.prefix.length() - 1) + (char) (':' + 1);
+        }
+        return this.prefix + endKey;
+    }
+
+    /**
+     * Get the rich query confined to the namespace. The selector is combined
+     * with a condition matching the simple keys (prefix) and the composite
+     * keys (U+0000 followed by the prefix) of the namespace; the other fields
+     * of the selector still select the index.
+     *
+     * @param query CouchDB query of the contract
+     * @return Namespaced query
+     */
+    private String toQuery(String query) {
+        JsonObject json = JSONParser.getFromJSON(query, JsonObject.class);
+        JsonObject id = new JsonObject();
+        id.addProperty("$regex", "^\\x00?" + this.prefix);
+        JsonObject namespace = new JsonObject();
+        namespace.add("_id", id);
+        JsonArray and = new JsonArray();
+        and.add(json.has("selector") ? json.getAsJsonObject("selector") : new JsonObject());
+        and.add(namespace);
+        JsonObject selector = new JsonObject();
+        selector.add("$and", and);
+        json.add("selector", selector);
+        return JSONParser.getJSON(json);
+    }
+
+    /**
+     * Encode string arguments
+     *
+     * @param args String arguments
+     * @return Byte arguments
+     */
+    private static List<byte[]> toBytes(List<String> args) {
+        List<byte[]> bytes = new ArrayList<>(args.size());
+        for (String arg : args) {
+            bytes.add(arg.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes;
+    }
+
+    /**
+     * Iterator over query results that removes the namespace from the simple
+     * keys of the contract
+     */
+    private class KeyMappingIterator implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final QueryResultsIterator<KeyValue> results;
+
+        KeyMappingIterator(QueryResultsIterator<KeyValue> results) {
+            this.results = results;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<KeyValue> iterator = this.results.iterator();
+            return new Iterator<KeyValue>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue next() {
+                    KeyValue kv = iterator.next();
+                    if (!kv.getKey().startsWith(prefix)) {
+                        return kv;
+                    }
+                    String key = kv.getKey().substring(prefix.length());
+                    return new KeyValue() {
+                        @Override
+                        public String getKey() {
+                            return key;
+                        }
+
+                        @Override
+                        public byte[] getValue() {
+                            return kv.getValue();
+                        }
+
+                        @Override
+                        public String getStringValue() {
+                            return kv.getStringValue();
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return ((QueryResultsIteratorWithMetadata<KeyValue>) this.results).getMetadata();
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.results.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+/**
+ * Types a function argument is validated against before the function is
+ * invoked
+ *
+ * @author karthik
+ */
+public enum ArgType {
+    STRING, // any string
+    INT; // decimal integer
+
+    /**
+     * Returns true if the argument is of this type
+     *
+     * @param arg Argument
+     * @return True if the argument is valid
+     */
+    public boolean accepts(String arg) {
+        switch (this) {
+            case INT:
+                try {
+                    Integer.parseInt(arg);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Stub caching state for the life of one transaction. Each key is read from
+ * the peer at most once, repeated writes of a key are coalesced into the last
+ * one, and reads return the pending write of the key (read-your-writes).
+ * Decoded documents can be cached as well. Pending writes are sent to the
+ * peer by flush. Range and rich queries are forwarded and, as on the peer, do
+ * not see pending writes.
+ *
+ * @author karthik
+ */
+public class CachingChaincodeStub extends ForwardingChaincodeStub {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Map<String, byte[]> reads = new HashMap<>(); // values read from the peer
+    private final Map<String, byte[]> writes = new LinkedHashMap<>(); // pending writes (null for deletes)
+    private final Map<String, Object> objects = new HashMap<>(); // decoded documents by key
+    private int hits;
+    private int misses;
+    private int coalesced;
+
+    public CachingChaincodeStub(ChaincodeStub delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public byte[] getState(String key) {
+        if (writes.containsKey(key)) {
+            hits++;
+            byte[] value = writes.get(key);
+            return value == null ? EMPTY : value;
+        }
+        byte[] value = reads.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+        misses++;
+        value = delegate.getState(key);
+        if (value == null) {
+            value = EMPTY;
+        }
+        reads.put(key, value);
+        return value;
+    }
+
+    @Override
+    public void putState(String key, byte[] value) {
+        if (writes.containsKey(key)) {
+            coalesced++;
+        }
+        // an empty value deletes the key on the peer
+        writes.put(key, value.length == 0 ? null : value);
+        objects.remove(key);
+    }
+
+    @Override
+    public void delState(String key) {
+        if (writes.containsKey(key)) {
+            coalesced++;
+        }
+        writes.put(key, null);
+        objects.remove(key);
+    }
+
+    /**
+     * Get document decoded from the value of the key. The same instance is
+     * returned for the key until the key is written, so callers modifying the
+     * document have to write it back.
+     *
+     * @param <T> Type of the document
+     * @param key Key
+     * @param codec Codec of the document
+     * @return Document or null if the key does not exist
+     */
+    public <T> T getObject(String key, StateCodec<T> codec) {
+        Object object = objects.get(key);
+        if (codec.getType().isInstance(object)) {
+            return codec.getType().cast(object);
+        }
+        T decoded = codec.decode(getState(key));
+        if (decoded != null) {
+            objects.put(key, decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Get document decoded from the value of the key, through the cache of
+     * the stub if it is a caching stub
+     *
+     * @param <T> Type of the document
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @param codec Codec of the document
+     * @return Document or null if the key does not exist
+     */
+    public static <T> T getObject(ChaincodeStub stub, String key, StateCodec<T> codec) {
+        if (stub instanceof CachingChaincodeStub) {
+            return ((CachingChaincodeStub) stub).getObject(key, codec);
+        }
+        return codec.get(stub, key);
+    }
+
+    /**
+     * Send the pending writes to the peer
+     */
+    public void flush() {
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            if (write.getValue() == null) {
+                delegate.delState(write.getKey());
+            } else {
+                delegate.putState(write.getKey(), write.getValue());
+            }
+        }
+        writes.clear();
+    }
+
+    /**
+     * Get number of reads served from the cache
+     *
+     * @return Number of hits
+     */
+    public int getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get number of reads forwarded to the peer
+     *
+     * @return Number of misses
+     */
+    public int getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get number of writes replaced by a later write of the same key
+     *
+     * @return Number of coalesced writes
+     */
+    public int getCoalesced() {
+        return this.coalesced;
+    }
+}
@@ -0,0 +1,186 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.shim.ChaincodeBase;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.NettyChaincodeServer;
+
+/**
+ * Starts a chaincode in one of two launch modes. If CHAINCODE_SERVER_ADDRESS
+ * is set (host:port), the chaincode runs as an external service
+ * (chaincode-as-a-service): it listens for the peer on that address and can be
+ * started and redeployed independently of the peer. The package id is read
+ * from CORE_CHAINCODE_ID_NAME; TLS is enabled by setting CHAINCODE_TLS_KEY
+ * and CHAINCODE_TLS_CERT (paths to PEM files), and CHAINCODE_CLIENT_CA_CERT
+ * additionally requires the peer to present a client certificate signed by
+ * that CA. Otherwise the chaincode is started by the peer and connects to it
+ * as before.
+ *
+ * In both modes the contract is warmed up before it accepts transactions
+ * (CHAINCODE_WARMUP_ROUNDS round trips of its codecs and dispatch table, 1000
+ * by default, 0 to skip) and is reported ready at /ready of the metrics
+ * endpoint afterwards; in chaincode-as-a-service mode only once the server
+ * accepts connections on its address. The time from JVM start to the first transaction is
+ * logged and recorded in chaincode_time_to_first_transaction_seconds,
+ * labelled with the launch mode, so the two modes can be compared on the same
+ * deployment.
+ *
+ * @author karthik
+ */
+public final class ChaincodeLauncher {
+
+    private static final Log LOG = LogFactory.getLog(ChaincodeLauncher.class);
+    private static final int WARM_UP_ROUNDS = 1000; // default number of warm up round trips
+    private static final int LISTEN_POLL_MILLIS = 50; // interval of the checks whether the server listens
+
+    private static final AtomicBoolean FIRST_TRANSACTION = new AtomicBoolean(); // set by the first dispatched transaction
+    private static volatile boolean ready; // true once the chaincode accepts transactions
+    private static volatile String mode = "peer"; // launch mode (metric label)
+
+    private ChaincodeLauncher() {
+    }
+
+    /**
+     * Warm up and start the chaincode in the launch mode selected by the
+     * environment. Blocks until the server stops in chaincode-as-a-service
+     * mode.
+     *
+     * @param chaincode Chaincode
+     * @param warmUp Warm up of the contract (codecs and dispatch table), given
+     * the number of rounds
+     * @param args Command line arguments of the peer-launched mode
+     * @throws IOException if the server cannot be started
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void launch(ChaincodeBase chaincode, IntConsumer warmUp, String[] args) throws IOException, InterruptedException {
+        MetricsServer.startFromEnv();
+        String address = System.getenv("CHAINCODE_SERVER_ADDRESS");
+        mode = (address == null) || address.isEmpty() ? "peer" : "server";
+        String rounds = System.getenv("CHAINCODE_WARMUP_ROUNDS");
+        long start = System.nanoTime();
+        warmUp.accept(rounds == null || rounds.isEmpty() ? WARM_UP_ROUNDS : Integer.parseInt(rounds));
+        long warmUpNanos = System.nanoTime() - start;
+        Metrics.observe("chaincode_warmup_duration_seconds", "Duration of the warm up before accepting transactions", warmUpNanos, "mode", mode);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Warmed up in %d ms", TimeUnit.NANOSECONDS.toMillis(warmUpNanos)));
+        }
+        if (mode.equals("peer")) {
+            chaincode.start(args);
+            ready = true;
+            return;
+        }
+        chaincode.processEnvironmentOptions();
+        chaincode.validateOptions();
+        InetSocketAddress listenAddress = getListenAddress(address);
+        ChaincodeServer server = new NettyChaincodeServer(chaincode, getServerProperties(listenAddress));
+        // the server blocks while serving, so readiness is reported by a watcher once the port accepts connections
+        Thread watcher = new Thread(() -> awaitListening(listenAddress), "chaincode-readiness");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOG.info("Serving chaincode " + chaincode.getId() + " on " + address);
+        try {
+            server.start();
+        } finally {
+            watcher.interrupt();
+            watcher.join();
+            ready = false;
+        }
+    }
+
+    /**
+     * Wait until the server accepts connections on its address, then report
+     * the chaincode ready. Returns without reporting if interrupted.
+     *
+     * @param address Address the server listens on
+     */
+    private static void awaitListening(InetSocketAddress address) {
+        InetSocketAddress target = (address.getAddress() != null) && address.getAddress().isAnyLocalAddress() ? new InetSocketAddress(InetAddress.getLoopbackAddress(), address.getPort()) : address;
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Socket socket = new Socket()) {
+                socket.connect(target, LISTEN_POLL_MILLIS);
+                ready = true;
+                LOG.info("Chaincode server is listening on " + address);
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(LISTEN_POLL_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the address to listen on
+     *
+     * @param address Address (host:port)
+     * @return Socket address
+     */
+    private static InetSocketAddress getListenAddress(String address) {
+        int separator = address.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("CHAINCODE_SERVER_ADDRESS must be host:port, got " + address);
+        }
+        return new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+    }
+
+    /**
+     * Build the server configuration from the environment
+     *
+     * @param address Address to listen on
+     * @return Server configuration
+     */
+    private static ChaincodeServerProperties getServerProperties(InetSocketAddress address) {
+        ChaincodeServerProperties properties = new ChaincodeServerProperties();
+        properties.setServerAddress(address);
+        String key = System.getenv("CHAINCODE_TLS_KEY");
+        String cert = System.getenv("CHAINCODE_TLS_CERT");
+        if ((key != null) && (cert != null)) {
+            properties.setTlsEnabled(true);
+            properties.setKeyFile(key);
+            properties.setKeyCertChainFile(cert);
+            String clientCa = System.getenv("CHAINCODE_CLIENT_CA_CERT");
+            if (clientCa != null) {
+                properties.setTrustCertCollectionFile(clientCa);
+            }
+        }
+        properties.validate();
+        return properties;
+    }
+
+    /**
+     * Record the time to the first transaction. Called by the dispatcher on
+     * every transaction; does nothing after the first.
+     */
+    static void transactionReceived() {
+        if (FIRST_TRANSACTION.get() || !FIRST_TRANSACTION.compareAndSet(false, true)) {
+            return;
+        }
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        Metrics.observe("chaincode_time_to_first_transaction_seconds", "Time from JVM start to the first transaction", TimeUnit.MILLISECONDS.toNanos(uptimeMillis), "mode", mode);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("First transaction %d ms after JVM start (%s mode)", uptimeMillis, mode));
+        }
+    }
+
+    /**
+     * Returns true if the chaincode accepts transactions
+     *
+     * @return Readiness
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+}
@@ -0,0 +1,167 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+
+/**
+ * Table of the functions of a contract. Functions are registered once with
+ * their argument types and looked up by name on each invocation; the number
+ * and types of the arguments are validated before the handler is called.
+ * Handlers run against a CachingChaincodeStub whose writes are sent to the
+ * peer when the handler succeeds. The latency of each registered function and
+ * the state accesses it makes are recorded in the metrics registry.
+ *
+ * @author karthik
+ */
+public class Dispatcher {
+
+    private static final Log LOG = LogFactory.getLog(Dispatcher.class);
+
+    private final String chaincode; // name of the chaincode (metric label)
+    private final Map<String, Function> functions = new LinkedHashMap<>();
+
+    /**
+     * Constructor for Dispatcher object
+     *
+     * @param chaincode Name of the chaincode the functions belong to
+     */
+    public Dispatcher(String chaincode) {
+        this.chaincode = chaincode;
+    }
+
+    /**
+     * Register a function with required arguments only
+     *
+     * @param name Function name
+     * @param handler Handler of the function
+     * @param types Types of the arguments
+     * @return This dispatcher
+     */
+    public Dispatcher register(String name, Handler handler, ArgType... types) {
+        return register(name, handler, types.length, types);
+    }
+
+    /**
+     * Register a function with optional trailing arguments
+     *
+     * @param name Function name
+     * @param handler Handler of the function
+     * @param required Number of required arguments
+     * @param types Types of the required and optional arguments
+     * @return This dispatcher
+     */
+    public Dispatcher register(String name, Handler handler, int required, ArgType... types) {
+        functions.put(name, new Function(handler, required, types));
+        return this;
+    }
+
+    /**
+     * Invoke the function named in the transaction proposal
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Error or Success Response
+     */
+    public Response dispatch(ChaincodeStub stub) {
+        ChaincodeLauncher.transactionReceived();
+        try {
+            Function function = functions.get(stub.getFunction());
+            if (function == null) {
+                return ResponseUtils.newErrorResponse(String.format("Invalid invoke function name. Expecting one of: %s", functions.keySet()));
+            }
+            List<String> args = stub.getParameters();
+            String error = function.validate(args);
+            if (error != null) {
+                return ResponseUtils.newErrorResponse(error);
+            }
+            long start = System.nanoTime();
+            CachingChaincodeStub cache = new CachingChaincodeStub(new MetricsChaincodeStub(stub, chaincode));
+            Response response;
+            try {
+                response = function.handler.handle(new TransactionContext(cache), args);
+                if (response.getStatusCode() < Response.Status.ERROR_THRESHOLD.getCode()) {
+                    cache.flush();
+                }
+            } catch (Throwable e) {
+                observe(stub.getFunction(), "error", start);
+                throw e;
+            }
+            observe(stub.getFunction(), response.getStatusCode() < Response.Status.ERROR_THRESHOLD.getCode() ? "success" : "error", start);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("State cache of %s: %s hits, %s misses, %s coalesced writes", stub.getFunction(), cache.getHits(), cache.getMisses(), cache.getCoalesced()));
+            }
+            return response;
+        } catch (Throwable e) {
+            return ResponseUtils.newErrorResponse(e);
+        }
+    }
+
+    /**
+     * Look up and validate sample arguments for every registered function, so
+     * that the dispatch path is loaded and compiled before the first
+     * transaction arrives
+     *
+     * @param rounds Number of lookups per function
+     */
+    public void warmUp(int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            for (Function function : functions.values()) {
+                function.validate(Collections.nCopies(function.types.length, "1"));
+                function.validate(Collections.<String>emptyList());
+            }
+        }
+    }
+
+    /**
+     * Record the latency of a function
+     *
+     * @param function Function name
+     * @param status Outcome (success or error)
+     * @param start Start of the invocation (System.nanoTime)
+     */
+    private void observe(String function, String status, long start) {
+        Metrics.observe("chaincode_function_duration_seconds", "Latency of chaincode functions", System.nanoTime() - start, "chaincode", chaincode, "function", function, "status", status);
+    }
+
+    /**
+     * Registered function
+     */
+    private static class Function {
+
+        private final Handler handler;
+        private final int required;
+        private final ArgType[] types;
+
+        Function(Handler handler, int required, ArgType[] types) {
+            this.handler = handler;
+            this.required = required;
+            this.types = types;
+        }
+
+        /**
+         * Validate the arguments of an invocation
+         *
+         * @param args Arguments
+         * @return Error message or null if the arguments are valid
+         */
+        String validate(List<String> args) {
+            if ((args.size() < required) || (args.size() > types.length)) {
+                String expected = required == types.length ? Integer.toString(required) : required + " to " + types.length;
+                return String.format("Incorrect number of arguments. Expecting %s", expected);
+            }
+            for (int i = 0; i < args.size(); i++) {
+                if (!types[i].accepts(args.get(i))) {
+                    return String.format("Argument %s must be of type %s", i + 1, types[i]);
+                }
+            }
+            return null;
+        }
+    }
+}
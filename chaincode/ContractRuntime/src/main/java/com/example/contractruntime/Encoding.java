@@ -0,0 +1,67 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.List;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+
+/**
+ * Enum class for the encodings documents are written in. Documents in any
+ * encoding can be read regardless of the configured one.
+ *
+ * @author karthik
+ */
+public enum Encoding {
+    JSON, // Gson JSON without header, as written by earlier versions
+    BINARY; // compact binary with format header, deflated above a size threshold
+
+    private static final String CONFIG = "config"; // object type of the contract configuration entries
+
+    /**
+     * Get the configured encoding of the contract (JSON if not configured)
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Encoding
+     */
+    public static Encoding get(ChaincodeStub stub) {
+        String encoding = stub.getStringState(getConfigKey(stub));
+        if ((encoding == null) || (encoding.isEmpty())) {
+            return JSON;
+        }
+        return valueOf(encoding);
+    }
+
+    /**
+     * Set the encoding documents of the contract are written in. Only to be
+     * called from the init function of the contract, so that the encoding is
+     * changed by instantiating or upgrading the chaincode and not by clients.
+     *
+     * @param ctx Context of the transaction
+     * @param args Encoding (JSON or BINARY)
+     * @return Error or Success Response
+     */
+    public static Response configure(TransactionContext ctx, List<String> args) {
+        if (args.size() != 1) {
+            return ResponseUtils.newErrorResponse("Incorrect number of arguments. Expecting 1");
+        }
+        Encoding encoding;
+        try {
+            encoding = valueOf(args.get(0).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseUtils.newErrorResponse(String.format("Invalid encoding %s. Expecting one of: [\"JSON\", \"BINARY\"]", args.get(0)));
+        }
+        ctx.getStub().putStringState(getConfigKey(ctx.getStub()), encoding.name());
+        return ResponseUtils.newSuccessResponse("Encoding Success");
+    }
+
+    /**
+     * Get the key of the encoding configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Composite key
+     */
+    private static String getConfigKey(ChaincodeStub stub) {
+        return stub.createCompositeKey(CONFIG, "encoding").toString();
+    }
+}
@@ -0,0 +1,23 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.List;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+
+/**
+ * Contract function registered with a Dispatcher
+ *
+ * @author karthik
+ */
+@FunctionalInterface
+public interface Handler {
+
+    /**
+     * Handle the invocation of the function
+     *
+     * @param ctx Context of the transaction
+     * @param args Arguments, validated against the registered argument types
+     * @return Error or Success Response
+     */
+    Response handle(TransactionContext ctx, List<String> args);
+}
@@ -0,0 +1,48 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+/**
+ * JSON Parser utilities shared by the contracts. Gson instances are thread
+ * safe, so a single instance is reused instead of building one per call.
+ *
+ * @author karthik
+ */
+public class JSONParser {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Get JSON representation of the object
+     *
+     * @param object Object to parse
+     * @return JSON representation of the object
+     */
+    public static String getJSON(Object object) {
+        return GSON.toJson(object);
+    }
+
+    /**
+     * Get JSON tree of the object
+     *
+     * @param object Object to parse
+     * @return JSON tree of the object
+     */
+    public static JsonElement getJSONTree(Object object) {
+        return GSON.toJsonTree(object);
+    }
+
+    /**
+     * Get object from JSON string
+     *
+     * @param <T> Type of the object
+     * @param json JSON string
+     * @param type Class of the object
+     * @return Object or null if the string is null or empty
+     */
+    public static <T> T getFromJSON(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+}
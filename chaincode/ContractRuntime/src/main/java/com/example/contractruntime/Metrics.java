@@ -0,0 +1,185 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the counters and histograms of the chaincode process, written
+ * in the Prometheus text format. Metrics are created on first use; labels are
+ * given as name and value pairs. Recording is lock free, so it can be done on
+ * every state access.
+ *
+ * @author karthik
+ */
+public final class Metrics {
+
+    private static final double[] BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10}; // histogram buckets in seconds
+    private static final String[] BUCKET_LABELS = new String[BUCKETS.length]; // upper bounds of the buckets without exponent
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>(); // metric families by name
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKETS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Add to a counter
+     *
+     * @param name Metric name (ending in _total)
+     * @param help Description of the metric
+     * @param amount Amount to add
+     * @param labels Label names and values
+     */
+    public static void increment(String name, String help, long amount, String... labels) {
+        ((Counter) getSeries(name, help, "counter", labels)).value.add(amount);
+    }
+
+    /**
+     * Record a duration in a histogram
+     *
+     * @param name Metric name (ending in _seconds)
+     * @param help Description of the metric
+     * @param nanos Duration in nanoseconds
+     * @param labels Label names and values
+     */
+    public static void observe(String name, String help, long nanos, String... labels) {
+        Histogram histogram = (Histogram) getSeries(name, help, "histogram", labels);
+        double seconds = nanos / 1e9;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (seconds <= BUCKETS[i]) {
+                histogram.buckets[i].increment();
+                break;
+            }
+        }
+        histogram.sum.add(seconds);
+        histogram.count.increment();
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format (version 0.0.4)
+     *
+     * @param out Writer
+     * @throws IOException if writing fails
+     */
+    public static void write(Writer out) throws IOException {
+        for (Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.write(String.format("# HELP %s %s\n# TYPE %s %s\n", name, family.help, name, family.type));
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                if (series.getValue() instanceof Counter) {
+                    out.write(String.format("%s%s %d\n", name, braces(labels), ((Counter) series.getValue()).value.sum()));
+                    continue;
+                }
+                Histogram histogram = (Histogram) series.getValue();
+                // buckets are cumulative in the exposition format
+                long cumulative = 0;
+                String separator = labels.isEmpty() ? "" : ",";
+                for (int i = 0; i < BUCKETS.length; i++) {
+                    cumulative += histogram.buckets[i].sum();
+                    out.write(String.format("%s_bucket{%s%sle=\"%s\"} %d\n", name, labels, separator, BUCKET_LABELS[i], cumulative));
+                }
+                long count = histogram.count.sum();
+                out.write(String.format("%s_bucket{%s%sle=\"+Inf\"} %d\n", name, labels, separator, count));
+                out.write(String.format("%s_sum%s %s\n", name, braces(labels), histogram.sum.sum()));
+                out.write(String.format("%s_count%s %d\n", name, braces(labels), count));
+            }
+        }
+    }
+
+    /**
+     * Get the series of a metric, creating the metric and the series if
+     * needed
+     *
+     * @param name Metric name
+     * @param help Description of the metric
+     * @param type Metric type (counter or histogram)
+     * @param labels Label names and values
+     * @return Counter or Histogram
+     */
+    private static Object getSeries(String name, String help, String type, String... labels) {
+        Family family = FAMILIES.computeIfAbsent(name, (n) -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(String.format("Metric %s is a %s", name, family.type));
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            key.append(i == 0 ? "" : ",").append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return family.series.computeIfAbsent(key.toString(), (k) -> type.equals("counter") ? new Counter() : new Histogram());
+    }
+
+    /**
+     * Returns label set in braces
+     *
+     * @param labels Label set without braces
+     * @return Label set in braces or empty string if there are no labels
+     */
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    /**
+     * Returns label value escaped for the exposition format
+     *
+     * @param value Label value
+     * @return Escaped value
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Metric with its series by label set
+     */
+    private static class Family {
+
+        private final String help;
+        private final String type;
+        private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Series of a counter
+     */
+    private static class Counter {
+
+        private final LongAdder value = new LongAdder();
+    }
+
+    /**
+     * Series of a histogram (counts per bucket are not cumulative)
+     */
+    private static class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+    }
+}
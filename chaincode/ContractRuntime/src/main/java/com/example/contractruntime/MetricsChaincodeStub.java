@@ -0,0 +1,189 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Stub recording the state accesses of a chaincode in the metrics registry:
+ * the number and size of the values read and written, the number of queries
+ * and of the rows they returned, and the latency of the invocations of other
+ * chaincodes. Placed below the CachingChaincodeStub, so it counts the calls
+ * that reach the peer.
+ *
+ * @author karthik
+ */
+public class MetricsChaincodeStub extends ForwardingChaincodeStub {
+
+    private final String chaincode; // name of the chaincode (metric label)
+
+    public MetricsChaincodeStub(ChaincodeStub delegate, String chaincode) {
+        super(delegate);
+        this.chaincode = chaincode;
+    }
+
+    @Override
+    public byte[] getState(String key) {
+        byte[] value = delegate.getState(key);
+        Metrics.increment("chaincode_state_reads_total", "Keys read from the peer", 1, "chaincode", chaincode);
+        Metrics.increment("chaincode_state_read_bytes_total", "Bytes of the values read from the peer", value == null ? 0 : value.length, "chaincode", chaincode);
+        return value;
+    }
+
+    @Override
+    public void putState(String key, byte[] value) {
+        delegate.putState(key, value);
+        Metrics.increment("chaincode_state_writes_total", "Keys written to the peer", 1, "chaincode", chaincode);
+        Metrics.increment("chaincode_state_write_bytes_total", "Bytes of the values written to the peer", value.length, "chaincode", chaincode);
+    }
+
+    @Override
+    public void delState(String key) {
+        delegate.delState(key);
+        Metrics.increment("chaincode_state_deletes_total", "Keys deleted on the peer", 1, "chaincode", chaincode);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+        return count("range", delegate.getStateByRange(startKey, endKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(String startKey, String endKey, int pageSize, String bookmark) {
+        return count("range", delegate.getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String compositeKey) {
+        return count("composite", delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+        return count("composite", delegate.getStateByPartialCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(CompositeKey compositeKey) {
+        return count("composite", delegate.getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(CompositeKey compositeKey, int pageSize, String bookmark) {
+        return count("composite", delegate.getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+        return count("rich", delegate.getQueryResult(query));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(String query, int pageSize, String bookmark) {
+        return count("rich", delegate.getQueryResultWithPagination(query, pageSize, bookmark));
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args, String channel) {
+        return measure(chaincodeName, () -> delegate.invokeChaincode(chaincodeName, args, channel));
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args) {
+        return measure(chaincodeName, () -> delegate.invokeChaincode(chaincodeName, args));
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args, String channel) {
+        return measure(chaincodeName, () -> delegate.invokeChaincodeWithStringArgs(chaincodeName, args, channel));
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args) {
+        return measure(chaincodeName, () -> delegate.invokeChaincodeWithStringArgs(chaincodeName, args));
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, String... args) {
+        return measure(chaincodeName, () -> delegate.invokeChaincodeWithStringArgs(chaincodeName, args));
+    }
+
+    /**
+     * Record the latency of an invocation of another chaincode
+     *
+     * @param target Name of the invoked chaincode
+     * @param invocation Invocation
+     * @return Response of the invoked chaincode
+     */
+    private Response measure(String target, Supplier<Response> invocation) {
+        long start = System.nanoTime();
+        Response response = invocation.get();
+        String status = response.getStatusCode() < Response.Status.ERROR_THRESHOLD.getCode() ? "success" : "error";
+        Metrics.observe("chaincode_invoke_chaincode_duration_seconds", "Latency of invocations of other chaincodes", System.nanoTime() - start, "chaincode", chaincode, "target", target, "status", status);
+        return response;
+    }
+
+    /**
+     * Count a query and wrap its results to count the rows as they are read
+     *
+     * @param type Query type (range, composite or rich)
+     * @param results Results of the query
+     * @return Counting results
+     */
+    private QueryResultsIteratorWithMetadata<KeyValue> count(String type, QueryResultsIterator<KeyValue> results) {
+        Metrics.increment("chaincode_queries_total", "Range, partial composite key and rich queries", 1, "chaincode", chaincode, "type", type);
+        return new CountingResults(results, chaincode, type);
+    }
+
+    /**
+     * Query results counting the rows read by the chaincode
+     */
+    private static class CountingResults implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final QueryResultsIterator<KeyValue> results;
+        private final String chaincode;
+        private final String type;
+
+        CountingResults(QueryResultsIterator<KeyValue> results, String chaincode, String type) {
+            this.results = results;
+            this.chaincode = chaincode;
+            this.type = type;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<KeyValue> iterator = results.iterator();
+            return new Iterator<KeyValue>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue next() {
+                    KeyValue kv = iterator.next();
+                    Metrics.increment("chaincode_query_rows_total", "Rows returned by queries", 1, "chaincode", chaincode, "type", type);
+                    return kv;
+                }
+            };
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return results instanceof QueryResultsIteratorWithMetadata ? ((QueryResultsIteratorWithMetadata<KeyValue>) results).getMetadata() : null;
+        }
+
+        @Override
+        public void close() throws Exception {
+            results.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * HTTP endpoint serving the metrics registry in the Prometheus text format at
+ * /metrics. The endpoint is started by ChaincodeLauncher when
+ * CHAINCODE_METRICS_PORT is set; CHAINCODE_METRICS_ADDRESS selects the
+ * address to bind to (all addresses by default, so the metrics can be scraped
+ * from outside the chaincode container). The readiness probe at /ready
+ * answers 200 once the chaincode has been warmed up and accepts transactions
+ * and 503 before.
+ *
+ * @author karthik
+ */
+public final class MetricsServer {
+
+    private static final Log LOG = LogFactory.getLog(MetricsServer.class);
+
+    private static HttpServer server; // running server (null until started)
+
+    private MetricsServer() {
+    }
+
+    /**
+     * Start the endpoint if CHAINCODE_METRICS_PORT is set. Does nothing if the
+     * endpoint is already running. Failing to start is logged and does not
+     * prevent the chaincode from starting.
+     */
+    public static synchronized void startFromEnv() {
+        String port = System.getenv("CHAINCODE_METRICS_PORT");
+        if ((server != null) || (port == null) || (port.isEmpty())) {
+            return;
+        }
+        String address = System.getenv("CHAINCODE_METRICS_ADDRESS");
+        try {
+            start(address == null || address.isEmpty() ? new InetSocketAddress(Integer.parseInt(port)) : new InetSocketAddress(address, Integer.parseInt(port)));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("Could not start metrics endpoint on port " + port, e);
+        }
+    }
+
+    /**
+     * Start the endpoint
+     *
+     * @param address Address and port to bind to
+     * @throws IOException if the port cannot be bound
+     */
+    public static synchronized void start(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", MetricsServer::handle);
+        server.createContext("/ready", MetricsServer::handleReady);
+        server.setExecutor(Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        LOG.info("Serving metrics on " + server.getAddress() + "/metrics");
+    }
+
+    /**
+     * Returns the running server
+     *
+     * @return Server or null if the endpoint is not running
+     */
+    public static synchronized HttpServer getServer() {
+        return server;
+    }
+
+    /**
+     * Handle a scrape of the metrics
+     *
+     * @param exchange HTTP request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringWriter metrics = new StringWriter();
+            Metrics.write(metrics);
+            byte[] body = metrics.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle a readiness probe
+     *
+     * @param exchange HTTP request and response
+     * @throws IOException if the response cannot be sent
+     */
+    private static void handleReady(HttpExchange exchange) throws IOException {
+        try {
+            exchange.sendResponseHeaders(ChaincodeLauncher.isReady() ? 200 : 503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Upgrades documents of one type to the current schema version. Documents are
+ * upgraded when they are read and written back in the transaction that read
+ * them; documents that are not read can be upgraded batch by batch with
+ * migrateRange. Step i upgrades a document from version i to version i + 1.
+ *
+ * @author karthik
+ * @param <T> Type of the document
+ */
+public class Migrator<T extends Versioned> {
+
+    private static final Log LOG = LogFactory.getLog(Migrator.class);
+
+    private final StateCodec<T> codec;
+    private final List<Step<T>> steps = new ArrayList<>();
+
+    public Migrator(StateCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Add the step upgrading documents to the next version
+     *
+     * @param step Migration step
+     * @return This migrator
+     */
+    public Migrator<T> step(Step<T> step) {
+        this.steps.add(step);
+        return this;
+    }
+
+    /**
+     * Get the current schema version
+     *
+     * @return Schema version
+     */
+    public int getVersion() {
+        return this.steps.size();
+    }
+
+    /**
+     * Read document from state and upgrade it if needed
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @return Document or null if the key does not exist
+     */
+    public T get(ChaincodeStub stub, String key) {
+        return upgrade(stub, key, codec.get(stub, key));
+    }
+
+    /**
+     * Decode document and upgrade it if needed
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @param value Encoded document
+     * @return Document or null if the value is empty
+     */
+    public T decode(ChaincodeStub stub, String key, byte[] value) {
+        return upgrade(stub, key, codec.decode(value));
+    }
+
+    /**
+     * Upgrade document to the current schema version and write it back if it
+     * is outdated
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key of the document
+     * @param document Document (may be null)
+     * @return The document
+     */
+    public T upgrade(ChaincodeStub stub, String key, T document) {
+        if ((document != null) && (document.getSchemaVersion() < getVersion())) {
+            int version = document.getSchemaVersion();
+            for (int i = version; i < getVersion(); i++) {
+                steps.get(i).apply(stub, key, document);
+            }
+            put(stub, key, document);
+            LOG.debug(String.format("Migrated %s from schema version %s to %s", key, version, getVersion()));
+        }
+        return document;
+    }
+
+    /**
+     * Write document in the current schema version
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @param document Document
+     */
+    public void put(ChaincodeStub stub, String key, T document) {
+        if (document.getSchemaVersion() < getVersion()) {
+            document.setSchemaVersion(getVersion());
+        }
+        codec.put(stub, key, document);
+    }
+
+    /**
+     * Upgrade a batch of the documents stored under simple keys, starting at
+     * the given key (see RangeBatch). Returns the key to continue from (empty
+     * when done).
+     *
+     * @param ctx Context of the transaction
+     * @param args Batch size and start key (empty string for the first batch)
+     * @return Error or Success Response with the next start key
+     */
+    public Response migrateRange(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(0));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
+        }
+        RangeBatch batch = RangeBatch.process(stub, args.get(1), pageSize, (key, value) -> {
+            T document = codec.decode(value);
+            if ((document == null) || (document.getSchemaVersion() >= getVersion())) {
+                return 0;
+            }
+            upgrade(stub, key, document);
+            return 1;
+        });
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Migrated %s documents to schema version %s. Next key: %s", batch.getProcessed(), getVersion(), batch.getNext()));
+        }
+        return ResponseUtils.newSuccessResponse("Migrate Success", batch.getNext().getBytes());
+    }
+
+    /**
+     * Count the outdated documents in one page of the documents stored under
+     * simple keys. Operators sum the counts over all pages to track the
+     * progress of a migration. Read-only, so the page can be paginated.
+     *
+     * @param ctx Context of the transaction
+     * @param args Page size and bookmark (empty string for the first page)
+     * @return Error or Success Response with JSON status of the page
+     */
+    public Response migrationStatus(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(0));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
+        }
+        MigrationStatus status = new MigrationStatus(getVersion());
+        QueryResultsIteratorWithMetadata<KeyValue> page = stub.getStateByRangeWithPagination("", "", pageSize, args.get(1));
+        for (KeyValue kv : page) {
+            T document = codec.decode(kv.getValue());
+            status.scanned++;
+            if ((document != null) && (document.getSchemaVersion() < getVersion())) {
+                status.unmigrated++;
+            }
+        }
+        status.bookmark = page.getMetadata().getFetchedRecordsCount() < pageSize ? "" : page.getMetadata().getBookmark();
+        return ResponseUtils.newSuccessResponse("Query Success", JSONParser.getJSON(status).getBytes());
+    }
+
+    /**
+     * Upgrade of a document from one schema version to the next
+     *
+     * @param <T> Type of the document
+     */
+    @FunctionalInterface
+    public interface Step<T> {
+
+        /**
+         * Upgrade the document in memory; writes of other keys the upgrade
+         * needs are made through the stub
+         *
+         * @param stub Interface between chaincode and peer
+         * @param key Key of the document
+         * @param document Document
+         */
+        void apply(ChaincodeStub stub, String key, T document);
+    }
+
+    /**
+     * Migration status of one page of documents
+     */
+    private static class MigrationStatus {
+
+        private final int schemaVersion; // current schema version
+        private int scanned; // number of documents in the page
+        private int unmigrated; // number of documents in an older schema version
+        private String bookmark; // bookmark of the next page (empty when done)
+
+        MigrationStatus(int schemaVersion) {
+            this.schemaVersion = schemaVersion;
+        }
+    }
+}
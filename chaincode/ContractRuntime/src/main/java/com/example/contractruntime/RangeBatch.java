@@ -0,0 +1,105 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+/**
+ * Batch of the documents stored under simple keys, for functions that write
+ * while walking the state (index builds and migrations). Fabric only allows
+ * paginated queries in read-only transactions, so a batch is cut from a plain
+ * range query: it ends after the given number of keys and the key after the
+ * last one processed is returned as the start key of the next batch.
+ *
+ * @author karthik
+ */
+public class RangeBatch {
+
+    public static final int MAX_PAGE_SIZE = 500; // upper bound for the number of keys processed in one page or batch
+
+    private final String next; // start key of the next batch (empty when done)
+    private final int processed; // number of items processed
+
+    /**
+     * Constructor for RangeBatch object
+     *
+     * @param next Start key of the next batch
+     * @param processed Number of items processed
+     */
+    private RangeBatch(String next, int processed) {
+        this.next = next;
+        this.processed = processed;
+    }
+
+    /**
+     * Check the size of a page or batch
+     *
+     * @param pageSize Page or batch size
+     * @return Error Response or null if the size is valid
+     */
+    public static Response checkPageSize(int pageSize) {
+        if ((pageSize < 1) || (pageSize > MAX_PAGE_SIZE)) {
+            return ResponseUtils.newErrorResponse(String.format("Page size must be between 1 and %s", MAX_PAGE_SIZE));
+        }
+        return null;
+    }
+
+    /**
+     * Process a batch of the documents stored under simple keys. Range queries
+     * only return simple keys, i.e. the documents and not the composite keys.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param start Start key (empty string for the first batch)
+     * @param size Number of documents in the batch
+     * @param action Action applied to each document
+     * @return Batch with the start key of the next batch
+     */
+    public static RangeBatch process(ChaincodeStub stub, String start, int size, Action action) {
+        int documents = 0;
+        int processed = 0;
+        for (KeyValue kv : stub.getStateByRange(start, "")) {
+            if (documents == size) {
+                return new RangeBatch(kv.getKey(), processed);
+            }
+            processed += action.apply(kv.getKey(), kv.getValue());
+            documents++;
+        }
+        return new RangeBatch("", processed);
+    }
+
+    /**
+     * Get the start key of the next batch
+     *
+     * @return Key or empty string if there are no more documents
+     */
+    public String getNext() {
+        return this.next;
+    }
+
+    /**
+     * Get the number of items processed, as counted by the action
+     *
+     * @return Number of items
+     */
+    public int getProcessed() {
+        return this.processed;
+    }
+
+    /**
+     * Action applied to each document of a batch
+     */
+    @FunctionalInterface
+    public interface Action {
+
+        /**
+         * Process the document
+         *
+         * @param key Key of the document
+         * @param value Value of the document
+         * @return Number of items processed (e.g. documents upgraded)
+         */
+        int apply(String key, byte[] value);
+    }
+}
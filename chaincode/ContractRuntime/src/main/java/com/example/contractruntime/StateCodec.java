@@ -0,0 +1,388 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Codec of a stored document type. JSON documents are written without a
+ * header, as by earlier versions, and are recognized by their first byte.
+ * Binary documents start with a header byte holding the format version and a
+ * flag for deflate compression, followed by the schema version of the
+ * document (since format version 2) and the fields in protobuf wire encoding
+ * as written by the subclass.
+ *
+ * @author karthik
+ * @param <T> Type of the document
+ */
+public abstract class StateCodec<T> {
+
+    private static final int BINARY_V1 = 0x01; // format version of binary documents without schema version
+    private static final int BINARY_V2 = 0x02; // format version of the binary encoding
+    private static final int DEFLATED = 0x80; // flag set in the header if the body is compressed
+    private static final int COMPRESSION_THRESHOLD = 1024; // minimum body size in bytes to try compression
+    private static final long NANOS = 1_000_000_000L;
+
+    private final Class<T> type;
+
+    protected StateCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Write the fields of the document
+     *
+     * @param out Output stream
+     * @param object Document
+     * @throws IOException If the stream cannot be written
+     */
+    protected abstract void write(CodedOutputStream out, T object) throws IOException;
+
+    /**
+     * Read the fields of the document
+     *
+     * @param in Input stream
+     * @return Document
+     * @throws IOException If the stream is malformed
+     */
+    protected abstract T read(CodedInputStream in) throws IOException;
+
+    /**
+     * Read the fields of the document, skipping bulky fields that are not
+     * needed if the full document is not requested. Reads the full document
+     * unless overridden.
+     *
+     * @param in Input stream
+     * @param full True to read the full document
+     * @return Document
+     * @throws IOException If the stream is malformed
+     */
+    protected T read(CodedInputStream in, boolean full) throws IOException {
+        return read(in);
+    }
+
+    /**
+     * Read JSON document, skipping bulky fields that are not needed if the
+     * full document is not requested. Reads the full document with Gson
+     * unless overridden.
+     *
+     * @param value JSON document
+     * @param full True to read the full document
+     * @return Document
+     * @throws IOException If the document is malformed
+     */
+    protected T readJSON(byte[] value, boolean full) throws IOException {
+        return JSONParser.getFromJSON(new String(value, StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * Encode document
+     *
+     * @param object Document
+     * @param encoding Encoding
+     * @return Encoded document
+     */
+    public byte[] encode(T object, Encoding encoding) {
+        if (encoding == Encoding.JSON) {
+            return JSONParser.getJSON(object).getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(body);
+            out.writeUInt32NoTag(object instanceof Versioned ? ((Versioned) object).getSchemaVersion() : 0);
+            write(out, object);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = body.toByteArray();
+        int header = BINARY_V2;
+        if (bytes.length >= COMPRESSION_THRESHOLD) {
+            byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                bytes = deflated;
+                header |= DEFLATED;
+            }
+        }
+        byte[] value = new byte[bytes.length + 1];
+        value[0] = (byte) header;
+        System.arraycopy(bytes, 0, value, 1, bytes.length);
+        return value;
+    }
+
+    /**
+     * Decode document in any supported encoding
+     *
+     * @param value Encoded document
+     * @return Document or null if the value is null or empty
+     */
+    public T decode(byte[] value) {
+        return decode(value, true);
+    }
+
+    /**
+     * Decode document in any supported encoding without the fields the codec
+     * skips for partial reads
+     *
+     * @param value Encoded document
+     * @return Partial document or null if the value is null or empty
+     */
+    public T decodeHead(byte[] value) {
+        return decode(value, false);
+    }
+
+    /**
+     * Decode document in any supported encoding
+     *
+     * @param value Encoded document
+     * @param full True to read the full document
+     * @return Document or null if the value is null or empty
+     */
+    private T decode(byte[] value, boolean full) {
+        if ((value == null) || (value.length == 0)) {
+            return null;
+        }
+        int header = value[0] & 0xff;
+        if ((header == '{') || (header == '[')) {
+            try {
+                return readJSON(value, full);
+            } catch (IOException | IllegalStateException e) {
+                throw new IllegalArgumentException("Malformed document", e);
+            }
+        }
+        int format = header & ~DEFLATED;
+        if ((format != BINARY_V1) && (format != BINARY_V2)) {
+            throw new IllegalArgumentException(String.format("Unsupported document format 0x%02x", header));
+        }
+        try {
+            CodedInputStream in;
+            if ((header & DEFLATED) != 0) {
+                in = CodedInputStream.newInstance(inflate(value));
+            } else {
+                in = CodedInputStream.newInstance(value, 1, value.length - 1);
+            }
+            int schemaVersion = format == BINARY_V1 ? 0 : in.readUInt32();
+            T object = read(in, full);
+            if ((schemaVersion != 0) && (object instanceof Versioned)) {
+                ((Versioned) object).setSchemaVersion(schemaVersion);
+            }
+            return object;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed document", e);
+        }
+    }
+
+    /**
+     * Read document from state
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @return Document or null if the key does not exist
+     */
+    public T get(ChaincodeStub stub, String key) {
+        return decode(stub.getState(key));
+    }
+
+    /**
+     * Write document to state in the configured encoding
+     *
+     * @param stub Interface between chaincode and peer
+     * @param key Key
+     * @param object Document
+     */
+    public void put(ChaincodeStub stub, String key, T object) {
+        stub.putState(key, encode(object, Encoding.get(stub)));
+    }
+
+    /**
+     * Encode and decode a sample document in every encoding, so that Gson
+     * builds its type adapters and the JIT compiles the codec before the
+     * first transaction arrives
+     *
+     * @param sample Sample document
+     * @param rounds Number of round trips per encoding
+     */
+    public void warmUp(T sample, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            for (Encoding encoding : Encoding.values()) {
+                byte[] value = encode(sample, encoding);
+                decode(value);
+                decodeHead(value);
+            }
+        }
+    }
+
+    /**
+     * Get class of the document
+     *
+     * @return Class
+     */
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Write string that may be null
+     *
+     * @param out Output stream
+     * @param value String
+     * @throws IOException If the stream cannot be written
+     */
+    protected static void writeString(CodedOutputStream out, String value) throws IOException {
+        out.writeBoolNoTag(value != null);
+        if (value != null) {
+            out.writeStringNoTag(value);
+        }
+    }
+
+    /**
+     * Read string that may be null
+     *
+     * @param in Input stream
+     * @return String
+     * @throws IOException If the stream is malformed
+     */
+    protected static String readString(CodedInputStream in) throws IOException {
+        return in.readBool() ? in.readStringRequireUtf8() : null;
+    }
+
+    /**
+     * Write ISO-8601 timestamp as epoch nanoseconds. Strings that are not
+     * timestamps in the canonical form are written as strings.
+     *
+     * @param out Output stream
+     * @param timestamp Timestamp
+     * @throws IOException If the stream cannot be written
+     */
+    protected static void writeTimestamp(CodedOutputStream out, String timestamp) throws IOException {
+        Instant instant = null;
+        if (timestamp != null) {
+            try {
+                instant = Instant.parse(timestamp);
+            } catch (DateTimeParseException e) {
+                instant = null;
+            }
+        }
+        if ((instant != null) && (instant.toString().equals(timestamp))) {
+            out.writeBoolNoTag(true);
+            out.writeSInt64NoTag(instant.getEpochSecond() * NANOS + instant.getNano());
+        } else {
+            out.writeBoolNoTag(false);
+            writeString(out, timestamp);
+        }
+    }
+
+    /**
+     * Read timestamp written by writeTimestamp
+     *
+     * @param in Input stream
+     * @return ISO-8601 timestamp
+     * @throws IOException If the stream is malformed
+     */
+    protected static String readTimestamp(CodedInputStream in) throws IOException {
+        if (in.readBool()) {
+            long nanos = in.readSInt64();
+            return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS), Math.floorMod(nanos, NANOS)).toString();
+        }
+        return readString(in);
+    }
+
+    /**
+     * Write identity id. SHA-256 fingerprints in hex are written as their 32
+     * bytes, other ids as strings.
+     *
+     * @param out Output stream
+     * @param id Id
+     * @throws IOException If the stream cannot be written
+     */
+    protected static void writeId(CodedOutputStream out, String id) throws IOException {
+        boolean fingerprint = TransactionContext.isFingerprint(id);
+        out.writeBoolNoTag(fingerprint);
+        if (fingerprint) {
+            byte[] bytes = new byte[32];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(id.substring(i * 2, i * 2 + 2), 16);
+            }
+            out.writeRawBytes(bytes);
+        } else {
+            writeString(out, id);
+        }
+    }
+
+    /**
+     * Read id written by writeId
+     *
+     * @param in Input stream
+     * @return Id
+     * @throws IOException If the stream is malformed
+     */
+    protected static String readId(CodedInputStream in) throws IOException {
+        if (in.readBool()) {
+            StringBuilder id = new StringBuilder(64);
+            for (byte b : in.readRawBytes(32)) {
+                id.append(String.format("%02x", b & 0xff));
+            }
+            return id.toString();
+        }
+        return readString(in);
+    }
+
+    /**
+     * Compress bytes
+     *
+     * @param bytes Bytes
+     * @return Deflated bytes
+     */
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress the body of a document
+     *
+     * @param value Encoded document with header
+     * @return Inflated body
+     * @throws IOException If the body is malformed
+     */
+    private static byte[] inflate(byte[] value) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, 1, value.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if ((inflated == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated document");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Context of one transaction. Values derived from the proposal (the creator
+ * and its MSP id, fingerprint and base64 encoding, and the timestamp) are
+ * computed once on first use.
+ *
+ * @author karthik
+ */
+public class TransactionContext {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ChaincodeStub stub;
+    private byte[] creator;
+    private String creatorBase64;
+    private String creatorFingerprint;
+    private String mspId;
+    private Instant txTimestamp;
+    private String timestamp;
+
+    public TransactionContext(ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    public ChaincodeStub getStub() {
+        return this.stub;
+    }
+
+    /**
+     * Get serialized identity of the invoking client
+     *
+     * @return Serialized identity
+     */
+    public byte[] getCreator() {
+        if (this.creator == null) {
+            this.creator = this.stub.getCreator();
+        }
+        return this.creator;
+    }
+
+    /**
+     * Get serialized identity of the invoking client in base64
+     *
+     * @return Base64 encoded serialized identity
+     */
+    public String getCreatorBase64() {
+        if (this.creatorBase64 == null) {
+            this.creatorBase64 = Base64.getEncoder().encodeToString(getCreator());
+        }
+        return this.creatorBase64;
+    }
+
+    /**
+     * Get SHA-256 fingerprint of the serialized identity of the invoking
+     * client
+     *
+     * @return Fingerprint in hex
+     */
+    public String getCreatorFingerprint() {
+        if (this.creatorFingerprint == null) {
+            this.creatorFingerprint = fingerprint(getCreator());
+        }
+        return this.creatorFingerprint;
+    }
+
+    /**
+     * Get organization of the invoking client
+     *
+     * @return MSP id without the "MSP" suffix
+     */
+    public String getMspId() {
+        if (this.mspId == null) {
+            this.mspId = new String(getCreator()).split("MSP")[0].replaceFirst("\\n", "").replaceFirst("\\f", "").replaceAll("[\u0000-\u001f]", "");
+        }
+        return this.mspId;
+    }
+
+    /**
+     * Get timestamp of the transaction
+     *
+     * @return Timestamp
+     */
+    public Instant getTxTimestamp() {
+        if (this.txTimestamp == null) {
+            this.txTimestamp = this.stub.getTxTimestamp();
+        }
+        return this.txTimestamp;
+    }
+
+    /**
+     * Get timestamp of the transaction in ISO-8601 format
+     *
+     * @return Timestamp string
+     */
+    public String getTimestamp() {
+        if (this.timestamp == null) {
+            this.timestamp = getTxTimestamp().toString();
+        }
+        return this.timestamp;
+    }
+
+    /**
+     * Returns true if the string is a SHA-256 fingerprint in hex, as returned
+     * by fingerprint
+     *
+     * @param id Id
+     * @return True if the string is 64 lowercase hex digits
+     */
+    public static boolean isFingerprint(String id) {
+        return (id != null) && (id.length() == 64) && (id.chars().allMatch((c) -> ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))));
+    }
+
+    /**
+     * Get the SHA-256 fingerprint of a serialized identity
+     *
+     * @param identity Serialized identity
+     * @return Fingerprint in hex
+     */
+    public static String fingerprint(byte[] identity) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(identity);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
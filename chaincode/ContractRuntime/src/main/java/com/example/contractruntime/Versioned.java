@@ -0,0 +1,25 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.contractruntime;
+
+/**
+ * Document carrying the version of the schema it was written in. Documents
+ * written before schema versions were introduced have version 0.
+ *
+ * @author karthik
+ */
+public interface Versioned {
+
+    /**
+     * Gets the schema version of the document
+     *
+     * @return Schema version
+     */
+    int getSchemaVersion();
+
+    /**
+     * Sets the schema version of the document
+     *
+     * @param schemaVersion Schema version
+     */
+    void setSchemaVersion(int schemaVersion);
+}
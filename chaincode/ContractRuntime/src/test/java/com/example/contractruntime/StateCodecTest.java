@@ -0,0 +1,182 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package test.java.com.example.contractruntime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.StateCodec;
+import main.java.com.example.contractruntime.TransactionContext;
+import main.java.com.example.contractruntime.Versioned;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the JSON and binary (format version 1 and 2) encodings of
+ * StateCodec
+ *
+ * @author karthik
+ */
+public class StateCodecTest {
+
+    private static final String FINGERPRINT = TransactionContext.fingerprint("client".getBytes(StandardCharsets.UTF_8));
+    private static final NoteCodec CODEC = new NoteCodec();
+
+    @Test
+    public void testJSONRoundTrip() {
+        Note note = new Note("note", "2020-01-02T03:04:05.123456789Z", FINGERPRINT, 2);
+        byte[] value = CODEC.encode(note, Encoding.JSON);
+        assertEquals('{', value[0]);
+        assertNote(note, CODEC.decode(value));
+    }
+
+    @Test
+    public void testJSONWithoutSchemaVersion() {
+        Note note = CODEC.decode("{\"name\":\"note\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("note", note.name);
+        assertEquals(0, note.getSchemaVersion());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        Note note = new Note("note", "2020-01-02T03:04:05.123456789Z", FINGERPRINT, 2);
+        byte[] value = CODEC.encode(note, Encoding.BINARY);
+        assertEquals(0x02, value[0]);
+        assertNote(note, CODEC.decode(value));
+    }
+
+    @Test
+    public void testBinaryIdsAndTimestamps() {
+        // ids that are not fingerprints and timestamps that are not canonical are kept as strings
+        Note note = new Note("note", "2020-01-02T03:04:05.100Z", "Org1", 1);
+        assertNote(note, CODEC.decode(CODEC.encode(note, Encoding.BINARY)));
+        note = new Note(null, "yesterday", null, 1);
+        assertNote(note, CODEC.decode(CODEC.encode(note, Encoding.BINARY)));
+        // a fingerprint is written as its 32 bytes
+        byte[] fingerprint = CODEC.encode(new Note("", null, FINGERPRINT, 1), Encoding.BINARY);
+        byte[] string = CODEC.encode(new Note("", null, FINGERPRINT.toUpperCase(), 1), Encoding.BINARY);
+        assertTrue(fingerprint.length < string.length);
+    }
+
+    @Test
+    public void testBinaryDeflated() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            name.append("repeated ");
+        }
+        Note note = new Note(name.toString(), "2020-01-02T03:04:05Z", FINGERPRINT, 3);
+        byte[] value = CODEC.encode(note, Encoding.BINARY);
+        assertEquals(0x82, value[0] & 0xff);
+        assertTrue(value.length < name.length());
+        assertNote(note, CODEC.decode(value));
+    }
+
+    @Test
+    public void testBinaryV1() throws IOException {
+        // format version 1 has no schema version before the fields
+        Note note = new Note("note", "2020-01-02T03:04:05Z", FINGERPRINT, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(0x01);
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        CODEC.writeFields(out, note);
+        out.flush();
+        Note decoded = CODEC.decode(bytes.toByteArray());
+        assertNote(note, decoded);
+        assertEquals(0, decoded.getSchemaVersion());
+    }
+
+    @Test
+    public void testDecodeEmptyAndMalformed() {
+        assertNull(CODEC.decode(null));
+        assertNull(CODEC.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> CODEC.decode(new byte[]{0x05, 0x00}));
+        assertThrows(IllegalArgumentException.class, () -> CODEC.decode(new byte[]{0x02, (byte) 0xff}));
+    }
+
+    /**
+     * Assert that the notes are equal
+     *
+     * @param expected Expected note
+     * @param actual Actual note
+     */
+    private static void assertNote(Note expected, Note actual) {
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.time, actual.time);
+        assertEquals(expected.owner, actual.owner);
+        assertEquals(expected.getSchemaVersion(), actual.getSchemaVersion());
+    }
+
+    /**
+     * Document used by the tests
+     */
+    public static class Note implements Versioned {
+
+        private String name;
+        private String time;
+        private String owner;
+        private Integer schemaVersion;
+
+        public Note() {
+        }
+
+        Note(String name, String time, String owner, int schemaVersion) {
+            this.name = name;
+            this.time = time;
+            this.owner = owner;
+            this.schemaVersion = schemaVersion == 0 ? null : schemaVersion;
+        }
+
+        @Override
+        public int getSchemaVersion() {
+            return this.schemaVersion == null ? 0 : this.schemaVersion;
+        }
+
+        @Override
+        public void setSchemaVersion(int schemaVersion) {
+            this.schemaVersion = schemaVersion;
+        }
+    }
+
+    /**
+     * Codec of the test document
+     */
+    private static class NoteCodec extends StateCodec<Note> {
+
+        NoteCodec() {
+            super(Note.class);
+        }
+
+        @Override
+        protected void write(CodedOutputStream out, Note note) throws IOException {
+            writeString(out, note.name);
+            writeTimestamp(out, note.time);
+            writeId(out, note.owner);
+        }
+
+        @Override
+        protected Note read(CodedInputStream in) throws IOException {
+            Note note = new Note();
+            note.name = readString(in);
+            note.time = readTimestamp(in);
+            note.owner = readId(in);
+            return note;
+        }
+
+        /**
+         * Write the fields of the note as written after the header
+         *
+         * @param out Output stream
+         * @param note Note
+         * @throws IOException If the stream cannot be written
+         */
+        void writeFields(CodedOutputStream out, Note note) throws IOException {
+            write(out, note);
+        }
+    }
+}
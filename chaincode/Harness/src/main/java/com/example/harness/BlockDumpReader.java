@@ -0,0 +1,216 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the read and write sets of the transactions in blocks fetched from a
+ * peer and decoded to JSON, and prints the profiler report. Blocks are
+ * fetched and decoded with:
+ *
+ * peer channel fetch 12 block12.pb -c providerschannel
+ * configtxlator proto_decode --type common.Block --input block12.pb --output block12.json
+ *
+ * Arguments are the block files or directories of block files, in any order,
+ * and optionally top=N (entries per table, default 20).
+ *
+ * @author karthik
+ */
+public class BlockDumpReader {
+
+    private static final int ENDORSER_TRANSACTION = 3; // header type of chaincode transactions
+    private static final int TRANSACTIONS_FILTER = 2; // index of the validation codes in the block metadata
+    private static final String[] VALIDATION_CODES = {"VALID", "NIL_ENVELOPE", "BAD_PAYLOAD", "BAD_COMMON_HEADER", "BAD_CREATOR_SIGNATURE", "INVALID_ENDORSER_TRANSACTION", "INVALID_CONFIG_TRANSACTION", "UNSUPPORTED_TX_PAYLOAD", "BAD_PROPOSAL_TXID", "DUPLICATE_TXID", "ENDORSEMENT_POLICY_FAILURE", "MVCC_READ_CONFLICT", "PHANTOM_READ_CONFLICT"};
+
+    /**
+     * Profile the blocks and print the report
+     *
+     * @param args Block files or directories and optionally top=N
+     * @throws IOException if a block cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int top = 20;
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("top=")) {
+                top = Integer.parseInt(arg.substring("top=".length()));
+            } else if (Files.isDirectory(Paths.get(arg))) {
+                try (Stream<Path> paths = Files.list(Paths.get(arg))) {
+                    files.addAll(paths.filter((path) -> path.toString().endsWith(".json")).collect(Collectors.toList()));
+                }
+            } else {
+                files.add(Paths.get(arg));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: BlockDumpReader <block.json|directory>... [top=N]");
+            System.exit(2);
+        }
+        List<TxRecord> records = new ArrayList<>();
+        for (Path file : files) {
+            records.addAll(read(file));
+        }
+        // the profiler has to see the transactions in commit order
+        records.sort(Comparator.comparingLong(TxRecord::getBlock));
+        RWSetProfiler profiler = new RWSetProfiler();
+        records.forEach(profiler::record);
+        profiler.report(System.out, top);
+    }
+
+    /**
+     * Read the transactions of a decoded block, or of an array of decoded
+     * blocks
+     *
+     * @param file Path of the JSON file
+     * @return Records of the chaincode transactions in block order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<TxRecord> read(Path file) throws IOException {
+        JsonElement json;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            json = new JsonParser().parse(reader);
+        }
+        List<TxRecord> records = new ArrayList<>();
+        if (json.isJsonArray()) {
+            for (JsonElement block : json.getAsJsonArray()) {
+                records.addAll(readBlock(block.getAsJsonObject()));
+            }
+        } else {
+            records.addAll(readBlock(json.getAsJsonObject()));
+        }
+        return records;
+    }
+
+    /**
+     * Read the transactions of a decoded block
+     *
+     * @param block Block
+     * @return Records of the chaincode transactions
+     */
+    private static List<TxRecord> readBlock(JsonObject block) {
+        long number = getLong(path(block, "header", "number"));
+        byte[] codes = new byte[0];
+        JsonElement metadata = path(block, "metadata", "metadata");
+        if ((metadata != null) && (metadata.getAsJsonArray().size() > TRANSACTIONS_FILTER)) {
+            codes = Base64.getDecoder().decode(metadata.getAsJsonArray().get(TRANSACTIONS_FILTER).getAsString());
+        }
+        List<TxRecord> records = new ArrayList<>();
+        JsonArray envelopes = path(block, "data", "data").getAsJsonArray();
+        for (int i = 0; i < envelopes.size(); i++) {
+            JsonObject payload = envelopes.get(i).getAsJsonObject().getAsJsonObject("payload");
+            JsonElement header = path(payload, "header", "channel_header");
+            if ((header == null) || (getLong(header.getAsJsonObject().get("type")) != ENDORSER_TRANSACTION)) {
+                continue;
+            }
+            String txId = header.getAsJsonObject().get("tx_id").getAsString();
+            int code = i < codes.length ? codes[i] & 0xff : 0;
+            String validation = code < VALIDATION_CODES.length ? VALIDATION_CODES[code] : "CODE_" + code;
+            JsonObject action = path(payload, "data", "actions").getAsJsonArray().get(0).getAsJsonObject().getAsJsonObject("payload");
+            JsonElement spec = path(action, "chaincode_proposal_payload", "input", "chaincode_spec");
+            String chaincode = getString(path(spec, "chaincode_id", "name"));
+            JsonElement args = path(spec, "input", "args");
+            String function = (args == null) || (args.getAsJsonArray().size() == 0) ? "" : new String(Base64.getDecoder().decode(args.getAsJsonArray().get(0).getAsString()), StandardCharsets.UTF_8);
+            TxRecord record = new TxRecord(number, i, txId, chaincode, function, validation);
+            JsonElement nsRwsets = path(action, "action", "proposal_response_payload", "extension", "results", "ns_rwset");
+            if (nsRwsets != null) {
+                for (JsonElement nsRwset : nsRwsets.getAsJsonArray()) {
+                    readRwset(record, nsRwset.getAsJsonObject());
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Add the reads, writes and range queries of one namespace to a record
+     *
+     * @param record Transaction record
+     * @param nsRwset Read and write set of the namespace
+     */
+    private static void readRwset(TxRecord record, JsonObject nsRwset) {
+        String namespace = nsRwset.get("namespace").getAsString();
+        JsonObject rwset = nsRwset.getAsJsonObject("rwset");
+        if (rwset == null) {
+            return;
+        }
+        for (JsonElement read : array(rwset, "reads")) {
+            JsonObject version = read.getAsJsonObject().getAsJsonObject("version");
+            // a key that did not exist is read without version
+            String readVersion = version == null ? null : getLong(version.get("block_num")) + ":" + getLong(version.get("tx_num"));
+            record.getReads().add(new TxRecord.Read(namespace, read.getAsJsonObject().get("key").getAsString(), readVersion));
+        }
+        for (JsonElement write : array(rwset, "writes")) {
+            JsonElement delete = write.getAsJsonObject().get("is_delete");
+            record.getWrites().add(new TxRecord.Write(namespace, write.getAsJsonObject().get("key").getAsString(), (delete != null) && (delete.getAsBoolean())));
+        }
+        for (JsonElement range : array(rwset, "range_queries_info")) {
+            record.getRanges().add(new TxRecord.Range(namespace, getString(range.getAsJsonObject().get("start_key")), getString(range.getAsJsonObject().get("end_key"))));
+        }
+    }
+
+    /**
+     * Returns the element at a path of member names
+     *
+     * @param element Root element
+     * @param names Member names
+     * @return Element or null if a member is missing
+     */
+    private static JsonElement path(JsonElement element, String... names) {
+        for (String name : names) {
+            if ((element == null) || (!element.isJsonObject())) {
+                return null;
+            }
+            element = element.getAsJsonObject().get(name);
+        }
+        return element;
+    }
+
+    /**
+     * Returns array member, empty if missing (default values are omitted in
+     * the decoded blocks)
+     *
+     * @param object Object
+     * @param name Member name
+     * @return Array
+     */
+    private static JsonArray array(JsonObject object, String name) {
+        JsonElement array = object.get(name);
+        return (array == null) || (array.isJsonNull()) ? new JsonArray() : array.getAsJsonArray();
+    }
+
+    /**
+     * Returns number given as JSON number or string, 0 if missing
+     *
+     * @param element Element
+     * @return Number
+     */
+    private static long getLong(JsonElement element) {
+        return (element == null) || (element.isJsonNull()) ? 0 : element.getAsLong();
+    }
+
+    /**
+     * Returns string, empty if missing
+     *
+     * @param element Element
+     * @return String
+     */
+    private static String getString(JsonElement element) {
+        return (element == null) || (element.isJsonNull()) ? "" : element.getAsString();
+    }
+}
@@ -0,0 +1,48 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+
+/**
+ * Client identity of simulated transactions. The certificate is a
+ * placeholder; the contracts only fingerprint the serialized identity and read
+ * the MSP id from it.
+ *
+ * @author karthik
+ */
+public class Identity {
+
+    private final String mspId; // MSP id (e.g. Org1MSP)
+    private final byte[] serialized; // serialized identity as returned by getCreator
+
+    /**
+     * Constructor for Identity object
+     *
+     * @param mspId MSP id
+     * @param name Name of the client within the MSP
+     */
+    public Identity(String mspId, String name) {
+        this.mspId = mspId;
+        String certificate = "-----BEGIN CERTIFICATE-----\n" + name + "@" + mspId + "\n-----END CERTIFICATE-----\n";
+        this.serialized = SerializedIdentity.newBuilder().setMspid(mspId).setIdBytes(ByteString.copyFromUtf8(certificate)).build().toByteArray();
+    }
+
+    /**
+     * Returns the MSP id
+     *
+     * @return MSP id
+     */
+    public String getMspId() {
+        return this.mspId;
+    }
+
+    /**
+     * Returns the serialized identity
+     *
+     * @return Serialized identity
+     */
+    public byte[] getSerialized() {
+        return this.serialized;
+    }
+}
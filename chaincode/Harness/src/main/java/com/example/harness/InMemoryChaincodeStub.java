@@ -0,0 +1,513 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeID;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeInput;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeInvocationSpec;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeSpec;
+import org.hyperledger.fabric.protos.peer.ChaincodeEventPackage.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.ChaincodeShim.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.ChaincodeProposalPayload;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.Proposal;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeBase;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Stub of one chaincode in a transaction simulated on the in-memory ledger.
+ * Reads see the committed state only (writes of the same transaction are not
+ * visible, as on the peer) and are recorded in the read set; range and
+ * partial composite key queries are recorded for the phantom read check; rich
+ * queries are not, as the peer does not re-execute them either. Contracts
+ * dispatched by the ContractRuntime Dispatcher run on a CachingChaincodeStub
+ * layered over this stub, so their point reads do see their own pending
+ * writes (and writes reach this stub only when the function succeeds), while
+ * their range and rich queries do not. As on the peer, paginated queries are
+ * only allowed in read-only transactions: a write after a paginated query
+ * and a paginated query after a write fail the simulation. Invocations of
+ * other chaincodes run in the same transaction under the namespace of the
+ * called chaincode. Private data, key history and key-level endorsement are
+ * not supported.
+ *
+ * @author karthik
+ */
+public class InMemoryChaincodeStub implements ChaincodeStub {
+
+    private static final String UNSPECIFIED_START_KEY = new String(Character.toChars(0x000001)); // first simple key
+    private static final String MAX_UNICODE_RUNE = new String(Character.toChars(0x10FFFF)); // end of a composite key prefix
+
+    private final InMemoryLedger ledger;
+    private final String namespace; // name of the chaincode
+    private final List<byte[]> args;
+    private final String txId;
+    private final Identity creator;
+    private final Instant timestamp;
+    private final ReadWriteSet rwset;
+    private SignedProposal proposal; // proposal of the transaction (built on first use)
+    private ChaincodeEvent event;
+
+    /**
+     * Constructor for InMemoryChaincodeStub object
+     *
+     * @param ledger Ledger the transaction is simulated on
+     * @param namespace Name of the chaincode
+     * @param args Function and parameters
+     * @param txId Transaction id
+     * @param creator Identity of the client
+     * @param timestamp Timestamp of the transaction
+     * @param rwset Read and write set of the transaction
+     * @param proposal Proposal of the transaction, or null if this chaincode
+     * is the one invoked by the client
+     */
+    InMemoryChaincodeStub(InMemoryLedger ledger, String namespace, List<byte[]> args, String txId, Identity creator, Instant timestamp, ReadWriteSet rwset, SignedProposal proposal) {
+        this.ledger = ledger;
+        this.namespace = namespace;
+        this.args = args;
+        this.txId = txId;
+        this.creator = creator;
+        this.timestamp = timestamp;
+        this.rwset = rwset;
+        this.proposal = proposal;
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return this.args;
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        List<String> strings = new ArrayList<>(this.args.size());
+        for (byte[] arg : this.args) {
+            strings.add(new String(arg, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    @Override
+    public String getFunction() {
+        return this.args.isEmpty() ? null : getStringArgs().get(0);
+    }
+
+    @Override
+    public List<String> getParameters() {
+        List<String> strings = getStringArgs();
+        return strings.isEmpty() ? strings : strings.subList(1, strings.size());
+    }
+
+    @Override
+    public String getTxId() {
+        return this.txId;
+    }
+
+    @Override
+    public String getChannelId() {
+        return this.ledger.getChannel();
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args, String channel) {
+        ChaincodeBase chaincode = this.ledger.getChaincode(chaincodeName);
+        if (chaincode == null) {
+            return ResponseUtils.newErrorResponse(String.format("Chaincode %s is not deployed", chaincodeName));
+        }
+        return chaincode.invoke(new InMemoryChaincodeStub(this.ledger, chaincodeName, args, this.txId, this.creator, this.timestamp, this.rwset, getSignedProposal()));
+    }
+
+    @Override
+    public Response invokeChaincode(String chaincodeName, List<byte[]> args) {
+        return invokeChaincode(chaincodeName, args, this.ledger.getChannel());
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args, String channel) {
+        List<byte[]> bytes = new ArrayList<>(args.size());
+        for (String arg : args) {
+            bytes.add(arg.getBytes(StandardCharsets.UTF_8));
+        }
+        return invokeChaincode(chaincodeName, bytes, channel);
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, List<String> args) {
+        return invokeChaincodeWithStringArgs(chaincodeName, args, this.ledger.getChannel());
+    }
+
+    @Override
+    public Response invokeChaincodeWithStringArgs(String chaincodeName, String... args) {
+        List<String> strings = new ArrayList<>();
+        Collections.addAll(strings, args);
+        return invokeChaincodeWithStringArgs(chaincodeName, strings);
+    }
+
+    @Override
+    public byte[] getState(String key) {
+        InMemoryLedger.VersionedValue value = this.ledger.get(this.namespace, key);
+        this.rwset.read(this.namespace, key, value == null ? 0 : value.version);
+        return value == null ? new byte[0] : value.value;
+    }
+
+    @Override
+    public String getStringState(String key) {
+        return new String(getState(key), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(String key) {
+        throw new UnsupportedOperationException("Key-level endorsement is not supported");
+    }
+
+    @Override
+    public void putState(String key, byte[] value) {
+        if ((key == null) || (key.isEmpty())) {
+            throw new IllegalArgumentException("Key must not be null or empty");
+        }
+        this.rwset.write(this.namespace, key, value);
+    }
+
+    @Override
+    public void putStringState(String key, String value) {
+        putState(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void setStateValidationParameter(String key, byte[] value) {
+        throw new UnsupportedOperationException("Key-level endorsement is not supported");
+    }
+
+    @Override
+    public void delState(String key) {
+        this.rwset.write(this.namespace, key, null);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(String startKey, String endKey) {
+        return range((startKey == null) || (startKey.isEmpty()) ? UNSPECIFIED_START_KEY : startKey, (endKey == null) || (endKey.isEmpty()) ? null : endKey, 0, "");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(String startKey, String endKey, int pageSize, String bookmark) {
+        this.rwset.paginatedQuery();
+        return range((startKey == null) || (startKey.isEmpty()) ? UNSPECIFIED_START_KEY : startKey, (endKey == null) || (endKey.isEmpty()) ? null : endKey, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String compositeKey) {
+        return range(compositeKey, compositeKey + MAX_UNICODE_RUNE, 0, "");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(String objectType, String... attributes) {
+        return getStateByPartialCompositeKey(createCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(CompositeKey compositeKey) {
+        return getStateByPartialCompositeKey(compositeKey.toString());
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(CompositeKey compositeKey, int pageSize, String bookmark) {
+        this.rwset.paginatedQuery();
+        return range(compositeKey.toString(), compositeKey.toString() + MAX_UNICODE_RUNE, pageSize, bookmark);
+    }
+
+    /**
+     * Execute range query and record it in the read set. The bookmark of a
+     * page is the first key of the next page.
+     *
+     * @param startKey First key (inclusive)
+     * @param endKey End key (exclusive, null for no end)
+     * @param pageSize Page size (0 for no paging)
+     * @param bookmark Bookmark (empty string for the first page)
+     * @return Results
+     */
+    private QueryResultsIteratorWithMetadata<KeyValue> range(String startKey, String endKey, int pageSize, String bookmark) {
+        String start = (bookmark == null) || (bookmark.isEmpty()) ? startKey : bookmark;
+        ReadWriteSet.RangeRead read = new ReadWriteSet.RangeRead(this.namespace, start, endKey);
+        this.rwset.range(read);
+        List<KeyValue> results = new ArrayList<>();
+        String next = "";
+        for (Map.Entry<String, InMemoryLedger.VersionedValue> kv : this.ledger.getRange(this.namespace, start, endKey).entrySet()) {
+            if ((pageSize > 0) && (results.size() == pageSize)) {
+                next = kv.getKey();
+                break;
+            }
+            results.add(new Entry(kv.getKey(), kv.getValue().value, kv.getValue().version));
+        }
+        return new Results(results, read, next.isEmpty(), next);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(String objectType, String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(String query) {
+        return richQuery(query, 0, "");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(String query, int pageSize, String bookmark) {
+        this.rwset.paginatedQuery();
+        return richQuery(query, pageSize, bookmark);
+    }
+
+    /**
+     * Execute rich query. The bookmark of a page is the last key returned.
+     *
+     * @param query CouchDB selector query
+     * @param pageSize Page size (0 for no paging)
+     * @param bookmark Bookmark (empty string for the first page)
+     * @return Results
+     */
+    private QueryResultsIteratorWithMetadata<KeyValue> richQuery(String query, int pageSize, String bookmark) {
+        RichQuery richQuery = new RichQuery(query);
+        int limit = pageSize > 0 ? Math.min(pageSize, richQuery.getLimit()) : richQuery.getLimit();
+        NavigableMap<String, InMemoryLedger.VersionedValue> values = this.ledger.getRange(this.namespace, "", null);
+        if ((bookmark != null) && (!bookmark.isEmpty())) {
+            // the bookmark of a rich query is the last key returned
+            values = values.tailMap(bookmark, false);
+        }
+        List<KeyValue> results = new ArrayList<>();
+        String last = "";
+        for (Map.Entry<String, InMemoryLedger.VersionedValue> kv : values.entrySet()) {
+            if (results.size() == limit) {
+                break;
+            }
+            if (richQuery.matches(kv.getKey(), kv.getValue().value)) {
+                results.add(new Entry(kv.getKey(), kv.getValue().value, kv.getValue().version));
+                last = kv.getKey();
+            }
+        }
+        return new Results(results, null, true, last);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(String key) {
+        throw new UnsupportedOperationException("Key history is not supported");
+    }
+
+    @Override
+    public byte[] getPrivateData(String collection, String key) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(String collection, String key) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(String collection, String key) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public void putPrivateData(String collection, String key, byte[] value) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public void putPrivateData(String collection, String key, String value) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public String getPrivateDataUTF8(String collection, String key) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(String collection, String key, byte[] value) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public void delPrivateData(String collection, String key) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(String collection, String startKey, String endKey) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(String collection, String compositeKey) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(String collection, CompositeKey compositeKey) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(String collection, String objectType, String... attributes) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(String collection, String query) {
+        throw new UnsupportedOperationException("Private data is not supported");
+    }
+
+    @Override
+    public void setEvent(String name, byte[] payload) {
+        this.event = ChaincodeEvent.newBuilder().setChaincodeId(this.namespace).setTxId(this.txId).setEventName(name).setPayload(ByteString.copyFrom(payload)).build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return this.event;
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        if (this.proposal == null) {
+            ChaincodeInput.Builder input = ChaincodeInput.newBuilder();
+            for (byte[] arg : this.args) {
+                input.addArgs(ByteString.copyFrom(arg));
+            }
+            ChaincodeSpec spec = ChaincodeSpec.newBuilder().setChaincodeId(ChaincodeID.newBuilder().setName(this.namespace).build()).setInput(input.build()).build();
+            ChaincodeProposalPayload payload = ChaincodeProposalPayload.newBuilder().setInput(ChaincodeInvocationSpec.newBuilder().setChaincodeSpec(spec).build().toByteString()).build();
+            this.proposal = SignedProposal.newBuilder().setProposalBytes(Proposal.newBuilder().setPayload(payload.toByteString()).build().toByteString()).build();
+        }
+        return this.proposal;
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return this.timestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return this.creator.getSerialized();
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return new byte[0];
+    }
+
+    @Override
+    public String getMspId() {
+        return this.creator.getMspId();
+    }
+
+    /**
+     * Key and value returned by a query
+     */
+    private static class Entry implements KeyValue {
+
+        private final String key;
+        private final byte[] value;
+        private final long version;
+
+        Entry(String key, byte[] value, long version) {
+            this.key = key;
+            this.value = value;
+            this.version = version;
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return this.value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(this.value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Results of a query that records the keys in the range read as the
+     * chaincode iterates over them
+     */
+    private static class Results implements QueryResultsIteratorWithMetadata<KeyValue> {
+
+        private final List<KeyValue> results;
+        private final ReadWriteSet.RangeRead read; // range read to record the keys in (null for rich queries)
+        private final boolean complete; // true if the results reach the end of the range
+        private final QueryResponseMetadata metadata;
+
+        Results(List<KeyValue> results, ReadWriteSet.RangeRead read, boolean complete, String bookmark) {
+            this.results = results;
+            this.read = read;
+            this.complete = complete;
+            this.metadata = QueryResponseMetadata.newBuilder().setFetchedRecordsCount(results.size()).setBookmark(bookmark).build();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            Iterator<KeyValue> iterator = this.results.iterator();
+            if ((this.read != null) && (this.complete) && (!iterator.hasNext())) {
+                this.read.exhausted = true;
+            }
+            return new Iterator<KeyValue>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue next() {
+                    Entry kv = (Entry) iterator.next();
+                    if (read != null) {
+                        synchronized (read) {
+                            read.results.put(kv.getKey(), kv.version);
+                            if ((complete) && (!iterator.hasNext())) {
+                                read.exhausted = true;
+                            }
+                        }
+                    }
+                    return kv;
+                }
+            };
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return this.metadata;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeBase;
+
+/**
+ * In-memory world state with the chaincodes deployed on one channel.
+ * Transactions are simulated concurrently against the committed state and
+ * committed in blocks, where each transaction is validated the way the peer
+ * does: a transaction whose reads or range queries no longer match the state
+ * left by the earlier transactions (including the valid ones before it in the
+ * same block) is invalidated and its writes are dropped.
+ *
+ * @author karthik
+ */
+public class InMemoryLedger {
+
+    /**
+     * Order of keys in the state database (code point order, i.e. the order
+     * of the UTF-8 bytes)
+     */
+    static final Comparator<String> KEY_ORDER = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while ((i < a.length()) && (j < b.length())) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    };
+
+    /**
+     * Result of the validation of a transaction
+     */
+    public enum Validation {
+        VALID, // writes were applied
+        MVCC_READ_CONFLICT, // a key read by the transaction was changed
+        PHANTOM_READ_CONFLICT, // the result of a range query of the transaction changed
+        ENDORSEMENT_FAILURE // the chaincode returned an error, so the transaction was not submitted
+    }
+
+    private final String channel;
+    private final Map<String, NavigableMap<String, VersionedValue>> state = new HashMap<>(); // committed state by namespace
+    private final Map<String, ChaincodeBase> chaincodes = new LinkedHashMap<>(); // deployed chaincodes by name
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // simulations share the state, commits are exclusive
+    private final AtomicLong txCount = new AtomicLong();
+    private long height; // number of committed blocks
+
+    public InMemoryLedger(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Deploy chaincode on the channel
+     *
+     * @param name Chaincode name
+     * @param chaincode Chaincode
+     */
+    public void deploy(String name, ChaincodeBase chaincode) {
+        this.chaincodes.put(name, chaincode);
+    }
+
+    /**
+     * Simulate the initialization of a chaincode
+     *
+     * @param name Chaincode name
+     * @param args Function and parameters
+     * @param creator Identity of the client
+     * @param timestamp Timestamp of the transaction
+     * @return Simulated transaction
+     */
+    public Transaction init(String name, List<String> args, Identity creator, Instant timestamp) {
+        return simulate(name, args, creator, timestamp, true);
+    }
+
+    /**
+     * Simulate the invocation of a chaincode against the committed state
+     *
+     * @param name Chaincode name
+     * @param args Function and parameters
+     * @param creator Identity of the client
+     * @param timestamp Timestamp of the transaction
+     * @return Simulated transaction
+     */
+    public Transaction simulate(String name, List<String> args, Identity creator, Instant timestamp) {
+        return simulate(name, args, creator, timestamp, false);
+    }
+
+    /**
+     * Simulate a transaction under the read lock so that no block is
+     * committed while it runs
+     *
+     * @param name Chaincode name
+     * @param args Function and parameters
+     * @param creator Identity of the client
+     * @param timestamp Timestamp of the transaction
+     * @param init True to call init instead of invoke
+     * @return Simulated transaction
+     */
+    private Transaction simulate(String name, List<String> args, Identity creator, Instant timestamp, boolean init) {
+        ChaincodeBase chaincode = this.chaincodes.get(name);
+        if (chaincode == null) {
+            throw new IllegalArgumentException(String.format("Chaincode %s is not deployed", name));
+        }
+        String txId = String.format("%064x", this.txCount.incrementAndGet());
+        ReadWriteSet rwset = new ReadWriteSet();
+        List<byte[]> bytes = new ArrayList<>(args.size());
+        for (String arg : args) {
+            bytes.add(arg.getBytes(StandardCharsets.UTF_8));
+        }
+        InMemoryChaincodeStub stub = new InMemoryChaincodeStub(this, name, bytes, txId, creator, timestamp, rwset, null);
+        this.lock.readLock().lock();
+        try {
+            long start = System.nanoTime();
+            Response response = init ? chaincode.init(stub) : chaincode.invoke(stub);
+            return new Transaction(txId, name, args.isEmpty() ? "" : args.get(0), response, rwset, System.nanoTime() - start);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Validate and commit a block of simulated transactions
+     *
+     * @param block Transactions in order
+     * @return Validation result of each transaction
+     */
+    public List<Validation> commit(List<Transaction> block) {
+        List<Validation> results = new ArrayList<>(block.size());
+        this.lock.writeLock().lock();
+        try {
+            this.height++;
+            for (int i = 0; i < block.size(); i++) {
+                Transaction tx = block.get(i);
+                Validation validation = validate(tx);
+                if (validation == Validation.VALID) {
+                    long version = (this.height << 32) | i;
+                    for (Map.Entry<String, Map<String, byte[]>> ns : tx.getReadWriteSet().getWrites().entrySet()) {
+                        NavigableMap<String, VersionedValue> values = getNamespace(ns.getKey());
+                        for (Map.Entry<String, byte[]> write : ns.getValue().entrySet()) {
+                            if (write.getValue() == null) {
+                                values.remove(write.getKey());
+                            } else {
+                                values.put(write.getKey(), new VersionedValue(write.getValue(), version));
+                            }
+                        }
+                    }
+                }
+                results.add(validation);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * Validate transaction against the committed state
+     *
+     * @param tx Transaction
+     * @return Validation result
+     */
+    private Validation validate(Transaction tx) {
+        if (tx.getResponse().getStatus() != Response.Status.SUCCESS) {
+            return Validation.ENDORSEMENT_FAILURE;
+        }
+        for (Map.Entry<String, Map<String, Long>> ns : tx.getReadWriteSet().getReads().entrySet()) {
+            for (Map.Entry<String, Long> read : ns.getValue().entrySet()) {
+                if (getVersion(ns.getKey(), read.getKey()) != read.getValue()) {
+                    return Validation.MVCC_READ_CONFLICT;
+                }
+            }
+        }
+        for (ReadWriteSet.RangeRead range : tx.getReadWriteSet().getRanges()) {
+            String last = null;
+            for (String key : range.results.keySet()) {
+                last = key;
+            }
+            NavigableMap<String, VersionedValue> current;
+            if (range.exhausted) {
+                current = getRange(range.namespace, range.startKey, range.endKey);
+            } else if (last == null) {
+                continue; // nothing was iterated
+            } else {
+                current = getNamespace(range.namespace).subMap(range.startKey, true, last, true);
+            }
+            if (current.size() != range.results.size()) {
+                return Validation.PHANTOM_READ_CONFLICT;
+            }
+            Iterator<Map.Entry<String, Long>> expected = range.results.entrySet().iterator();
+            for (Map.Entry<String, VersionedValue> kv : current.entrySet()) {
+                Map.Entry<String, Long> read = expected.next();
+                if ((!kv.getKey().equals(read.getKey())) || (kv.getValue().version != read.getValue())) {
+                    return Validation.PHANTOM_READ_CONFLICT;
+                }
+            }
+        }
+        return Validation.VALID;
+    }
+
+    /**
+     * Get the number of committed blocks
+     *
+     * @return Block height
+     */
+    public long getHeight() {
+        return this.height;
+    }
+
+    String getChannel() {
+        return this.channel;
+    }
+
+    ChaincodeBase getChaincode(String name) {
+        return this.chaincodes.get(name);
+    }
+
+    /**
+     * Get committed value
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @return Value with version or null if the key does not exist
+     */
+    VersionedValue get(String namespace, String key) {
+        NavigableMap<String, VersionedValue> values = this.state.get(namespace);
+        return values == null ? null : values.get(key);
+    }
+
+    /**
+     * Get committed version
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @return Version or 0 if the key does not exist
+     */
+    long getVersion(String namespace, String key) {
+        VersionedValue value = get(namespace, key);
+        return value == null ? 0 : value.version;
+    }
+
+    /**
+     * Get committed values in a range
+     *
+     * @param namespace Chaincode namespace
+     * @param startKey First key (inclusive)
+     * @param endKey End key (exclusive, null for no end)
+     * @return Values in key order (read-only view)
+     */
+    NavigableMap<String, VersionedValue> getRange(String namespace, String startKey, String endKey) {
+        NavigableMap<String, VersionedValue> values = this.state.get(namespace);
+        if (values == null) {
+            return Collections.emptyNavigableMap();
+        }
+        return Collections.unmodifiableNavigableMap(endKey == null ? values.tailMap(startKey, true) : values.subMap(startKey, true, endKey, false));
+    }
+
+    private NavigableMap<String, VersionedValue> getNamespace(String namespace) {
+        return this.state.computeIfAbsent(namespace, (ns) -> new TreeMap<>(KEY_ORDER));
+    }
+
+    /**
+     * Committed value with the version of the transaction that wrote it
+     * (block number in the upper, transaction number in the lower 32 bits)
+     */
+    static class VersionedValue {
+
+        final byte[] value;
+        final long version;
+
+        VersionedValue(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
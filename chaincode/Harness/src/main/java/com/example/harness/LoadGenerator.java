@@ -0,0 +1,448 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import main.java.com.example.combinedcontract.CombinedContract;
+import main.java.com.example.incentivemechanism.IncentiveMechanism;
+import main.java.com.example.recordrelationshipcontract.RecordRelationshipContract;
+import main.java.com.example.summarycontract.SummaryContract;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+
+/**
+ * Load generator running a mix of operations against the contracts on the
+ * in-memory ledger, either deployed as three chaincodes (mode=separate) or as
+ * the combined chaincode (mode=combined). Each block of transactions is
+ * simulated concurrently and then committed; the report lists per operation
+ * the number of transactions, how they were validated, the conflict rate,
+ * the throughput and the percentiles of the simulation latency.
+ *
+ * Arguments are given as key=value: mode, storageMode (of the Summary
+ * Contracts, DOCUMENT or COMPOSITE), providers, users, transactions,
+ * blockSize, concurrency, mix (e.g. create=30,log=40,query=30 with the
+ * operations create, log, query, update, add, addBatch and settle),
+ * batchSize (references per addBatch), seed, verbose and profile (number of
+ * entries per table of the read and write set profile, 0 for no profile).
+ *
+ * @author karthik
+ */
+public class LoadGenerator {
+
+    private static final String CHANNEL = "providerschannel";
+    private static final Instant START = Instant.parse("2021-01-01T00:00:00Z"); // timestamp of the first block
+    private static final String[] OPERATIONS = {"create", "log", "query", "update", "add", "addBatch", "settle"};
+
+    private final Map<String, String> config = new LinkedHashMap<>();
+    private final InMemoryLedger ledger = new InMemoryLedger(CHANNEL);
+    private final Random random;
+    private final int users;
+    private final Identity[] providers;
+    private final Map<String, Integer> mix = new LinkedHashMap<>(); // weight of each operation
+    private final List<String[]> rrcs = new ArrayList<>(); // committed RRCs (reference and provider index)
+    private final Set<String> references = new HashSet<>(); // user and provider pairs with a reference
+    private final Map<String, Stats> stats = new LinkedHashMap<>(); // statistics by operation
+    private final RWSetProfiler profiler = new RWSetProfiler();
+    private int count; // number of generated references
+
+    /**
+     * Constructor for LoadGenerator object
+     *
+     * @param args Arguments as key=value
+     */
+    public LoadGenerator(String[] args) {
+        this.config.put("mode", "separate");
+        this.config.put("storageMode", "DOCUMENT");
+        this.config.put("providers", "4");
+        this.config.put("users", "1000");
+        this.config.put("transactions", "10000");
+        this.config.put("blockSize", "100");
+        this.config.put("concurrency", "4");
+        this.config.put("mix", "create=30,log=40,query=30");
+        this.config.put("batchSize", "100");
+        this.config.put("seed", "1");
+        this.config.put("verbose", "false");
+        this.config.put("profile", "0");
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if ((i < 1) || (!this.config.containsKey(arg.substring(0, i)))) {
+                throw new IllegalArgumentException(String.format("Unknown argument %s. Expecting key=value with one of the keys %s", arg, this.config.keySet()));
+            }
+            this.config.put(arg.substring(0, i), arg.substring(i + 1));
+        }
+        if (!Arrays.asList("separate", "combined").contains(this.config.get("mode"))) {
+            throw new IllegalArgumentException("Mode must be separate or combined");
+        }
+        for (String weight : this.config.get("mix").split(",")) {
+            String[] parts = weight.split("=");
+            if ((parts.length != 2) || (!Arrays.asList(OPERATIONS).contains(parts[0]))) {
+                throw new IllegalArgumentException(String.format("Invalid mix entry %s. Expecting operation=weight with one of the operations %s", weight, Arrays.toString(OPERATIONS)));
+            }
+            this.mix.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        this.random = new Random(getInt("seed"));
+        this.users = getInt("users");
+        this.providers = new Identity[getInt("providers")];
+        for (int i = 0; i < this.providers.length; i++) {
+            this.providers[i] = new Identity(String.format("Org%dMSP", i + 1), "client");
+        }
+    }
+
+    /**
+     * Run the load generator and print the report
+     *
+     * @param args Arguments as key=value
+     * @throws Exception if a simulation fails unexpectedly
+     */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator(args);
+        if (!Boolean.parseBoolean(generator.config.get("verbose"))) {
+            // the contracts log every call, which would dominate the measurements
+            Logger root = Logger.getLogger("");
+            root.setLevel(Level.WARNING);
+            for (Handler handler : root.getHandlers()) {
+                handler.setLevel(Level.WARNING);
+            }
+        }
+        generator.setup();
+        generator.run();
+    }
+
+    /**
+     * Deploy and initialize the contracts, with every provider registered
+     * with the Incentive Mechanism
+     */
+    private void setup() {
+        boolean combined = this.config.get("mode").equals("combined");
+        if (combined) {
+            this.ledger.deploy("CombinedContract", new CombinedContract());
+        } else {
+            this.ledger.deploy("SummaryContract", new SummaryContract());
+            this.ledger.deploy("RecordRelationshipContract", new RecordRelationshipContract());
+            this.ledger.deploy("IncentiveMechanism", new IncentiveMechanism());
+        }
+        List<String> members = new ArrayList<>();
+        members.add("init");
+        for (Identity provider : this.providers) {
+            members.add(provider.getMspId());
+        }
+        for (Identity provider : this.providers) {
+            members.add("0");
+        }
+        List<Transaction> block = new ArrayList<>();
+        block.add(init("SummaryContract", Arrays.asList("init", this.config.get("storageMode"))));
+        block.add(init("RecordRelationshipContract", Arrays.asList("init")));
+        block.add(init("IncentiveMechanism", members));
+        for (Transaction tx : block) {
+            if (tx.getResponse().getStatus() != Response.Status.SUCCESS) {
+                throw new IllegalStateException(String.format("Init of %s failed: %s", tx.getChaincode(), tx.getResponse().getMessage()));
+            }
+        }
+        this.ledger.commit(block);
+    }
+
+    /**
+     * Simulate the initialization of a contract
+     *
+     * @param contract Contract name
+     * @param args Function and parameters
+     * @return Simulated transaction
+     */
+    private Transaction init(String contract, List<String> args) {
+        if (this.config.get("mode").equals("combined")) {
+            List<String> qualified = new ArrayList<>(args);
+            qualified.set(0, contract + ":" + args.get(0));
+            return this.ledger.init("CombinedContract", qualified, this.providers[0], START);
+        }
+        return this.ledger.init(contract, args, this.providers[0], START);
+    }
+
+    /**
+     * Generate, simulate and commit the transactions block by block
+     *
+     * @throws Exception if a simulation fails unexpectedly
+     */
+    private void run() throws Exception {
+        int transactions = getInt("transactions");
+        int blockSize = getInt("blockSize");
+        ExecutorService executor = Executors.newFixedThreadPool(getInt("concurrency"));
+        long simulation = 0;
+        long start = System.nanoTime();
+        try {
+            for (int n = 0; n < transactions; n += blockSize) {
+                Instant timestamp = START.plusSeconds(n / blockSize + 1);
+                List<Operation> operations = new ArrayList<>();
+                List<Future<Transaction>> futures = new ArrayList<>();
+                for (int i = 0; i < Math.min(blockSize, transactions - n); i++) {
+                    Operation operation = next();
+                    operations.add(operation);
+                    Instant txTimestamp = timestamp.plusMillis(i);
+                    futures.add(executor.submit(() -> simulate(operation, txTimestamp)));
+                }
+                long blockStart = System.nanoTime();
+                List<Transaction> block = new ArrayList<>();
+                for (Future<Transaction> future : futures) {
+                    block.add(future.get());
+                }
+                simulation += System.nanoTime() - blockStart;
+                List<InMemoryLedger.Validation> validations = this.ledger.commit(block);
+                for (int i = 0; i < block.size(); i++) {
+                    Operation operation = operations.get(i);
+                    if (validations.get(i) == InMemoryLedger.Validation.VALID) {
+                        operation.commit();
+                    } else {
+                        operation.abort();
+                    }
+                    this.stats.computeIfAbsent(operation.name, (name) -> new Stats()).add(block.get(i), validations.get(i));
+                    if (getInt("profile") > 0) {
+                        this.profiler.record(TxRecord.of(block.get(i), this.ledger.getHeight(), i, validations.get(i)));
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        report(System.nanoTime() - start, simulation);
+    }
+
+    /**
+     * Simulate an operation
+     *
+     * @param operation Operation
+     * @param timestamp Timestamp of the transaction
+     * @return Simulated transaction
+     */
+    private Transaction simulate(Operation operation, Instant timestamp) {
+        List<String> args = new ArrayList<>(operation.args);
+        if (this.config.get("mode").equals("combined")) {
+            args.set(0, operation.contract + ":" + args.get(0));
+            return this.ledger.simulate("CombinedContract", args, operation.creator, timestamp);
+        }
+        return this.ledger.simulate(operation.contract, args, operation.creator, timestamp);
+    }
+
+    /**
+     * Generate the next operation according to the mix. Operations on RRCs
+     * become creates until an RRC is committed.
+     *
+     * @return Operation
+     */
+    private Operation next() {
+        int total = 0;
+        for (int weight : this.mix.values()) {
+            total += weight;
+        }
+        int pick = this.random.nextInt(total);
+        String name = null;
+        for (Map.Entry<String, Integer> weight : this.mix.entrySet()) {
+            name = weight.getKey();
+            pick -= weight.getValue();
+            if (pick < 0) {
+                break;
+            }
+        }
+        if ((this.rrcs.isEmpty()) && (Arrays.asList("log", "query", "update").contains(name))) {
+            name = "create";
+        }
+        switch (name) {
+            case "create": {
+                String[] reference = reserve();
+                int provider = Integer.parseInt(reference[2]);
+                Operation operation = new Operation(name, "RecordRelationshipContract", this.providers[provider], "create", reference[1], reference[0], "10");
+                operation.onCommit = () -> this.rrcs.add(new String[]{reference[1], reference[2]});
+                operation.onAbort = () -> this.references.remove(reference[0] + ":" + provider);
+                return operation;
+            }
+            case "log": {
+                String[] rrc = this.rrcs.get(this.random.nextInt(this.rrcs.size()));
+                return new Operation(name, "RecordRelationshipContract", this.providers[Integer.parseInt(rrc[1])], "log", rrc[0], "WRITE", "UPDATE record");
+            }
+            case "query": {
+                String[] rrc = this.rrcs.get(this.random.nextInt(this.rrcs.size()));
+                return new Operation(name, "RecordRelationshipContract", this.providers[Integer.parseInt(rrc[1])], "query", rrc[0], "0");
+            }
+            case "update": {
+                // grant read access to the MSP of another provider
+                String[] rrc = this.rrcs.get(this.random.nextInt(this.rrcs.size()));
+                String msp = this.providers[this.random.nextInt(this.providers.length)].getMspId();
+                return new Operation(name, "RecordRelationshipContract", this.providers[Integer.parseInt(rrc[1])], "update", rrc[0], msp, "1", "1", "READ");
+            }
+            case "add": {
+                String[] reference = reserve();
+                int provider = Integer.parseInt(reference[2]);
+                Operation operation = new Operation(name, "SummaryContract", this.providers[provider], "add", reference[0], reference[1], this.providers[provider].getMspId());
+                operation.onAbort = () -> this.references.remove(reference[0] + ":" + provider);
+                return operation;
+            }
+            case "addBatch": {
+                StringBuilder json = new StringBuilder("[");
+                List<String> reserved = new ArrayList<>();
+                for (int i = 0; i < getInt("batchSize"); i++) {
+                    String[] reference = reserve();
+                    reserved.add(reference[0] + ":" + reference[2]);
+                    json.append(i == 0 ? "" : ",").append(String.format("{\"userId\":\"%s\",\"rrcRef\":\"%s\",\"providerId\":\"%s\"}", reference[0], reference[1], this.providers[Integer.parseInt(reference[2])].getMspId()));
+                }
+                Operation operation = new Operation(name, "SummaryContract", this.providers[0], "addBatch", json.append("]").toString());
+                operation.onAbort = () -> this.references.removeAll(reserved);
+                return operation;
+            }
+            default:
+                return new Operation(name, "IncentiveMechanism", this.providers[0], "settle", "100");
+        }
+    }
+
+    /**
+     * Pick a user and provider pair without a reference and reserve it. Gives
+     * up after a few attempts when most pairs are taken, in which case the
+     * operation is expected to fail endorsement.
+     *
+     * @return User id, new RRC reference and provider index
+     */
+    private String[] reserve() {
+        String userId = null;
+        int provider = 0;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            userId = String.format("%011d", this.random.nextInt(this.users));
+            provider = this.random.nextInt(this.providers.length);
+            if (this.references.add(userId + ":" + provider)) {
+                break;
+            }
+        }
+        return new String[]{userId, String.format("rrc%08d", this.count++), Integer.toString(provider)};
+    }
+
+    /**
+     * Print the statistics of the run
+     *
+     * @param elapsed Duration of the run in nanoseconds
+     * @param simulation Time spent simulating in nanoseconds
+     */
+    private void report(long elapsed, long simulation) {
+        System.out.println(String.format("mode=%s storageMode=%s providers=%d users=%d transactions=%s blockSize=%s concurrency=%s mix=%s", this.config.get("mode"), this.config.get("storageMode"), this.providers.length, this.users, this.config.get("transactions"), this.config.get("blockSize"), this.config.get("concurrency"), this.config.get("mix")));
+        System.out.println(String.format("%-10s %8s %8s %8s %8s %8s %9s %10s %9s %9s %9s", "operation", "count", "valid", "failed", "mvcc", "phantom", "conflict", "tx/s", "p50 ms", "p95 ms", "p99 ms"));
+        Stats total = new Stats();
+        for (Map.Entry<String, Stats> entry : this.stats.entrySet()) {
+            entry.getValue().print(entry.getKey(), elapsed);
+            total.addAll(entry.getValue());
+        }
+        total.print("total", elapsed);
+        System.out.println(String.format("elapsed %.3f s (simulation %.3f s, validation and commit %.3f s), height %d", elapsed / 1e9, simulation / 1e9, (elapsed - simulation) / 1e9, this.ledger.getHeight()));
+        if (getInt("profile") > 0) {
+            System.out.println();
+            this.profiler.report(System.out, getInt("profile"));
+        }
+    }
+
+    /**
+     * Returns integer argument
+     *
+     * @param key Argument name
+     * @return Value
+     */
+    private int getInt(String key) {
+        return Integer.parseInt(this.config.get(key));
+    }
+
+    /**
+     * Operation submitted as one transaction
+     */
+    private static class Operation {
+
+        final String name; // operation name in the mix
+        final String contract; // contract the operation is invoked on
+        final Identity creator; // client submitting the transaction
+        final List<String> args; // function and parameters
+        Runnable onCommit; // called when the transaction is valid
+        Runnable onAbort; // called when the transaction is invalid or failed endorsement
+
+        Operation(String name, String contract, Identity creator, String... args) {
+            this.name = name;
+            this.contract = contract;
+            this.creator = creator;
+            this.args = Arrays.asList(args);
+        }
+
+        void commit() {
+            if (this.onCommit != null) {
+                this.onCommit.run();
+            }
+        }
+
+        void abort() {
+            if (this.onAbort != null) {
+                this.onAbort.run();
+            }
+        }
+    }
+
+    /**
+     * Statistics of one operation
+     */
+    private static class Stats {
+
+        private final Map<InMemoryLedger.Validation, Integer> validations = new EnumMap<>(InMemoryLedger.Validation.class);
+        private final List<Long> latencies = new ArrayList<>(); // simulation latencies in nanoseconds
+
+        void add(Transaction tx, InMemoryLedger.Validation validation) {
+            this.validations.merge(validation, 1, Integer::sum);
+            this.latencies.add(tx.getLatency());
+        }
+
+        void addAll(Stats other) {
+            other.validations.forEach((validation, n) -> this.validations.merge(validation, n, Integer::sum));
+            this.latencies.addAll(other.latencies);
+        }
+
+        int get(InMemoryLedger.Validation validation) {
+            return this.validations.getOrDefault(validation, 0);
+        }
+
+        void print(String name, long elapsed) {
+            int count = this.latencies.size();
+            int valid = get(InMemoryLedger.Validation.VALID);
+            int failed = get(InMemoryLedger.Validation.ENDORSEMENT_FAILURE);
+            int mvcc = get(InMemoryLedger.Validation.MVCC_READ_CONFLICT);
+            int phantom = get(InMemoryLedger.Validation.PHANTOM_READ_CONFLICT);
+            // conflicts relative to the transactions that were endorsed and submitted
+            double conflict = count == failed ? 0 : 100.0 * (mvcc + phantom) / (count - failed);
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = this.latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            System.out.println(String.format("%-10s %8d %8d %8d %8d %8d %8.2f%% %10.1f %9.3f %9.3f %9.3f", name, count, valid, failed, mvcc, phantom, conflict, valid / (elapsed / 1e9),
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99)));
+        }
+
+        /**
+         * Returns percentile of sorted latencies (nearest rank)
+         *
+         * @param sorted Latencies in nanoseconds in ascending order
+         * @param p Percentile
+         * @return Latency in milliseconds
+         */
+        private static double percentile(long[] sorted, int p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / 1e6;
+        }
+    }
+}
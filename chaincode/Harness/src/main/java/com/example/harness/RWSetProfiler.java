@@ -0,0 +1,287 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Profiler of the read and write sets of committed transactions, fed in
+ * commit order. It counts the reads, writes and conflicts of every key and
+ * key class (object type of composite keys), and attributes each MVCC read
+ * conflict to the keys whose version changed and to the committed transaction
+ * that last wrote them. The report lists the hottest key classes and keys,
+ * the pairs of writing and invalidated functions and the conflict chains,
+ * i.e. the committed writes that invalidated the most later readers.
+ *
+ * @author karthik
+ */
+public class RWSetProfiler {
+
+    private static final String MAX_UNICODE_RUNE = new String(Character.toChars(0x10FFFF)); // end of a composite key prefix in range queries
+
+    private final Map<String, LastWrite> writers = new HashMap<>(); // last committed write by namespace and key
+    private final Map<String, KeyStats> keys = new HashMap<>(); // statistics by namespace and key
+    private final Map<String, KeyStats> classes = new HashMap<>(); // statistics by namespace and key class
+    private final Map<String, Integer> pairs = new HashMap<>(); // conflicts by writing and invalidated function
+    private final Map<String, Chain> chains = new LinkedHashMap<>(); // invalidated readers by committed write
+    private final Map<String, Integer> phantoms = new HashMap<>(); // phantom read conflicts by range and function
+    private final Map<String, Integer> validations = new TreeMap<>(); // transactions by validation code
+    private int transactions;
+    private int unattributed; // MVCC conflicts whose stale key was not written in the profiled blocks
+
+    /**
+     * Add a committed transaction. Transactions have to be added in commit
+     * order.
+     *
+     * @param tx Transaction
+     */
+    public void record(TxRecord tx) {
+        this.transactions++;
+        this.validations.merge(tx.getValidation(), 1, Integer::sum);
+        for (TxRecord.Read read : tx.getReads()) {
+            getStats(read.namespace, read.key).reads++;
+            getClassStats(read.namespace, read.key).reads++;
+        }
+        if (tx.getValidation().equals("VALID")) {
+            for (TxRecord.Write write : tx.getWrites()) {
+                getStats(write.namespace, write.key).writes++;
+                getClassStats(write.namespace, write.key).writes++;
+                this.writers.put(write.namespace + '\n' + write.key, new LastWrite(tx, write.delete));
+            }
+        } else if (tx.getValidation().equals("MVCC_READ_CONFLICT")) {
+            boolean attributed = false;
+            for (TxRecord.Read read : tx.getReads()) {
+                LastWrite last = this.writers.get(read.namespace + '\n' + read.key);
+                if ((last == null) || (Objects.equals(last.delete ? null : last.tx.getVersion(), read.version))) {
+                    continue;
+                }
+                attributed = true;
+                getStats(read.namespace, read.key).conflicts++;
+                getClassStats(read.namespace, read.key).conflicts++;
+                this.pairs.merge(label(last.tx) + " -> " + label(tx), 1, Integer::sum);
+                this.chains.computeIfAbsent(last.tx.getVersion() + '\n' + read.namespace + '\n' + read.key, (k) -> new Chain(last.tx, read.namespace, read.key)).victims.merge(label(tx), 1, Integer::sum);
+            }
+            if (!attributed) {
+                this.unattributed++;
+            }
+        } else if (tx.getValidation().equals("PHANTOM_READ_CONFLICT")) {
+            for (TxRecord.Range range : tx.getRanges()) {
+                this.phantoms.merge(String.format("%s [%s, %s) %s", range.namespace, display(range.startKey), range.endKey.isEmpty() ? "end" : display(range.endKey), label(tx)), 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Print the report
+     *
+     * @param out Output
+     * @param top Number of entries per table
+     */
+    public void report(PrintStream out, int top) {
+        out.println(String.format("Profiled %d transactions: %s", this.transactions, this.validations));
+        if (this.unattributed > 0) {
+            out.println(String.format("%d MVCC read conflicts could not be attributed (the stale keys were written before the profiled blocks)", this.unattributed));
+        }
+        Comparator<KeyStats> hottest = Comparator.comparingInt((KeyStats s) -> s.conflicts).thenComparingInt((s) -> s.writes).thenComparingInt((s) -> s.reads).reversed();
+        out.println();
+        out.println("Hottest key classes");
+        out.println(String.format("  %-28s %-36s %8s %10s %10s %10s", "namespace", "class", "keys", "reads", "writes", "conflicts"));
+        for (KeyStats stats : sorted(this.classes, hottest, top)) {
+            out.println(String.format("  %-28s %-36s %8d %10d %10d %10d", stats.namespace, stats.key, stats.count, stats.reads, stats.writes, stats.conflicts));
+        }
+        out.println();
+        out.println("Hottest keys");
+        out.println(String.format("  %-28s %-60s %10s %10s %10s", "namespace", "key", "reads", "writes", "conflicts"));
+        for (KeyStats stats : sorted(this.keys, hottest, top)) {
+            out.println(String.format("  %-28s %-60s %10d %10d %10d", stats.namespace, display(stats.key), stats.reads, stats.writes, stats.conflicts));
+        }
+        out.println();
+        out.println("Contended function pairs (committed writer -> invalidated reader)");
+        for (Map.Entry<String, Integer> pair : sorted(this.pairs, top)) {
+            out.println(String.format("  %8d  %s", pair.getValue(), pair.getKey()));
+        }
+        out.println();
+        out.println("Conflict chains (committed write -> readers invalidated by it)");
+        List<Chain> longest = new ArrayList<>(this.chains.values());
+        longest.sort(Comparator.comparingInt(Chain::size).reversed());
+        for (Chain chain : longest.subList(0, Math.min(top, longest.size()))) {
+            out.println(String.format("  %8d  %s %s wrote %s %s -> %s", chain.size(), chain.writer.getVersion(), label(chain.writer), chain.namespace, display(chain.key), chain.victims));
+        }
+        if (!this.phantoms.isEmpty()) {
+            out.println();
+            out.println("Phantom read conflicts by range and invalidated function");
+            for (Map.Entry<String, Integer> phantom : sorted(this.phantoms, top)) {
+                out.println(String.format("  %8d  %s", phantom.getValue(), phantom.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of a key
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @return Statistics
+     */
+    private KeyStats getStats(String namespace, String key) {
+        return this.keys.computeIfAbsent(namespace + '\n' + key, (k) -> new KeyStats(namespace, key));
+    }
+
+    /**
+     * Returns the statistics of the class of a key, counting the key when it
+     * is seen first
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @return Statistics
+     */
+    private KeyStats getClassStats(String namespace, String key) {
+        KeyStats stats = this.classes.computeIfAbsent(namespace + '\n' + getKeyClass(key), (k) -> new KeyStats(namespace, getKeyClass(key)));
+        if (getStats(namespace, key).counted) {
+            return stats;
+        }
+        getStats(namespace, key).counted = true;
+        stats.count++;
+        return stats;
+    }
+
+    /**
+     * Returns the class of a key: the object type of a composite key, or for
+     * simple keys the prefix up to a colon (the contract namespace of the
+     * combined chaincode)
+     *
+     * @param key Key
+     * @return Key class
+     */
+    static String getKeyClass(String key) {
+        if (key.startsWith("\u0000")) {
+            int end = key.indexOf('\u0000', 1);
+            return (end < 0 ? key.substring(1) : key.substring(1, end)) + "(...)";
+        }
+        int colon = key.indexOf(':');
+        return colon < 0 ? "simple key" : key.substring(0, colon + 1) + "*";
+    }
+
+    /**
+     * Returns printable form of a key (composite keys as type(attributes))
+     *
+     * @param key Key
+     * @return Printable key
+     */
+    static String display(String key) {
+        if (!key.startsWith("\u0000")) {
+            return key;
+        }
+        String[] parts = key.substring(1).split("\u0000", -1);
+        StringBuilder display = new StringBuilder(parts[0]).append('(');
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].isEmpty() && (i == parts.length - 1)) {
+                break;
+            }
+            display.append(i == 1 ? "" : ", ").append(parts[i].replace(MAX_UNICODE_RUNE, "*"));
+        }
+        return display.append(')').toString();
+    }
+
+    /**
+     * Returns the label of the function of a transaction
+     *
+     * @param tx Transaction
+     * @return Contract and function
+     */
+    private static String label(TxRecord tx) {
+        return tx.getFunction().contains(":") ? tx.getFunction() : tx.getChaincode() + ":" + tx.getFunction();
+    }
+
+    /**
+     * Returns the top statistics
+     *
+     * @param stats Statistics
+     * @param order Order
+     * @param top Number of entries
+     * @return Top entries in order
+     */
+    private static List<KeyStats> sorted(Map<String, KeyStats> stats, Comparator<KeyStats> order, int top) {
+        List<KeyStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(order);
+        return sorted.subList(0, Math.min(top, sorted.size()));
+    }
+
+    /**
+     * Returns the top counts
+     *
+     * @param counts Counts
+     * @param top Number of entries
+     * @return Top entries in descending order
+     */
+    private static List<Map.Entry<String, Integer>> sorted(Map<String, Integer> counts, int top) {
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        return sorted.subList(0, Math.min(top, sorted.size()));
+    }
+
+    /**
+     * Last committed write of a key
+     */
+    private static class LastWrite {
+
+        final TxRecord tx;
+        final boolean delete;
+
+        LastWrite(TxRecord tx, boolean delete) {
+            this.tx = tx;
+            this.delete = delete;
+        }
+    }
+
+    /**
+     * Statistics of a key or key class
+     */
+    private static class KeyStats {
+
+        final String namespace;
+        final String key; // key or key class
+        int count; // number of keys (key classes only)
+        int reads;
+        int writes;
+        int conflicts; // MVCC read conflicts attributed to the key
+        boolean counted; // true if the key was counted in its class
+
+        KeyStats(String namespace, String key) {
+            this.namespace = namespace;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Readers invalidated by one committed write of a key
+     */
+    private static class Chain {
+
+        final TxRecord writer;
+        final String namespace;
+        final String key;
+        final Map<String, Integer> victims = new TreeMap<>(); // invalidated transactions by function
+
+        Chain(TxRecord writer, String namespace, String key) {
+            this.writer = writer;
+            this.namespace = namespace;
+            this.key = key;
+        }
+
+        int size() {
+            int size = 0;
+            for (int n : this.victims.values()) {
+                size += n;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read and write set of a simulated transaction, keyed by chaincode namespace.
+ * As on the peer, the version of a key is recorded the first time it is read,
+ * writes are buffered until the transaction is committed (and not visible to
+ * reads of the same transaction) and range queries record the keys they
+ * returned for the phantom read check. Paginated queries are only allowed in
+ * read-only transactions, in either order.
+ *
+ * @author karthik
+ */
+public class ReadWriteSet {
+
+    private final Map<String, Map<String, Long>> reads = new HashMap<>(); // versions read by namespace (0 if absent)
+    private final Map<String, Map<String, byte[]>> writes = new LinkedHashMap<>(); // values written by namespace (null for delete)
+    private final List<RangeRead> ranges = new ArrayList<>(); // range queries executed
+    private boolean paginated; // true once a paginated query was executed
+
+    /**
+     * Record read of a key
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @param version Committed version (0 if the key does not exist)
+     */
+    synchronized void read(String namespace, String key, long version) {
+        this.reads.computeIfAbsent(namespace, (ns) -> new HashMap<>()).putIfAbsent(key, version);
+    }
+
+    /**
+     * Record write of a key
+     *
+     * @param namespace Chaincode namespace
+     * @param key Key
+     * @param value Value or null to delete the key
+     */
+    synchronized void write(String namespace, String key, byte[] value) {
+        if (this.paginated) {
+            throw new IllegalStateException("Transaction has already performed a paginated query; writes are not allowed");
+        }
+        this.writes.computeIfAbsent(namespace, (ns) -> new LinkedHashMap<>()).put(key, value);
+    }
+
+    /**
+     * Record paginated query
+     *
+     * @throws IllegalStateException if the transaction has written keys
+     */
+    synchronized void paginatedQuery() {
+        if (!this.writes.isEmpty()) {
+            throw new IllegalStateException("Transaction has already performed a write; paginated queries are supported only in a read-only transaction");
+        }
+        this.paginated = true;
+    }
+
+    /**
+     * Record range query
+     *
+     * @param range Range query
+     */
+    synchronized void range(RangeRead range) {
+        this.ranges.add(range);
+    }
+
+    Map<String, Map<String, Long>> getReads() {
+        return this.reads;
+    }
+
+    Map<String, Map<String, byte[]>> getWrites() {
+        return this.writes;
+    }
+
+    List<RangeRead> getRanges() {
+        return this.ranges;
+    }
+
+    /**
+     * Returns true if the transaction writes no keys
+     *
+     * @return True if read-only
+     */
+    public boolean isReadOnly() {
+        return this.writes.isEmpty();
+    }
+
+    /**
+     * Range query of a transaction. Only the keys the chaincode actually
+     * iterated over are recorded; an iteration that stopped early is checked
+     * up to the last key it returned.
+     */
+    static class RangeRead {
+
+        final String namespace; // chaincode namespace
+        final String startKey; // first key of the range (inclusive)
+        final String endKey; // end of the range (exclusive, null for no end)
+        final Map<String, Long> results = new LinkedHashMap<>(); // keys returned with their versions
+        boolean exhausted; // true if the iteration reached the end of the range
+
+        RangeRead(String namespace, String startKey, String endKey) {
+            this.namespace = namespace;
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+    }
+}
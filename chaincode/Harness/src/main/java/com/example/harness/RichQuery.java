@@ -0,0 +1,224 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Subset of CouchDB Mango queries used by the contracts: selectors with
+ * implicit equality, $eq, $ne, $gt, $gte, $lt, $lte, $in, $nin, $exists,
+ * $regex, $and and $or, dotted field paths (including the key as _id) and
+ * limit. use_index is accepted and ignored;
+ * results are returned in key order rather than index order, and sort is not
+ * supported.
+ *
+ * @author karthik
+ */
+public class RichQuery {
+
+    private final JsonObject selector;
+    private final int limit;
+
+    /**
+     * Parse query
+     *
+     * @param query Mango query
+     * @throws IllegalArgumentException If the query is not supported
+     */
+    public RichQuery(String query) {
+        JsonObject json;
+        try {
+            json = new JsonParser().parse(query).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed query", e);
+        }
+        if (!json.has("selector")) {
+            throw new IllegalArgumentException("Query has no selector");
+        }
+        if (json.has("sort")) {
+            throw new IllegalArgumentException("Sort is not supported");
+        }
+        this.selector = json.getAsJsonObject("selector");
+        this.limit = json.has("limit") ? json.get("limit").getAsInt() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Get the maximum number of results
+     *
+     * @return Limit (Integer.MAX_VALUE if not set)
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Returns true if the value is a JSON document matched by the selector
+     *
+     * @param key State key (the _id of the document)
+     * @param value State value
+     * @return True if matched
+     */
+    public boolean matches(String key, byte[] value) {
+        if ((value.length == 0) || (value[0] != '{')) {
+            return false; // not a JSON document (e.g. binary encoded)
+        }
+        try {
+            JsonObject document = new JsonParser().parse(new String(value, StandardCharsets.UTF_8)).getAsJsonObject();
+            document.addProperty("_id", key);
+            return matches(document, this.selector);
+        } catch (JsonParseException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static boolean matches(JsonObject document, JsonObject selector) {
+        for (Map.Entry<String, JsonElement> condition : selector.entrySet()) {
+            String field = condition.getKey();
+            if (field.equals("$and") || field.equals("$or")) {
+                boolean any = false;
+                boolean all = true;
+                for (JsonElement element : condition.getValue().getAsJsonArray()) {
+                    boolean match = matches(document, element.getAsJsonObject());
+                    any |= match;
+                    all &= match;
+                }
+                if (field.equals("$and") ? !all : !any) {
+                    return false;
+                }
+            } else if (!matches(getField(document, field), condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(JsonElement value, JsonElement condition) {
+        if ((!condition.isJsonObject()) || (!isOperator(condition.getAsJsonObject()))) {
+            return (value != null) && (compare(value, condition) == 0);
+        }
+        for (Map.Entry<String, JsonElement> operator : condition.getAsJsonObject().entrySet()) {
+            JsonElement operand = operator.getValue();
+            boolean match;
+            switch (operator.getKey()) {
+                case "$exists":
+                    match = (value != null) == operand.getAsBoolean();
+                    break;
+                case "$eq":
+                    match = (value != null) && (compare(value, operand) == 0);
+                    break;
+                case "$ne":
+                    match = (value != null) && (compare(value, operand) != 0);
+                    break;
+                case "$gt":
+                    match = (value != null) && (compare(value, operand) > 0);
+                    break;
+                case "$gte":
+                    match = (value != null) && (compare(value, operand) >= 0);
+                    break;
+                case "$lt":
+                    match = (value != null) && (compare(value, operand) < 0);
+                    break;
+                case "$lte":
+                    match = (value != null) && (compare(value, operand) <= 0);
+                    break;
+                case "$in":
+                    match = (value != null) && contains(operand.getAsJsonArray(), value);
+                    break;
+                case "$nin":
+                    match = (value != null) && !contains(operand.getAsJsonArray(), value);
+                    break;
+                case "$regex":
+                    match = (value != null) && (value.isJsonPrimitive()) && (value.getAsJsonPrimitive().isString()) && (Pattern.compile(operand.getAsString()).matcher(value.getAsString()).find());
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Operator %s is not supported", operator.getKey()));
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOperator(JsonObject condition) {
+        for (String key : condition.keySet()) {
+            if (key.startsWith("$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(JsonArray values, JsonElement value) {
+        for (JsonElement element : values) {
+            if (compare(value, element) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get field of the document by dotted path
+     *
+     * @param document Document
+     * @param path Field path
+     * @return Value or null if the field does not exist
+     */
+    private static JsonElement getField(JsonObject document, String path) {
+        JsonElement value = document;
+        for (String name : path.split("\\.")) {
+            if ((value == null) || (!value.isJsonObject())) {
+                return null;
+            }
+            value = value.getAsJsonObject().get(name);
+        }
+        return value;
+    }
+
+    /**
+     * Compare values in CouchDB collation order (null, booleans, numbers,
+     * strings, arrays, objects); arrays and objects are only compared for
+     * equality
+     *
+     * @param a Value
+     * @param b Value
+     * @return Negative, zero or positive
+     */
+    private static int compare(JsonElement a, JsonElement b) {
+        int rank = Integer.compare(rank(a), rank(b));
+        if (rank != 0) {
+            return rank;
+        }
+        if (a.isJsonPrimitive()) {
+            JsonPrimitive x = a.getAsJsonPrimitive();
+            JsonPrimitive y = b.getAsJsonPrimitive();
+            if (x.isBoolean()) {
+                return Boolean.compare(x.getAsBoolean(), y.getAsBoolean());
+            }
+            if (x.isNumber()) {
+                return Double.compare(x.getAsDouble(), y.getAsDouble());
+            }
+            return x.getAsString().compareTo(y.getAsString());
+        }
+        return a.equals(b) ? 0 : 1;
+    }
+
+    private static int rank(JsonElement value) {
+        if (value.isJsonNull()) {
+            return 0;
+        }
+        if (value.isJsonPrimitive()) {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            return primitive.isBoolean() ? 1 : primitive.isNumber() ? 2 : 3;
+        }
+        return value.isJsonArray() ? 4 : 5;
+    }
+}
@@ -0,0 +1,92 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import org.hyperledger.fabric.shim.Chaincode.Response;
+
+/**
+ * Class to represent a simulated transaction
+ *
+ * @author karthik
+ */
+public class Transaction {
+
+    private final String txId; // transaction id
+    private final String chaincode; // name of the invoked chaincode
+    private final String function; // invoked function
+    private final Response response; // response of the chaincode
+    private final ReadWriteSet rwset; // read and write set of the simulation
+    private final long latency; // duration of the simulation in nanoseconds
+
+    /**
+     * Constructor for Transaction object
+     *
+     * @param txId Transaction id
+     * @param chaincode Name of the invoked chaincode
+     * @param function Invoked function
+     * @param response Response of the chaincode
+     * @param rwset Read and write set of the simulation
+     * @param latency Duration of the simulation in nanoseconds
+     */
+    public Transaction(String txId, String chaincode, String function, Response response, ReadWriteSet rwset, long latency) {
+        this.txId = txId;
+        this.chaincode = chaincode;
+        this.function = function;
+        this.response = response;
+        this.rwset = rwset;
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the transaction id
+     *
+     * @return Transaction id
+     */
+    public String getTxId() {
+        return this.txId;
+    }
+
+    /**
+     * Returns the name of the invoked chaincode
+     *
+     * @return Name of the invoked chaincode
+     */
+    public String getChaincode() {
+        return this.chaincode;
+    }
+
+    /**
+     * Returns the invoked function
+     *
+     * @return Invoked function
+     */
+    public String getFunction() {
+        return this.function;
+    }
+
+    /**
+     * Returns the response of the chaincode
+     *
+     * @return Response of the chaincode
+     */
+    public Response getResponse() {
+        return this.response;
+    }
+
+    /**
+     * Returns the read and write set of the simulation
+     *
+     * @return Read and write set of the simulation
+     */
+    public ReadWriteSet getReadWriteSet() {
+        return this.rwset;
+    }
+
+    /**
+     * Returns the duration of the simulation in nanoseconds
+     *
+     * @return Duration of the simulation in nanoseconds
+     */
+    public long getLatency() {
+        return this.latency;
+    }
+}
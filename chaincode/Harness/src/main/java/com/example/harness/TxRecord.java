@@ -0,0 +1,206 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.harness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read and write set of a committed transaction as seen by the profiler, from
+ * the in-memory ledger or from a block of a peer. Versions are given as
+ * "block:tx" of the transaction that wrote the value (null if the key did not
+ * exist when it was read).
+ *
+ * @author karthik
+ */
+public class TxRecord {
+
+    private final long block; // number of the block
+    private final int index; // position of the transaction in the block
+    private final String txId;
+    private final String chaincode; // chaincode invoked by the client
+    private final String function; // function invoked by the client
+    private final String validation; // validation code (e.g. VALID or MVCC_READ_CONFLICT)
+    private final List<Read> reads = new ArrayList<>();
+    private final List<Write> writes = new ArrayList<>();
+    private final List<Range> ranges = new ArrayList<>();
+
+    /**
+     * Constructor for TxRecord object
+     *
+     * @param block Number of the block
+     * @param index Position of the transaction in the block
+     * @param txId Transaction id
+     * @param chaincode Chaincode invoked by the client
+     * @param function Function invoked by the client
+     * @param validation Validation code
+     */
+    public TxRecord(long block, int index, String txId, String chaincode, String function, String validation) {
+        this.block = block;
+        this.index = index;
+        this.txId = txId;
+        this.chaincode = chaincode;
+        this.function = function;
+        this.validation = validation;
+    }
+
+    /**
+     * Create record of a transaction committed on the in-memory ledger
+     *
+     * @param tx Simulated transaction
+     * @param block Number of the block
+     * @param index Position of the transaction in the block
+     * @param validation Validation result
+     * @return Record
+     */
+    public static TxRecord of(Transaction tx, long block, int index, InMemoryLedger.Validation validation) {
+        TxRecord record = new TxRecord(block, index, tx.getTxId(), tx.getChaincode(), tx.getFunction(), validation.toString());
+        ReadWriteSet rwset = tx.getReadWriteSet();
+        synchronized (rwset) {
+            for (Map.Entry<String, Map<String, Long>> ns : rwset.getReads().entrySet()) {
+                for (Map.Entry<String, Long> read : ns.getValue().entrySet()) {
+                    long version = read.getValue();
+                    record.reads.add(new Read(ns.getKey(), read.getKey(), version == 0 ? null : (version >>> 32) + ":" + (version & 0xffffffffL)));
+                }
+            }
+            for (Map.Entry<String, Map<String, byte[]>> ns : rwset.getWrites().entrySet()) {
+                for (Map.Entry<String, byte[]> write : ns.getValue().entrySet()) {
+                    record.writes.add(new Write(ns.getKey(), write.getKey(), write.getValue() == null));
+                }
+            }
+            for (ReadWriteSet.RangeRead range : rwset.getRanges()) {
+                record.ranges.add(new Range(range.namespace, range.startKey, range.endKey == null ? "" : range.endKey));
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Returns the version written by this transaction
+     *
+     * @return Version as block:tx
+     */
+    public String getVersion() {
+        return this.block + ":" + this.index;
+    }
+
+    /**
+     * Returns the number of the block
+     *
+     * @return Block number
+     */
+    public long getBlock() {
+        return this.block;
+    }
+
+    /**
+     * Returns the transaction id
+     *
+     * @return Transaction id
+     */
+    public String getTxId() {
+        return this.txId;
+    }
+
+    /**
+     * Returns the chaincode invoked by the client
+     *
+     * @return Chaincode name
+     */
+    public String getChaincode() {
+        return this.chaincode;
+    }
+
+    /**
+     * Returns the function invoked by the client
+     *
+     * @return Function name
+     */
+    public String getFunction() {
+        return this.function;
+    }
+
+    /**
+     * Returns the validation code
+     *
+     * @return Validation code
+     */
+    public String getValidation() {
+        return this.validation;
+    }
+
+    /**
+     * Returns the keys read with their versions
+     *
+     * @return Reads
+     */
+    public List<Read> getReads() {
+        return this.reads;
+    }
+
+    /**
+     * Returns the keys written
+     *
+     * @return Writes
+     */
+    public List<Write> getWrites() {
+        return this.writes;
+    }
+
+    /**
+     * Returns the range queries
+     *
+     * @return Ranges
+     */
+    public List<Range> getRanges() {
+        return this.ranges;
+    }
+
+    /**
+     * Key read by a transaction
+     */
+    public static class Read {
+
+        final String namespace;
+        final String key;
+        final String version; // version read (null if the key did not exist)
+
+        public Read(String namespace, String key, String version) {
+            this.namespace = namespace;
+            this.key = key;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Key written by a transaction
+     */
+    public static class Write {
+
+        final String namespace;
+        final String key;
+        final boolean delete;
+
+        public Write(String namespace, String key, boolean delete) {
+            this.namespace = namespace;
+            this.key = key;
+            this.delete = delete;
+        }
+    }
+
+    /**
+     * Range query of a transaction
+     */
+    public static class Range {
+
+        final String namespace;
+        final String startKey;
+        final String endKey; // end of the range (empty for no end)
+
+        public Range(String namespace, String startKey, String endKey) {
+            this.namespace = namespace;
+            this.startKey = startKey;
+            this.endKey = endKey;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package test.java.com.example.harness;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import main.java.com.example.harness.Identity;
+import main.java.com.example.harness.InMemoryLedger;
+import main.java.com.example.harness.InMemoryLedger.Validation;
+import main.java.com.example.harness.Transaction;
+import main.java.com.example.incentivemechanism.IncentiveMechanism;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeBase;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ResponseUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Endorser selection, compaction and migration of the Incentive Mechanism,
+ * run on the in-memory ledger
+ *
+ * @author karthik
+ */
+public class IncentiveMechanismTest {
+
+    private static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+    private static final Identity ORG1 = new Identity("Org1MSP", "client");
+
+    private InMemoryLedger ledger;
+
+    @BeforeEach
+    public void setUp() {
+        this.ledger = new InMemoryLedger("providerschannel");
+    }
+
+    @Test
+    public void testSelectEndorser() {
+        deploy("org1", "org2", "org3", "1", "9", "3");
+        // lowest significance, excluding the organization of the invoker
+        assertEquals("org3", select(60));
+        assertEquals(Validation.VALID, submit(invoke(120, "update", "org3", "10")));
+        assertEquals("13", query(130, "query", "org3"));
+        assertEquals("org2", select(180));
+        assertEquals(Validation.VALID, submit(invoke(200, "update", "org2", "1")));
+        assertEquals("org2", select(300));
+        // org3 was last updated 605 s ago, so it is selected although org2 has the lower significance
+        assertEquals("org3", select(725));
+        assertEquals("org2", select(719));
+    }
+
+    @Test
+    public void testCompact() {
+        deploy("org1", "org2", "org3", "1", "9", "3");
+        assertEquals(Validation.VALID, submit(invoke(120, "update", "org3", "10")));
+        assertEquals(Validation.VALID, submit(invoke(200, "update", "org2", "1")));
+        assertEquals(Validation.VALID, submit(invoke(210, "update", "org2", "1")));
+        // fold one increment of org2 (the increments are ordered by provider)
+        Transaction compact = invoke(300, "compact", "1");
+        assertEquals("1", compact.getResponse().getStringPayload());
+        assertEquals(Validation.VALID, submit(compact));
+        assertEquals("11", query(300, "query", "org2"));
+        assertEquals("org2", select(300));
+        compact = invoke(300, "compact", "10");
+        assertEquals("2", compact.getResponse().getStringPayload());
+        assertEquals(Validation.VALID, submit(compact));
+        assertEquals("0", invoke(300, "compact", "10").getResponse().getStringPayload());
+        assertEquals("11", query(300, "query", "org2"));
+        assertEquals("13", query(300, "query", "org3"));
+        // the selection now reads the indexes only
+        assertEquals("org2", select(300));
+        assertEquals("org3", select(725));
+    }
+
+    @Test
+    public void testFoldOnSelect() {
+        deploy("org1", "org2", "org3", "1", "9", "3");
+        List<Transaction> block = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            block.add(invoke(100, "update", "org3", "1"));
+        }
+        // increments are blind writes, so concurrent updates of a provider do not conflict
+        assertEquals(Collections.nCopies(101, Validation.VALID), this.ledger.commit(block));
+        Transaction select = invoke(200, "selectEndorser");
+        assertEquals("org2", select.getResponse().getStringPayload());
+        assertFalse(select.getReadWriteSet().isReadOnly());
+        assertEquals(Validation.VALID, submit(select));
+        assertEquals("0", invoke(200, "compact", "1000").getResponse().getStringPayload());
+        assertEquals("104", query(200, "query", "org3"));
+        assertEquals("org2", select(200));
+    }
+
+    @Test
+    public void testUpgradeOnRead() {
+        // members written before the indexes existed
+        this.ledger.deploy("IncentiveMechanism", new StateWriter());
+        String member = "{\"significance\":%s,\"lastUpdate\":\"" + START + "\"}";
+        assertEquals(Validation.VALID, submit(this.ledger.simulate("IncentiveMechanism",
+                Arrays.asList("org1", String.format(member, 1), "org2", String.format(member, 9), "org3", String.format(member, 3)), ORG1, START)));
+        this.ledger.deploy("IncentiveMechanism", new IncentiveMechanism());
+        assertEquals(Validation.ENDORSEMENT_FAILURE, submit(invoke(60, "selectEndorser")));
+        assertTrue(query(60, "migrationStatus", "10", "").contains("\"unmigrated\":3"));
+
+        // reading a member upgrades it, which adds it to the indexes
+        Transaction query = invoke(60, "query", "org2");
+        assertEquals("9", query.getResponse().getStringPayload());
+        assertFalse(query.getReadWriteSet().isReadOnly());
+        assertEquals(Validation.VALID, submit(query));
+        assertTrue(invoke(60, "query", "org2").getReadWriteSet().isReadOnly());
+        assertEquals("org2", select(60));
+        assertTrue(query(60, "migrationStatus", "10", "").contains("\"unmigrated\":2"));
+
+        // the members that are not read are upgraded batch by batch
+        Transaction migrate = invoke(60, "migrateRange", "1", "");
+        assertEquals("org2", migrate.getResponse().getStringPayload());
+        assertEquals(Validation.VALID, submit(migrate));
+        migrate = invoke(60, "migrateRange", "10", "org2");
+        assertEquals("", migrate.getResponse().getStringPayload());
+        assertEquals(Validation.VALID, submit(migrate));
+        assertTrue(query(60, "migrationStatus", "10", "").contains("\"unmigrated\":0"));
+        assertEquals("org3", select(60));
+    }
+
+    /**
+     * Deploy and initialize the Incentive Mechanism
+     *
+     * @param args Provider ids followed by their significance
+     */
+    private void deploy(String... args) {
+        this.ledger.deploy("IncentiveMechanism", new IncentiveMechanism());
+        List<String> init = new ArrayList<>();
+        init.add("init");
+        init.addAll(Arrays.asList(args));
+        assertEquals(Validation.VALID, submit(this.ledger.init("IncentiveMechanism", init, ORG1, START)));
+    }
+
+    /**
+     * Simulate an invocation of the Incentive Mechanism by a client of Org1
+     *
+     * @param seconds Seconds since the initialization
+     * @param args Function and parameters
+     * @return Simulated transaction
+     */
+    private Transaction invoke(long seconds, String... args) {
+        return this.ledger.simulate("IncentiveMechanism", Arrays.asList(args), ORG1, START.plusSeconds(seconds));
+    }
+
+    /**
+     * Simulate a query and check that it succeeds without writing
+     *
+     * @param seconds Seconds since the initialization
+     * @param args Function and parameters
+     * @return Payload of the response
+     */
+    private String query(long seconds, String... args) {
+        Transaction tx = invoke(seconds, args);
+        assertEquals(Response.Status.SUCCESS, tx.getResponse().getStatus(), tx.getResponse().getMessage());
+        assertTrue(tx.getReadWriteSet().isReadOnly());
+        return tx.getResponse().getStringPayload();
+    }
+
+    /**
+     * Select the next endorser for a client of Org1
+     *
+     * @param seconds Seconds since the initialization
+     * @return Selected provider
+     */
+    private String select(long seconds) {
+        return query(seconds, "selectEndorser");
+    }
+
+    /**
+     * Commit a transaction in its own block
+     *
+     * @param tx Transaction
+     * @return Validation result
+     */
+    private Validation submit(Transaction tx) {
+        return this.ledger.commit(Collections.singletonList(tx)).get(0);
+    }
+
+    /**
+     * Chaincode writing the key-value pairs it is invoked with, to put state
+     * in the form written by earlier versions of a contract
+     */
+    private static class StateWriter extends ChaincodeBase {
+
+        @Override
+        public Response init(ChaincodeStub stub) {
+            return ResponseUtils.newSuccessResponse();
+        }
+
+        @Override
+        public Response invoke(ChaincodeStub stub) {
+            List<String> args = stub.getStringArgs();
+            for (int i = 0; i + 1 < args.size(); i += 2) {
+                stub.putState(args.get(i), args.get(i + 1).getBytes(StandardCharsets.UTF_8));
+            }
+            return ResponseUtils.newSuccessResponse();
+        }
+    }
+}
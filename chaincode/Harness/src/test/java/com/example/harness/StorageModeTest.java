@@ -0,0 +1,144 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package test.java.com.example.harness;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.harness.Identity;
+import main.java.com.example.harness.InMemoryLedger;
+import main.java.com.example.harness.InMemoryLedger.Validation;
+import main.java.com.example.harness.Transaction;
+import main.java.com.example.summarycontract.ReferencePage;
+import main.java.com.example.summarycontract.SCInstance;
+import main.java.com.example.summarycontract.SummaryContract;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip of the Summary Contract functions in each storage mode and
+ * encoding, run on the in-memory ledger
+ *
+ * @author karthik
+ */
+public class StorageModeTest {
+
+    private static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+    private static final Identity CLIENT = new Identity("Org1MSP", "client");
+
+    private InMemoryLedger ledger;
+
+    @Test
+    public void testDocumentJSON() {
+        roundTrip("DOCUMENT", "JSON");
+    }
+
+    @Test
+    public void testDocumentBinary() {
+        roundTrip("DOCUMENT", "BINARY");
+    }
+
+    @Test
+    public void testCompositeJSON() {
+        roundTrip("COMPOSITE", "JSON");
+    }
+
+    @Test
+    public void testCompositeBinary() {
+        roundTrip("COMPOSITE", "BINARY");
+    }
+
+    /**
+     * Add, query, page through and delete the references of a Summary
+     * Contract
+     *
+     * @param mode Storage mode
+     * @param encoding Encoding
+     */
+    private void roundTrip(String mode, String encoding) {
+        this.ledger = new InMemoryLedger("providerschannel");
+        this.ledger.deploy("SummaryContract", new SummaryContract());
+        assertEquals(Validation.VALID, submit(this.ledger.init("SummaryContract", Arrays.asList("init", mode), CLIENT, START)));
+        assertEquals(Validation.VALID, submit(this.ledger.init("SummaryContract", Arrays.asList("setEncoding", encoding), CLIENT, START)));
+
+        assertEquals(Validation.VALID, submit(invoke("add", "user1", "rrc1", "org1")));
+        assertEquals(Validation.VALID, submit(invoke("add", "user1", "rrc2", "org2")));
+        assertEquals(Validation.VALID, submit(invoke("add", "user1", "rrc3", "org3")));
+        assertEquals(Validation.ENDORSEMENT_FAILURE, submit(invoke("add", "user1", "rrc4", "org1")));
+
+        SCInstance sc = JSONParser.getFromJSON(query("query", "user1").getStringPayload(), SCInstance.class);
+        assertEquals(Arrays.asList("rrc1", "rrc2", "rrc3"), sorted(sc.getReferences().keySet()));
+        assertEquals("org2", sc.getReference("rrc2")[0]);
+        assertEquals(Response.Status.INTERNAL_SERVER_ERROR, invoke("query", "user2").getResponse().getStatus());
+
+        ReferencePage first = JSONParser.getFromJSON(query("queryPage", "user1", "2", "").getStringPayload(), ReferencePage.class);
+        assertEquals(2, first.getReferences().size());
+        assertFalse(first.getBookmark().isEmpty());
+        ReferencePage last = JSONParser.getFromJSON(query("queryPage", "user1", "2", first.getBookmark()).getStringPayload(), ReferencePage.class);
+        assertEquals(1, last.getReferences().size());
+        assertTrue(last.getBookmark().isEmpty());
+        List<String> paged = new ArrayList<>(first.getReferences().keySet());
+        paged.addAll(last.getReferences().keySet());
+        assertEquals(Arrays.asList("rrc1", "rrc2", "rrc3"), sorted(paged));
+
+        assertEquals(Validation.VALID, submit(invoke("deleteReference", "rrc2")));
+        assertEquals(Validation.ENDORSEMENT_FAILURE, submit(invoke("deleteReference", "rrc2")));
+        sc = JSONParser.getFromJSON(query("query", "user1").getStringPayload(), SCInstance.class);
+        assertEquals(Arrays.asList("rrc1", "rrc3"), sorted(sc.getReferences().keySet()));
+        // the provider of a deleted reference can be added again
+        assertEquals(Validation.VALID, submit(invoke("add", "user1", "rrc5", "org2")));
+    }
+
+    /**
+     * Simulate an invocation of the Summary Contract
+     *
+     * @param args Function and parameters
+     * @return Simulated transaction
+     */
+    private Transaction invoke(String... args) {
+        return this.ledger.simulate("SummaryContract", Arrays.asList(args), CLIENT, START);
+    }
+
+    /**
+     * Simulate a query of the Summary Contract and check that it succeeds
+     * without writing
+     *
+     * @param args Function and parameters
+     * @return Response
+     */
+    private Response query(String... args) {
+        Transaction tx = invoke(args);
+        assertEquals(Response.Status.SUCCESS, tx.getResponse().getStatus(), tx.getResponse().getMessage());
+        assertTrue(tx.getReadWriteSet().isReadOnly());
+        return tx.getResponse();
+    }
+
+    /**
+     * Commit a transaction in its own block
+     *
+     * @param tx Transaction
+     * @return Validation result
+     */
+    private Validation submit(Transaction tx) {
+        return this.ledger.commit(Collections.singletonList(tx)).get(0);
+    }
+
+    /**
+     * Sort RRC references
+     *
+     * @param references References
+     * @return Sorted list
+     */
+    private static List<String> sorted(Iterable<String> references) {
+        List<String> list = new ArrayList<>();
+        references.forEach(list::add);
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -6,9 +6,24 @@ SPDX-License-Identifier: Apache-2.0
  */
 package main.java.com.example.incentivemechanism;
 
-import com.google.gson.Gson;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import main.java.com.example.contractruntime.ArgType;
+import main.java.com.example.contractruntime.ChaincodeLauncher;
+import main.java.com.example.contractruntime.Dispatcher;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.contractruntime.Migrator;
+import main.java.com.example.contractruntime.RangeBatch;
+import main.java.com.example.contractruntime.TransactionContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hyperledger.fabric.shim.ChaincodeBase;
@@ -23,12 +38,50 @@ import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
 public class IncentiveMechanism extends ChaincodeBase {
 
     private static final Log LOG = LogFactory.getLog(IncentiveMechanism.class);
+    private static final String DELTA = "provider~txId"; // object type of the significance increments
+    private static final String SIGNIFICANCE_INDEX = "significance~provider"; // object type of the members ordered by significance
+    private static final String IDLE_INDEX = "lastUpdate~provider"; // object type of the members ordered by last update
+    private static final String PENDING = "pending~provider"; // object type of the providers with increments that are not folded yet
+    private static final String CONFIG = "config"; // object type of the contract configuration entries
+    private static final int MAX_PENDING = 1000; // upper bound for the number of increments selectEndorser reads
+    private static final int FOLD_THRESHOLD = 100; // number of increments read above which selectEndorser folds them
+    private static final MemberCodec CODEC = new MemberCodec();
+
+    private final Migrator<Member> migrator = new Migrator<>(CODEC)
+            // 1: add members written before the indexes existed to the significance and last update indexes
+            .step(this::putIndex);
+
+    private final Dispatcher dispatcher = new Dispatcher("IncentiveMechanism")
+            .register("update", this::update, 2, ArgType.STRING, ArgType.INT, ArgType.STRING)
+            .register("delete", this::delete, ArgType.STRING)
+            .register("query", this::query, ArgType.STRING)
+            .register("selectEndorser", this::selectEndorser)
+            .register("settle", this::settle, ArgType.INT)
+            .register("compact", this::compact, ArgType.INT)
+            .register("buildIndex", this::buildIndex, ArgType.INT, ArgType.STRING)
+            .register("migrateRange", migrator::migrateRange, ArgType.INT, ArgType.STRING)
+            .register("migrationStatus", migrator::migrationStatus, ArgType.INT, ArgType.STRING);
 
     @Override
     public Response init(ChaincodeStub stub) {
         try {
             LOG.info("Init Incentivemechanism");
             String func = stub.getFunction();
+            if (func.equals("setEncoding")) {
+                // the encoding can only be changed when the chaincode is instantiated or upgraded
+                return Encoding.configure(new TransactionContext(stub), stub.getParameters());
+            }
+            if (func.equals("setRewardSource")) {
+                // expecting 2 arguments: chaincode name and channel of the Record Relationship Contract
+                List<String> args = stub.getParameters();
+                if (args.size() != 2) {
+                    return newErrorResponse("Incorrect number of arguments. Expecting 2");
+                }
+                stub.putStringState(getConfigKey(stub, "rewardChaincode"), args.get(0));
+                stub.putStringState(getConfigKey(stub, "rewardChannel"), args.get(1));
+                LOG.info(String.format("Rewards are drained from %s on channel %s", args.get(0), args.get(1)));
+                return newSuccessResponse("Init finished successfully");
+            }
             if (!func.equals("init")) {
                 return newErrorResponse("Function not supported!");
             }
@@ -39,7 +92,9 @@ public class IncentiveMechanism extends ChaincodeBase {
                 }
                 int size = args.size() / 2;
                 for (int i = 0; i < size; i++) {
-                    stub.putStringState(args.get(i).toLowerCase(), JSONParser.getJSON(new Member(Integer.parseInt(args.get(i + size)), stub.getTxTimestamp().toString())));
+                    String providerId = args.get(i).toLowerCase();
+                    delIndex(stub, providerId, getBase(stub, providerId));
+                    putMember(stub, providerId, new Member(Integer.parseInt(args.get(i + size)), stub.getTxTimestamp().toString()));
                 }
             }
             return newSuccessResponse("Init finished successfully");
@@ -50,149 +105,545 @@ public class IncentiveMechanism extends ChaincodeBase {
 
     @Override
     public Response invoke(ChaincodeStub stub) {
-        try {
-            LOG.info("Invoke Incentivemechanism");
-            String func = stub.getFunction();
-            List<String> args = stub.getParameters();
-            if (func.equals("update")) {
-                return update(stub, args);
-            }
-            if (func.equals("delete")) {
-                return delete(stub, args);
+        LOG.info("Invoke Incentivemechanism");
+        return dispatcher.dispatch(stub);
+    }
+
+    /**
+     * Increase provider significance. The increment is written to its own key
+     * without reading the member, so concurrent updates of a provider do not
+     * conflict. Increments are added to the member when reading and folded
+     * into it by compact.
+     *
+     * @param ctx Context of the transaction
+     * @param args Provider ID, Significance increase and optionally a source
+     * that distinguishes increments of the provider within one transaction
+     * @return Error or Success Response
+     */
+    private Response update(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        String providerId = args.get(0).toLowerCase();
+        int significance = Integer.parseInt(args.get(1));
+        putDelta(ctx, providerId, significance, args.size() == 3 ? args.get(2) : "");
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Significance associated with provider %s increased by %s", providerId, significance));
+        }
+        return newSuccessResponse("Invoke Success");
+    }
+
+    /**
+     * Fold significance increments into the members. Providers whose
+     * increments are all folded are removed from the pending providers.
+     *
+     * @param ctx Context of the transaction
+     * @param args Maximum number of increments to fold
+     * @return Error or Success Response with the number of folded increments
+     */
+    private Response compact(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int max = Integer.parseInt(args.get(0));
+        Map<String, Member> members = new TreeMap<>();
+        Map<String, Member> bases = new TreeMap<>(); // members before folding (to remove from the index)
+        int folded = 0;
+        String partial = null; // provider with increments left after the last folded one
+        QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA));
+        for (KeyValue kv : deltas) {
+            String providerId = stub.splitCompositeKey(kv.getKey()).getAttributes().get(0);
+            if (folded >= max) {
+                partial = providerId;
+                break;
             }
-            if (func.equals("query")) {
-                return query(stub, args);
+            Member member = members.computeIfAbsent(providerId, (id) -> {
+                Member base = getBase(stub, id);
+                if (base != null) {
+                    bases.put(id, new Member(base.getSignificance(), base.getLastUpdate()));
+                }
+                return base;
+            });
+            if (member == null) {
+                member = CODEC.decode(kv.getValue());
+                members.put(providerId, member);
+            } else {
+                member.add(CODEC.decode(kv.getValue()));
             }
-            if (func.equals("selectEndorser")) {
-                return selectEndorser(stub);
+            stub.delState(kv.getKey());
+            folded++;
+        }
+        for (Map.Entry<String, Member> entry : members.entrySet()) {
+            delIndex(stub, entry.getKey(), bases.get(entry.getKey()));
+            putMember(stub, entry.getKey(), entry.getValue());
+            if (!entry.getKey().equals(partial)) {
+                stub.delState(getPendingKey(stub, entry.getKey()));
             }
-            return newErrorResponse("Invalid invoke function name. Expecting one of: [\"update\", \"delete\", \"query\", \"selectEndorser\"]");
-        } catch (Throwable e) {
-            return newErrorResponse(e);
         }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Folded %s significance increments into %s members", folded, members.size()));
+        }
+        return newSuccessResponse("Compact Success", Integer.toString(folded).getBytes());
+    }
+
+    /**
+     * Write significance increment for the provider and mark the provider as
+     * pending. The marker is written without being read, so it does not make
+     * concurrent updates conflict.
+     *
+     * @param ctx Context of the transaction
+     * @param providerId Provider ID
+     * @param significance Significance increase
+     * @param source Source of the increment (unique for the provider within
+     * the transaction)
+     */
+    private void putDelta(TransactionContext ctx, String providerId, int significance, String source) {
+        ChaincodeStub stub = ctx.getStub();
+        String key = source.isEmpty() ? stub.createCompositeKey(DELTA, providerId, stub.getTxId()).toString() : stub.createCompositeKey(DELTA, providerId, stub.getTxId(), source).toString();
+        CODEC.put(stub, key, new Member(significance, ctx.getTimestamp()));
+        stub.putStringState(getPendingKey(stub, providerId), providerId);
     }
 
     /**
-     * Increase provider significance
+     * Get the key marking the provider as having increments that are not
+     * folded yet
      *
      * @param stub Interface between chaincode and peer
-     * @param args Provider ID and Significance increase
-     * @return Error or Success Response
+     * @param providerId Provider ID
+     * @return Composite key
+     */
+    private String getPendingKey(ChaincodeStub stub, String providerId) {
+        return stub.createCompositeKey(PENDING, providerId).toString();
+    }
+
+    /**
+     * Put member in state and add it to the significance and last update
+     * indexes
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @param member Member
      */
-    private Response update(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 2) {
-            // expecting 2 arguments in the following order: providerId, significanceIncrease
-            return newErrorResponse("Incorrect number of arguments. Expecting 2");
+    private void putMember(ChaincodeStub stub, String providerId, Member member) {
+        migrator.put(stub, providerId, member);
+        putIndex(stub, providerId, member);
+    }
+
+    /**
+     * Add member to the significance and last update indexes
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @param member Member
+     */
+    private void putIndex(ChaincodeStub stub, String providerId, Member member) {
+        stub.putStringState(getSignificanceKey(stub, providerId, member), providerId);
+        stub.putStringState(getIdleKey(stub, providerId, member), providerId);
+    }
+
+    /**
+     * Remove member from the significance and last update indexes
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @param member Member as last put in state (nothing is removed if null)
+     */
+    private void delIndex(ChaincodeStub stub, String providerId, Member member) {
+        if (member != null) {
+            stub.delState(getSignificanceKey(stub, providerId, member));
+            stub.delState(getIdleKey(stub, providerId, member));
         }
-        String providerId = args.get(0).toLowerCase();
-        int significance = Integer.parseInt(args.get(1));
-        if ((stub.getStringState(providerId) == null) || (stub.getStringState(providerId).equalsIgnoreCase(""))) {
-            // provider has no associated significance
-            stub.putStringState(providerId, JSONParser.getJSON(new Member(significance, stub.getTxTimestamp().toString())));
-            LOG.info(String.format("No significance associated with provider %s. Created new entry with total significance %s", providerId, significance));
-        } else {
-            // provider is already associated with a significance value
-            Member member = getFromJSON(stub.getStringState(providerId));
-            member.increaseSignificance(significance);
-            member.setLastUpdate(stub.getTxTimestamp().toString());
-            stub.putStringState(providerId, JSONParser.getJSON(member));
-            LOG.info(String.format("Significance associated with provider %s increased by %s. New total significance is %s", providerId, significance, member.getSignificance()));
+    }
+
+    /**
+     * Get the significance index key of the member. Significance is offset to
+     * be non-negative and zero-padded so that keys sort by significance.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @param member Member
+     * @return Composite key
+     */
+    private String getSignificanceKey(ChaincodeStub stub, String providerId, Member member) {
+        return stub.createCompositeKey(SIGNIFICANCE_INDEX, String.format("%010d", (long) member.getSignificance() - Integer.MIN_VALUE), providerId).toString();
+    }
+
+    /**
+     * Get the last update index key of the member. The last update is stored
+     * in zero-padded epoch seconds so that keys sort by time.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @param member Member
+     * @return Composite key
+     */
+    private String getIdleKey(ChaincodeStub stub, String providerId, Member member) {
+        return stub.createCompositeKey(IDLE_INDEX, String.format("%019d", Instant.parse(member.getLastUpdate()).getEpochSecond()), providerId).toString();
+    }
+
+    /**
+     * Add members written before the significance and last update indexes
+     * existed to the indexes, and mark members with increments written before
+     * the pending providers existed as pending. Increments of providers
+     * without a member entry are only found by compact. Processes up to the
+     * given number of members per call, starting at the given key (see
+     * RangeBatch), and returns the key to continue from (empty when done).
+     *
+     * @param ctx Context of the transaction
+     * @param args Batch size and start key (empty string for the first batch)
+     * @return Error or Success Response with the next start key
+     */
+    private Response buildIndex(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(0));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
         }
-        return newSuccessResponse("Invoke Success");
+        RangeBatch batch = RangeBatch.process(stub, args.get(1), pageSize, (providerId, value) -> {
+            putMember(stub, providerId, CODEC.decode(value));
+            if (stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA, providerId)).iterator().hasNext()) {
+                // increments written before the pending providers existed
+                stub.putStringState(getPendingKey(stub, providerId), providerId);
+            }
+            return 1;
+        });
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Indexed %s members. Next key: %s", batch.getProcessed(), batch.getNext()));
+        }
+        return newSuccessResponse("Index Success", batch.getNext().getBytes());
     }
 
     /**
-     * Delete provider significance
+     * Get member with all significance increments added
+     *
+     * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @return Member or null if the provider has no associated significance
+     */
+    private Member getMember(ChaincodeStub stub, String providerId) {
+        Member member = getBase(stub, providerId);
+        QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA, providerId));
+        for (KeyValue kv : deltas) {
+            if (member == null) {
+                member = CODEC.decode(kv.getValue());
+            } else {
+                member.add(CODEC.decode(kv.getValue()));
+            }
+        }
+        return member;
+    }
+
+    /**
+     * Get member without significance increments that are not folded yet
      *
      * @param stub Interface between chaincode and peer
+     * @param providerId Provider ID
+     * @return Member or null if the provider has no member entry
+     */
+    private Member getBase(ChaincodeStub stub, String providerId) {
+        return migrator.get(stub, providerId);
+    }
+
+    /**
+     * Delete provider significance
+     *
+     * @param ctx Context of the transaction
      * @param args Provider ID
      * @return Error or Success Response
      */
-    private Response delete(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: providerId
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
-        }
+    private Response delete(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        delIndex(stub, args.get(0), getBase(stub, args.get(0)));
         stub.delState(args.get(0)); // delete significance associated with provider
-        LOG.info(String.format("Deleted significance associated with Provider ID %s", args.get(0)));
+        stub.delState(getPendingKey(stub, args.get(0)));
+        QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA, args.get(0)));
+        for (KeyValue kv : deltas) {
+            stub.delState(kv.getKey());
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Deleted significance associated with Provider ID %s", args.get(0)));
+        }
         return newSuccessResponse("Delete Success");
     }
 
     /**
      * Query for provider significance
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args Provider ID
      * @return Error or Success Response with integer
      */
-    private Response query(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: providerId
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
-        }
-        if ((stub.getStringState(args.get(0))) == null || (stub.getStringState(args.get(0)).equalsIgnoreCase(""))) {
+    private Response query(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        Member member = getMember(stub, args.get(0));
+        if (member == null) {
             return newErrorResponse(String.format("No significance associated with Provider ID %s", args.get(0)));
         }
-        LOG.info(String.format("Significance associated with Provider ID %s is %s", args.get(0), stub.getStringState(args.get(0))));
-        return newSuccessResponse("Query Success", Integer.toString(getFromJSON(stub.getStringState(args.get(0))).getSignificance()).getBytes());
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Significance associated with Provider ID %s is %s", args.get(0), member.getSignificance()));
+        }
+        return newSuccessResponse("Query Success", Integer.toString(member.getSignificance()).getBytes());
     }
 
     /**
      * Selects endorser organization based on significance (excludes the
      * organization associated with the invoker and the organization that was
-     * last chosen)
+     * last chosen). Candidates are read from the significance and last update
+     * indexes; members with increments that are not folded yet are compared
+     * separately, as their index position is not up to date. At most
+     * MAX_PENDING such increments are read; the members of the increments
+     * beyond that are compared at their index position until they are
+     * folded. Once more than FOLD_THRESHOLD increments are read, they are
+     * folded by this transaction if it is submitted.
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
+     * @param args No arguments
      * @return Error or Success Response with selected provider
      */
-    private Response selectEndorser(ChaincodeStub stub) {
-        String msp = new String(stub.getCreator()).split("MSP")[0].replaceFirst("\\n", "").replaceFirst("\\f", "").replaceAll("[\u0000-\u001f]", "");
-        // get all provider-significance pairs
-        QueryResultsIterator<KeyValue> stateByRange = stub.getQueryResult("{\n"
-                + "   \"selector\": {\n"
-                + "      \"_id\": {\n"
-                + "         \"$gt\": null\n"
-                + "      }\n"
-                + "   }\n"
-                + "}");
-        KeyValue select = null; // selected endorser
-        long time = 0; // time since last endorsement
-        // find the provider with the lowest significance (excluding the invoker organization)
-        for (KeyValue kv : stateByRange) {
-            Member member = getFromJSON(new String(kv.getValue()));
-            long elapsedTime = stub.getTxTimestamp().getEpochSecond() - Instant.parse(member.getLastUpdate()).getEpochSecond();
-            if (((select == null) || ((member.getSignificance() < getFromJSON(new String(select.getValue())).getSignificance()) && (time < 600)) || (elapsedTime >= 600) && (elapsedTime > time)) && (!kv.getKey().equalsIgnoreCase(msp))) {
-                // if provider has the lowest significance or the longest amount of time since the last endorsement (and at least 10 min)
-                select = kv;
-                time = elapsedTime;
-            }
-        }
+    private Response selectEndorser(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        Map<String, Member> pending = getPendingMembers(stub);
+        String select = select(stub, pending, ctx.getMspId(), ctx.getTxTimestamp());
         if (select == null) {
             LOG.error("Could not select next endorser");
             return newErrorResponse("Query returned no results");
         }
-        LOG.info("Selected " + select.getKey() + " as the next endorser");
-        return newSuccessResponse("Query Success", select.getKey().getBytes());
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Selected " + select + " as the next endorser");
+        }
+        return newSuccessResponse("Query Success", select.getBytes());
+    }
+
+    /**
+     * Settle rewards accrued by the Record Relationship Contract (configured
+     * with setRewardSource when instantiating or upgrading the chaincode).
+     * Rewards are settled in the order of the rewarded transactions. For each
+     * reward an endorser is selected as in selectEndorser (relative to the
+     * invoker and time of the rewarded transaction) and its significance is
+     * increased.
+     * Only the pending members and the first entries of the indexes are read;
+     * members credited by an earlier reward of the same call are compared
+     * with their credited values, like pending members. If no endorser can be
+     * selected for a reward, settle fails and the rewards stay accrued.
+     *
+     * @param ctx Context of the transaction
+     * @param args Maximum number of rewards to settle
+     * @return Error or Success Response with the number of settled rewards
+     */
+    private Response settle(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        List<byte[]> invokeArgs = new ArrayList<>();
+        invokeArgs.add("drainRewards".getBytes());
+        invokeArgs.add(args.get(0).getBytes());
+        Response response = stub.invokeChaincode(getConfig(stub, "rewardChaincode", "RecordRelationshipContract"), invokeArgs, getConfig(stub, "rewardChannel", "providerschannel"));
+        if (response.getStatusCode() != 200) {
+            return newErrorResponse("Could not read accrued rewards: " + response.getMessage());
+        }
+        Reward[] rewards = JSONParser.getFromJSON(new String(response.getPayload()), Reward[].class);
+        // rewards accrued before they were keyed by time are drained in txId order
+        Arrays.sort(rewards, Comparator.comparing((Reward reward) -> Instant.parse(reward.getTimestamp())));
+        Map<String, Member> members = getPendingMembers(stub);
+        Set<String> changed = new LinkedHashSet<>();
+        int settled = 0;
+        int index = 0;
+        for (Reward reward : rewards) {
+            String select = select(stub, members, reward.getMsp(), Instant.parse(reward.getTimestamp()));
+            if (select == null) {
+                // fails the transaction, so the drained rewards are not removed
+                LOG.error("Could not select endorser for reward accrued at " + reward.getTimestamp());
+                return newErrorResponse("Could not select endorser for reward accrued at " + reward.getTimestamp());
+            }
+            // credited members are compared with their credited values by the following rewards
+            Member member = members.computeIfAbsent(select, (id) -> getBase(stub, id));
+            // never moves the last update back if the member was updated after the rewarded transaction
+            member.add(new Member(reward.getSignificance(), reward.getTimestamp()));
+            putDelta(ctx, select, reward.getSignificance(), "reward" + index++);
+            changed.add(select);
+            settled++;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Settled %s of %s rewards for %s providers", settled, rewards.length, changed.size()));
+        }
+        return newSuccessResponse("Settle Success", Integer.toString(settled).getBytes());
+    }
+
+    /**
+     * Get a configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param name Name of the entry
+     * @param defaultValue Value if the entry is not configured
+     * @return Configured or default value
+     */
+    private String getConfig(ChaincodeStub stub, String name, String defaultValue) {
+        String value = stub.getStringState(getConfigKey(stub, name));
+        return ((value == null) || (value.isEmpty())) ? defaultValue : value;
+    }
+
+    /**
+     * Get the key of a configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param name Name of the entry
+     * @return Composite key of the entry
+     */
+    private String getConfigKey(ChaincodeStub stub, String name) {
+        return stub.createCompositeKey(CONFIG, name).toString();
+    }
+
+    /**
+     * Get the first entry of an index, skipping the organization of the invoker
+     * and the given providers
+     *
+     * @param stub Interface between chaincode and peer
+     * @param index Object type of the index
+     * @param msp MSP of the invoker
+     * @param skip Providers to skip
+     * @return Array with the indexed value and provider id or null if there is
+     * no such entry
+     */
+    private String[] getFirst(ChaincodeStub stub, String index, String msp, Set<String> skip) {
+        QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(index));
+        for (KeyValue kv : entries) {
+            List<String> attributes = stub.splitCompositeKey(kv.getKey()).getAttributes();
+            if ((!attributes.get(1).equalsIgnoreCase(msp)) && (!skip.contains(attributes.get(1)))) {
+                return new String[]{attributes.get(0), attributes.get(1)};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get members with significance increments that are not folded yet, with
+     * the increments added. Only the increments of the pending providers are
+     * read, and at most MAX_PENDING of them; providers with increments beyond
+     * that are left out. If more than FOLD_THRESHOLD increments are read, the
+     * members returned are folded in the current transaction.
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Map of provider ids to members
+     */
+    private Map<String, Member> getPendingMembers(ChaincodeStub stub) {
+        Map<String, Member> members = new TreeMap<>();
+        Map<String, Member> bases = new TreeMap<>(); // members before folding (to remove from the index)
+        List<String> folded = new ArrayList<>(); // keys of the increments added to the members
+        int read = 0;
+        QueryResultsIterator<KeyValue> pending = stub.getStateByPartialCompositeKey(stub.createCompositeKey(PENDING));
+        for (KeyValue marker : pending) {
+            String providerId = marker.getStringValue();
+            Member base = getBase(stub, providerId);
+            Member member = (base == null) ? null : new Member(base.getSignificance(), base.getLastUpdate());
+            List<String> keys = new ArrayList<>();
+            QueryResultsIterator<KeyValue> deltas = stub.getStateByPartialCompositeKey(stub.createCompositeKey(DELTA, providerId));
+            for (KeyValue kv : deltas) {
+                if (read == MAX_PENDING) {
+                    // the increments of this provider are not all read
+                    return fold(stub, members, bases, folded, read);
+                }
+                read++;
+                if (member == null) {
+                    member = CODEC.decode(kv.getValue());
+                } else {
+                    member.add(CODEC.decode(kv.getValue()));
+                }
+                keys.add(kv.getKey());
+            }
+            if (member != null) {
+                members.put(providerId, member);
+                bases.put(providerId, base);
+                folded.addAll(keys);
+            }
+        }
+        return fold(stub, members, bases, folded, read);
+    }
+
+    /**
+     * Fold the increments read by getPendingMembers into the members if more
+     * than FOLD_THRESHOLD increments were read, and remove the members from
+     * the pending providers
+     *
+     * @param stub Interface between chaincode and peer
+     * @param members Map of provider ids to members with the increments added
+     * @param bases Map of provider ids to members before folding
+     * @param keys Keys of the increments added to the members
+     * @param read Number of increments read
+     * @return Map of provider ids to members
+     */
+    private Map<String, Member> fold(ChaincodeStub stub, Map<String, Member> members, Map<String, Member> bases, List<String> keys, int read) {
+        if (read <= FOLD_THRESHOLD) {
+            return members;
+        }
+        for (String key : keys) {
+            stub.delState(key);
+        }
+        for (Map.Entry<String, Member> entry : members.entrySet()) {
+            delIndex(stub, entry.getKey(), bases.get(entry.getKey()));
+            putMember(stub, entry.getKey(), entry.getValue());
+            stub.delState(getPendingKey(stub, entry.getKey()));
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Folded %s significance increments into %s members", keys.size(), members.size()));
+        }
+        return members;
+    }
+
+    /**
+     * Select the provider with the longest time since its last update if that
+     * is at least 10 min, or else the provider with the lowest significance
+     * (excluding the organization of the invoker). Candidates are read from
+     * the significance and last update indexes; the given members are compared
+     * separately, as their index position is not up to date.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param members Map of provider ids to members whose index position is
+     * not up to date
+     * @param msp MSP of the invoker
+     * @param now Time of selection
+     * @return Selected provider id or null if there are no candidates
+     */
+    private String select(ChaincodeStub stub, Map<String, Member> members, String msp, Instant now) {
+        Map<String, Member> pending = new TreeMap<>(members);
+        pending.keySet().removeIf((providerId) -> (providerId.equalsIgnoreCase(msp)));
+        // find the provider with the longest amount of time since the last update
+        String[] idle = getFirst(stub, IDLE_INDEX, msp, pending.keySet());
+        for (Map.Entry<String, Member> entry : pending.entrySet()) {
+            String epoch = String.format("%019d", Instant.parse(entry.getValue().getLastUpdate()).getEpochSecond());
+            if ((idle == null) || (epoch.compareTo(idle[0]) < 0) || ((epoch.equals(idle[0])) && (entry.getKey().compareTo(idle[1]) < 0))) {
+                idle = new String[]{epoch, entry.getKey()};
+            }
+        }
+        if ((idle != null) && (now.getEpochSecond() - Long.parseLong(idle[0]) >= 600)) {
+            // at least 10 min since the last update
+            return idle[1];
+        }
+        // find the provider with the lowest significance
+        String[] lowest = getFirst(stub, SIGNIFICANCE_INDEX, msp, pending.keySet());
+        for (Map.Entry<String, Member> entry : pending.entrySet()) {
+            String significance = String.format("%010d", (long) entry.getValue().getSignificance() - Integer.MIN_VALUE);
+            if ((lowest == null) || (significance.compareTo(lowest[0]) < 0) || ((significance.equals(lowest[0])) && (entry.getKey().compareTo(lowest[1]) < 0))) {
+                lowest = new String[]{significance, entry.getKey()};
+            }
+        }
+        return (lowest == null) ? null : lowest[1];
     }
 
     /**
-     * Gets object from JSON string
+     * Warm up the codecs and the dispatch table before accepting transactions
      *
-     * @param json JSON string
-     * @return RecordRelationshipContractInstance object
+     * @param rounds Number of round trips
      */
-    private Member getFromJSON(String json) {
-        Gson gson = new Gson();
-        return (Member) gson.fromJson(json, Member.class);
+    public void warmUp(int rounds) {
+        CODEC.warmUp(new Member(1, Instant.EPOCH.toString()), rounds);
+        dispatcher.warmUp(rounds);
     }
 
     /**
      * Main method
      *
      * @param args Arguments
+     * @throws IOException if the chaincode server cannot be started
+     * @throws InterruptedException if interrupted while serving
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         LOG.info("IncentiveMechanism main method called");
-        new IncentiveMechanism().start(args);
+        IncentiveMechanism chaincode = new IncentiveMechanism();
+        ChaincodeLauncher.launch(chaincode, chaincode::warmUp, args);
     }
 }
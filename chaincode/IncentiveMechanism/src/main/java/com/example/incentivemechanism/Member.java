@@ -1,15 +1,19 @@
 /* SPDX-License-Identifier: Apache-2.0 */
 package main.java.com.example.incentivemechanism;
 
+import java.time.Instant;
+import main.java.com.example.contractruntime.Versioned;
+
 /**
  * Class to represent a member of the blockchain network
  *
  * @author karthik
  */
-public class Member {
+public class Member implements Versioned {
 
     private int significance; // significance associated with the member
     private String lastUpdate; // timestamp for last significance update
+    private Integer schemaVersion; // schema version of the member (not set for significance increments)
 
     /**
      * Constructor for Member object
@@ -37,6 +41,19 @@ public class Member {
         this.significance += significance;
     }
 
+    /**
+     * Add a significance increment to the member, keeping the latest update
+     * timestamp
+     *
+     * @param delta Significance increment and time of the increment
+     */
+    public void add(Member delta) {
+        this.significance += delta.getSignificance();
+        if ((this.lastUpdate == null) || (Instant.parse(delta.getLastUpdate()).isAfter(Instant.parse(this.lastUpdate)))) {
+            this.lastUpdate = delta.getLastUpdate();
+        }
+    }
+
     /**
      * Set timestamp for last significance update
      *
@@ -63,4 +80,14 @@ public class Member {
     public String getLastUpdate() {
         return lastUpdate;
     }
+
+    @Override
+    public int getSchemaVersion() {
+        return this.schemaVersion == null ? 0 : this.schemaVersion;
+    }
+
+    @Override
+    public void setSchemaVersion(int schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
 }
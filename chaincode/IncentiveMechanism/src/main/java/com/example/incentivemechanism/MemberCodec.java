@@ -0,0 +1,32 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.incentivemechanism;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import main.java.com.example.contractruntime.StateCodec;
+
+/**
+ * Codec of members and significance increments. In binary form a member is
+ * written as significance and last update in epoch nanoseconds.
+ *
+ * @author karthik
+ */
+public class MemberCodec extends StateCodec<Member> {
+
+    public MemberCodec() {
+        super(Member.class);
+    }
+
+    @Override
+    protected void write(CodedOutputStream out, Member member) throws IOException {
+        out.writeSInt32NoTag(member.getSignificance());
+        writeTimestamp(out, member.getLastUpdate());
+    }
+
+    @Override
+    protected Member read(CodedInputStream in) throws IOException {
+        int significance = in.readSInt32();
+        return new Member(significance, readTimestamp(in));
+    }
+}
@@ -0,0 +1,55 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.incentivemechanism;
+
+/**
+ * Class to represent a reward accrued for endorsing a transaction, read from the
+ * Record Relationship Contract when settling rewards
+ *
+ * @author karthik
+ */
+public class Reward {
+
+    private final String msp; // MSP of the invoker (excluded from endorser selection)
+    private final int significance; // significance to reward
+    private final String timestamp; // time of the rewarded transaction
+
+    /**
+     * Constructor for Reward object
+     *
+     * @param msp MSP of the invoker
+     * @param significance Significance to reward
+     * @param timestamp Time of the rewarded transaction
+     */
+    public Reward(String msp, int significance, String timestamp) {
+        this.msp = msp;
+        this.significance = significance;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns MSP of the invoker
+     *
+     * @return MSP id
+     */
+    public String getMsp() {
+        return this.msp;
+    }
+
+    /**
+     * Returns significance
+     *
+     * @return Significance
+     */
+    public int getSignificance() {
+        return this.significance;
+    }
+
+    /**
+     * Returns timestamp
+     *
+     * @return Timestamp
+     */
+    public String getTimestamp() {
+        return this.timestamp;
+    }
+}
@@ -0,0 +1,210 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class to represent the access control list of an RRC. Access is kept as a
+ * bitmask of events per entity type and id, so lookups do not depend on the
+ * size of the list. The JSON form is the map used by earlier documents:
+ * {"id,ENTITY": ["READ", "WRITE", ...]}. Clients stored by their serialized
+ * identity in earlier documents are read as their identity id.
+ *
+ * @author karthik
+ */
+@JsonAdapter(AccessControlList.Adapter.class)
+public class AccessControlList {
+
+    private final Map<Entity, Map<String, Integer>> entries; // access bitmask per entity type and id
+    private String creator; // id of the client with CREATE access
+    private final Map<String, String> legacyIdentities; // client ids read from serialized identities in earlier documents
+
+    /**
+     * Constructor for AccessControlList object
+     */
+    public AccessControlList() {
+        this.entries = new EnumMap<>(Entity.class);
+        for (Entity entity : Entity.values()) {
+            this.entries.put(entity, new LinkedHashMap<>());
+        }
+        this.legacyIdentities = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns true if the entity is authorized to perform the specified action
+     *
+     * @param id Entity id
+     * @param entity Type of entity
+     * @param action Action event
+     * @return True if authorized
+     */
+    public boolean hasAccess(String id, Entity entity, Event action) {
+        Integer events = this.entries.get(entity).get(id);
+        return (events != null) && ((events & mask(action)) != 0);
+    }
+
+    /**
+     * Returns true if the entity has any access
+     *
+     * @param id Entity id
+     * @param entity Type of entity
+     * @return True if the entity is listed
+     */
+    public boolean isListed(String id, Entity entity) {
+        return this.entries.get(entity).containsKey(id);
+    }
+
+    /**
+     * Adds access type for specified entity
+     *
+     * @param id Entity id
+     * @param entity Entity type (client or MSP)
+     * @param action Type of access
+     */
+    public void grant(String id, Entity entity, Event action) {
+        this.entries.get(entity).merge(id, mask(action), (a, b) -> (a | b));
+        if ((this.creator == null) && (entity == Entity.CLIENT) && (action == Event.CREATE)) {
+            this.creator = id;
+        }
+    }
+
+    /**
+     * Removes access type for specified entity
+     *
+     * @param id Entity id
+     * @param entity Entity type (client or MSP)
+     * @param action Type of access
+     */
+    public void revoke(String id, Entity entity, Event action) {
+        Map<String, Integer> ids = this.entries.get(entity);
+        Integer events = ids.get(id);
+        if (events == null) {
+            return;
+        }
+        events &= ~mask(action);
+        if (events == 0) {
+            ids.remove(id);
+        } else {
+            ids.put(id, events);
+        }
+        if ((entity == Entity.CLIENT) && (action == Event.CREATE) && (id.equals(this.creator))) {
+            // fall back to any other client with CREATE access
+            this.creator = null;
+            ids.entrySet().stream().filter((e) -> ((e.getValue() & mask(Event.CREATE)) != 0)).findFirst().ifPresent((e) -> this.creator = e.getKey());
+        }
+    }
+
+    /**
+     * Gets id of the RRC creator
+     *
+     * @return Client id or null if no client has CREATE access
+     */
+    public String getCreator() {
+        return this.creator;
+    }
+
+    /**
+     * Gets the serialized identities that were stored as client ids in an
+     * earlier document, so they can be added to the identity registry
+     *
+     * @return Map of client ids to base64 encoded serialized identities
+     */
+    public Map<String, String> getLegacyIdentities() {
+        return this.legacyIdentities;
+    }
+
+    /**
+     * Gets the access bitmasks per entity type and id
+     *
+     * @return Map of entity types to maps of ids to bitmasks
+     */
+    Map<Entity, Map<String, Integer>> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Sets the access bitmask of an entity, as read from a binary document
+     *
+     * @param id Entity id
+     * @param entity Entity type (client or MSP)
+     * @param events Bitmask of events
+     */
+    void setEvents(String id, Entity entity, int events) {
+        this.entries.get(entity).put(id, events);
+        if ((this.creator == null) && (entity == Entity.CLIENT) && ((events & mask(Event.CREATE)) != 0)) {
+            this.creator = id;
+        }
+    }
+
+    /**
+     * Returns the bit representing the event
+     *
+     * @param event Event
+     * @return Bitmask with the event bit set
+     */
+    private static int mask(Event event) {
+        return 1 << event.ordinal();
+    }
+
+    /**
+     * Gson type adapter converting between the bitmask representation and the
+     * JSON form of earlier documents
+     */
+    public static class Adapter extends TypeAdapter<AccessControlList> {
+
+        @Override
+        public void write(JsonWriter out, AccessControlList acl) throws IOException {
+            if (acl == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<Entity, Map<String, Integer>> ids : acl.entries.entrySet()) {
+                for (Map.Entry<String, Integer> id : ids.getValue().entrySet()) {
+                    out.name(id.getKey() + "," + ids.getKey().toString());
+                    out.beginArray();
+                    for (Event event : Event.values()) {
+                        if ((id.getValue() & mask(event)) != 0) {
+                            out.value(event.name());
+                        }
+                    }
+                    out.endArray();
+                }
+            }
+            out.endObject();
+        }
+
+        @Override
+        public AccessControlList read(JsonReader in) throws IOException {
+            AccessControlList acl = new AccessControlList();
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                int separator = key.lastIndexOf(',');
+                String id = key.substring(0, separator);
+                Entity entity = Entity.valueOf(key.substring(separator + 1));
+                if ((entity == Entity.CLIENT) && (!IdentityRegistry.isId(id))) {
+                    String clientId = IdentityRegistry.normalize(id);
+                    if (!clientId.equals(id)) {
+                        acl.legacyIdentities.put(clientId, id);
+                        id = clientId;
+                    }
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    acl.grant(id, entity, Event.valueOf(in.nextString()));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return acl;
+        }
+    }
+}
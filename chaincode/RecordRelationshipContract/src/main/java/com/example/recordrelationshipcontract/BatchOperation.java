@@ -0,0 +1,87 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+/**
+ * Class to represent one operation of a batch invocation
+ *
+ * @author karthik
+ */
+public class BatchOperation {
+
+    private String op; // operation (log, grant or revoke)
+    private String rrcRef; // reference of the RRC the operation applies to
+    private String action; // SQL action (log)
+    private String entry; // entry written to the record (log)
+    private String id; // client or MSP id (grant and revoke)
+    private String entity; // entity type, CLIENT or MSP (grant and revoke)
+    private String access; // access type (grant and revoke)
+
+    /**
+     * Constructor for BatchOperation object
+     */
+    public BatchOperation() {
+    }
+
+    /**
+     * Returns operation
+     *
+     * @return Operation
+     */
+    public String getOp() {
+        return this.op;
+    }
+
+    /**
+     * Returns RRC reference
+     *
+     * @return RRC reference
+     */
+    public String getRrcRef() {
+        return this.rrcRef;
+    }
+
+    /**
+     * Returns SQL action
+     *
+     * @return SQL action
+     */
+    public String getAction() {
+        return this.action;
+    }
+
+    /**
+     * Returns entry
+     *
+     * @return Entry written to the record
+     */
+    public String getEntry() {
+        return this.entry;
+    }
+
+    /**
+     * Returns client or MSP id
+     *
+     * @return Id
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns entity type
+     *
+     * @return Entity type
+     */
+    public String getEntity() {
+        return this.entity;
+    }
+
+    /**
+     * Returns access type
+     *
+     * @return Access type
+     */
+    public String getAccess() {
+        return this.access;
+    }
+}
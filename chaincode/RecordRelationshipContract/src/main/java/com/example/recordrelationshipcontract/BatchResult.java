@@ -0,0 +1,63 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+/**
+ * Class to represent the result of one operation of a batch invocation
+ *
+ * @author karthik
+ */
+public class BatchResult {
+
+    private final int status; // 200 if the operation was applied, 500 otherwise
+    private final String message; // result message
+    private final LogEntry entry; // log entry written by the operation
+
+    /**
+     * Constructor for BatchResult object of an applied operation
+     *
+     * @param entry Log entry written by the operation
+     */
+    public BatchResult(LogEntry entry) {
+        this.status = 200;
+        this.message = "Success";
+        this.entry = entry;
+    }
+
+    /**
+     * Constructor for BatchResult object of a failed operation
+     *
+     * @param message Error message
+     */
+    public BatchResult(String message) {
+        this.status = 500;
+        this.message = message;
+        this.entry = null;
+    }
+
+    /**
+     * Returns status
+     *
+     * @return Status code
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns message
+     *
+     * @return Result message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Returns log entry
+     *
+     * @return Log entry or null if the operation failed
+     */
+    public LogEntry getEntry() {
+        return this.entry;
+    }
+}
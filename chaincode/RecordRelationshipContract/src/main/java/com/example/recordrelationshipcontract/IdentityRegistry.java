@@ -0,0 +1,129 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Base64;
+import java.util.Map;
+import main.java.com.example.contractruntime.TransactionContext;
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Registry mapping serialized client identities to short ids. The id of an
+ * identity is the SHA-256 fingerprint of its serialized form, which is stored
+ * once under an identity key so ACLs and log entries only have to hold the
+ * fingerprint.
+ *
+ * @author karthik
+ */
+public class IdentityRegistry {
+
+    public static final String IDENTITY = "identity"; // object type of the registered identities
+
+    /**
+     * Register the identity of the invoking client if it is not already
+     * registered
+     *
+     * @param ctx Context of the transaction
+     * @return Id of the invoking client
+     */
+    public static String register(TransactionContext ctx) {
+        String id = ctx.getCreatorFingerprint();
+        register(ctx.getStub(), id, ctx.getCreatorBase64());
+        return id;
+    }
+
+    /**
+     * Register identities if they are not already registered
+     *
+     * @param stub Interface between chaincode and peer
+     * @param identities Map of ids to base64 encoded serialized identities
+     */
+    public static void register(ChaincodeStub stub, Map<String, String> identities) {
+        identities.forEach((id, identity) -> register(stub, id, identity));
+    }
+
+    /**
+     * Get the serialized identity registered for the id
+     *
+     * @param stub Interface between chaincode and peer
+     * @param id Identity id
+     * @return Base64 encoded serialized identity or null if not registered
+     */
+    public static String resolve(ChaincodeStub stub, String id) {
+        String identity = stub.getStringState(getKey(stub, id));
+        if ((identity == null) || (identity.isEmpty())) {
+            return null;
+        }
+        return identity;
+    }
+
+    /**
+     * Get the id of a client given either as an id or as a base64 encoded
+     * serialized identity (as used in documents written before the registry).
+     * Only strings that decode to a serialized identity with an MSP id and a
+     * PEM certificate are converted; any other string is returned unchanged.
+     *
+     * @param clientId Client id or base64 encoded serialized identity
+     * @return Client id
+     */
+    public static String normalize(String clientId) {
+        if (isId(clientId)) {
+            return clientId;
+        }
+        try {
+            byte[] serialized = Base64.getDecoder().decode(clientId);
+            SerializedIdentity identity = SerializedIdentity.parseFrom(serialized);
+            if ((identity.getMspid().isEmpty()) || (!identity.getIdBytes().toStringUtf8().startsWith("-----BEGIN "))) {
+                return clientId; // not a serialized identity
+            }
+            return fingerprint(serialized);
+        } catch (IllegalArgumentException | InvalidProtocolBufferException e) {
+            return clientId; // not a serialized identity
+        }
+    }
+
+    /**
+     * Returns true if the string is an identity id
+     *
+     * @param clientId Client id
+     * @return True if the string is a SHA-256 fingerprint in hex
+     */
+    public static boolean isId(String clientId) {
+        return TransactionContext.isFingerprint(clientId);
+    }
+
+    /**
+     * Get the SHA-256 fingerprint of a serialized identity
+     *
+     * @param identity Serialized identity
+     * @return Fingerprint in hex
+     */
+    public static String fingerprint(byte[] identity) {
+        return TransactionContext.fingerprint(identity);
+    }
+
+    /**
+     * Put identity in state if it is not already registered
+     *
+     * @param stub Interface between chaincode and peer
+     * @param id Identity id
+     * @param identity Base64 encoded serialized identity
+     */
+    private static void register(ChaincodeStub stub, String id, String identity) {
+        if (resolve(stub, id) == null) {
+            stub.putStringState(getKey(stub, id), identity);
+        }
+    }
+
+    /**
+     * Get the key of a registered identity
+     *
+     * @param stub Interface between chaincode and peer
+     * @param id Identity id
+     * @return Composite key
+     */
+    private static String getKey(ChaincodeStub stub, String id) {
+        return stub.createCompositeKey(IDENTITY, id).toString();
+    }
+}
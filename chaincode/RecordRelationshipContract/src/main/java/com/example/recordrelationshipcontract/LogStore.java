@@ -0,0 +1,271 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import main.java.com.example.contractruntime.JSONParser;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Append-only storage of RRC log entries. Each entry is stored under its own
+ * composite key (rrcRef, sequence number), so appending an entry costs the
+ * same regardless of the length of the log.
+ *
+ * Log entries and audited reads are stored as JSON with the document type
+ * "log", the RRC reference and the transaction time in epoch milliseconds, so
+ * that they can be queried with the CouchDB indexes in
+ * META-INF/statedb/couchdb/indexes.
+ *
+ * @author karthik
+ */
+public class LogStore {
+
+    public static final String LOG = "rrcRef~seq"; // object type of the log entries
+    public static final String AUDIT = "rrcRef~txId"; // object type of the audited reads
+    private static final String DOC_TYPE = "log"; // document type of log entries and audited reads in rich queries
+
+    /**
+     * Append entry to the log of the RRC. Entries still stored in a document
+     * written before the log was stored separately are moved to separate keys
+     * first.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param rrc RRC the entry is added to
+     * @param entry New log entry
+     */
+    public static void append(ChaincodeStub stub, String rrcRef, RRCInstance rrc, LogEntry entry) {
+        if (rrc.getLog() != null) {
+            for (LogEntry e : rrc.getLog()) {
+                put(stub, rrcRef, rrc.nextSequence(), e);
+            }
+            rrc.clearLog();
+        }
+        put(stub, rrcRef, rrc.nextSequence(), entry);
+    }
+
+    /**
+     * Get all entries in the log of the RRC
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param rrc RRC
+     * @return Log entries in order
+     */
+    public static List<LogEntry> read(ChaincodeStub stub, String rrcRef, RRCInstance rrc) {
+        if (rrc.getLog() != null) {
+            return rrc.getLog();
+        }
+        List<LogEntry> log = new ArrayList<>(rrc.getLogSize());
+        QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(LOG, rrcRef));
+        for (KeyValue kv : entries) {
+            log.add(JSONParser.getFromJSON(kv.getStringValue(), LogEntry.class));
+        }
+        return log;
+    }
+
+    /**
+     * Get the entries of the log of the RRC with sequence numbers in a range.
+     * Entries stored in separate keys are read with point reads, so reading
+     * the tail of a long log does not scan the entries before it.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param rrc RRC
+     * @param from Sequence number of the first entry (inclusive)
+     * @param to Sequence number after the last entry (exclusive)
+     * @return Log entries in order
+     */
+    public static List<LogEntry> read(ChaincodeStub stub, String rrcRef, RRCInstance rrc, int from, int to) {
+        if (rrc.getLog() != null) {
+            // entries of a document written before the log was stored separately are numbered by position
+            List<LogEntry> log = rrc.getLog();
+            return new ArrayList<>(log.subList(Math.min(from, log.size()), Math.min(to, log.size())));
+        }
+        List<LogEntry> log = new ArrayList<>(Math.max(to - from, 0));
+        for (int sequence = from; sequence < to; sequence++) {
+            String entry = stub.getStringState(getKey(stub, rrcRef, sequence));
+            if ((entry != null) && (!entry.isEmpty())) {
+                log.add(JSONParser.getFromJSON(entry, LogEntry.class));
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Get the number of entries in the log of the RRC
+     *
+     * @param rrc RRC
+     * @return Number of entries
+     */
+    public static int size(RRCInstance rrc) {
+        return rrc.getLog() != null ? rrc.getLog().size() : rrc.getLogSize();
+    }
+
+    /**
+     * Write audited read to its own key, without touching the RRC or its log
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param entry Log entry of the read
+     */
+    public static void audit(ChaincodeStub stub, String rrcRef, LogEntry entry) {
+        stub.putStringState(stub.createCompositeKey(AUDIT, rrcRef, stub.getTxId()).toString(), getJSON(rrcRef, entry));
+    }
+
+    /**
+     * Get all audited reads of the RRC
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @return Log entries of the reads (ordered by transaction id)
+     */
+    public static List<LogEntry> readAudit(ChaincodeStub stub, String rrcRef) {
+        List<LogEntry> reads = new ArrayList<>();
+        QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(AUDIT, rrcRef));
+        for (KeyValue kv : entries) {
+            reads.add(JSONParser.getFromJSON(kv.getStringValue(), LogEntry.class));
+        }
+        return reads;
+    }
+
+    /**
+     * Delete all entries in the log of the RRC (audited reads are kept)
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     */
+    public static void delete(ChaincodeStub stub, String rrcRef) {
+        QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(LOG, rrcRef));
+        for (KeyValue kv : entries) {
+            stub.delState(kv.getKey());
+        }
+    }
+
+    /**
+     * Put log entry in state
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param sequence Sequence number of the entry
+     * @param entry Log entry
+     */
+    private static void put(ChaincodeStub stub, String rrcRef, int sequence, LogEntry entry) {
+        stub.putStringState(getKey(stub, rrcRef, sequence), getJSON(rrcRef, entry));
+    }
+
+    /**
+     * Query log entries and audited reads of all RRCs with a CouchDB rich
+     * query. The index is selected by the most selective filter given: RRC
+     * reference, then invoker, then event. Entries are returned in order of
+     * time within the index.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference or null for any
+     * @param invokerId Invoker id or null for any
+     * @param event Event or null for any
+     * @param from Start of the time window (inclusive) or null
+     * @param to End of the time window (exclusive) or null
+     * @param pageSize Number of entries to return
+     * @param bookmark Bookmark of the page (empty string for the first page)
+     * @return Page of log entries
+     */
+    public static QueryResultsIteratorWithMetadata<KeyValue> query(ChaincodeStub stub, String rrcRef, String invokerId, String event, Instant from, Instant to, int pageSize, String bookmark) {
+        JsonObject selector = new JsonObject();
+        selector.addProperty("docType", DOC_TYPE);
+        String index;
+        if (rrcRef != null) {
+            selector.addProperty("rrcRef", rrcRef);
+            index = "indexLogRRC";
+        } else if (invokerId != null) {
+            index = "indexLogInvoker";
+        } else {
+            index = "indexLogEvent";
+        }
+        if (invokerId != null) {
+            selector.addProperty("invokerId", invokerId);
+        }
+        if (event != null) {
+            selector.addProperty("event", event);
+        } else if (index.equals("indexLogEvent")) {
+            // every field of the index must be in the selector for CouchDB to use it
+            JsonObject any = new JsonObject();
+            any.addProperty("$gt", ""); // events are never empty
+            selector.add("event", any);
+        }
+        JsonObject time = new JsonObject();
+        time.addProperty("$gte", from == null ? 0 : from.toEpochMilli());
+        if (to != null) {
+            time.addProperty("$lt", to.toEpochMilli());
+        }
+        selector.add("time", time);
+        JsonArray useIndex = new JsonArray();
+        useIndex.add("_design/" + index + "Doc");
+        useIndex.add(index);
+        JsonObject query = new JsonObject();
+        query.add("selector", selector);
+        query.add("use_index", useIndex);
+        return stub.getQueryResultWithPagination(JSONParser.getJSON(query), pageSize, bookmark);
+    }
+
+    /**
+     * Rewrite the log entries and audited reads of the RRC stored before they
+     * were queryable, adding the fields used by the rich queries
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     */
+    public static void reindex(ChaincodeStub stub, String rrcRef) {
+        for (String objectType : new String[]{LOG, AUDIT}) {
+            QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(objectType, rrcRef));
+            for (KeyValue kv : entries) {
+                JsonObject json = JSONParser.getFromJSON(kv.getStringValue(), JsonObject.class);
+                if (!json.has("docType")) {
+                    stub.putStringState(kv.getKey(), getJSON(rrcRef, JSONParser.getFromJSON(kv.getStringValue(), LogEntry.class)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the stored JSON representation of a log entry
+     *
+     * @param rrcRef RRC reference
+     * @param entry Log entry
+     * @return JSON representation with the fields used by the rich queries
+     */
+    private static String getJSON(String rrcRef, LogEntry entry) {
+        JsonObject json = JSONParser.getJSONTree(entry).getAsJsonObject();
+        json.addProperty("docType", DOC_TYPE);
+        json.addProperty("rrcRef", rrcRef);
+        if (entry.getTimestamp() != null) {
+            try {
+                // compared numerically, as ISO-8601 strings with fractions of seconds do not sort by time
+                json.addProperty("time", Instant.parse(entry.getTimestamp()).toEpochMilli());
+            } catch (DateTimeParseException e) {
+                // entries with timestamps in other formats are not found by time window
+            }
+        }
+        return JSONParser.getJSON(json);
+    }
+
+    /**
+     * Get the key of a log entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param sequence Sequence number of the entry
+     * @return Composite key of the entry
+     */
+    private static String getKey(ChaincodeStub stub, String rrcRef, int sequence) {
+        // zero-padded so that the entries are returned in sequence order
+        return stub.createCompositeKey(LOG, rrcRef, String.format("%010d", sequence)).toString();
+    }
+}
@@ -1,21 +1,22 @@
 /* SPDX-License-Identifier: Apache-2.0 */
 package main.java.com.example.recordrelationshipcontract;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
+import main.java.com.example.contractruntime.Versioned;
 
 /**
  * Class to represent a Record Relationship Contract instance
  *
  * @author karthik
  */
-public class RRCInstance {
+public class RRCInstance implements Versioned {
 
-    private Map<String, List<Event>> acl; // access control list
+    private AccessControlList acl; // access control list
     private int significance; // significance associated with the RRC
-    private List<LogEntry> log; // logs of all read/write events to the record
+    private List<LogEntry> log; // logs of all read/write events to the record (only in documents written before the log was stored separately)
+    private int logSize; // number of entries in the separately stored log
+    private transient boolean partial; // true if the log stored in the document was skipped when reading
+    private Integer schemaVersion; // schema version of the document (not stored in documents written before versioning)
 
     /**
      * Constructor for RRCInstance object
@@ -33,12 +34,26 @@ public class RRCInstance {
      */
     public RRCInstance(String invoker, String mspId, int significance) {
         this.significance = significance;
-        this.acl = new HashMap<>();
+        this.acl = new AccessControlList();
         grant(invoker, Entity.CLIENT, Event.READ); // adding RRC creator to the ACL
         grant(invoker, Entity.CLIENT, Event.WRITE);
         grant(invoker, Entity.CLIENT, Event.CREATE);
         grant(mspId, Entity.MSP, Event.READ); // giving read access to all clients in the MSP
-        this.log = new ArrayList<>();
+    }
+
+    /**
+     * Constructor for RRCInstance object read from a binary document
+     *
+     * @param acl Access control list
+     * @param significance Significance value
+     * @param log Log stored in the document (null if stored separately)
+     * @param logSize Number of entries in the separately stored log
+     */
+    RRCInstance(AccessControlList acl, int significance, List<LogEntry> log, int logSize) {
+        this.acl = acl;
+        this.significance = significance;
+        this.log = log;
+        this.logSize = logSize;
     }
 
     /**
@@ -51,7 +66,18 @@ public class RRCInstance {
      * @return True if authorized
      */
     public boolean hasAccess(String id, Entity entity, Event action) {
-        return this.acl.entrySet().stream().anyMatch((e) -> (e.getKey().equals(id + "," + entity.toString()) && e.getValue().contains(action)));
+        return this.acl.hasAccess(id, entity, action);
+    }
+
+    /**
+     * Returns true if the entity has any access to the record
+     *
+     * @param id Entity id
+     * @param entity Type of entity
+     * @return True if the entity is listed in the ACL
+     */
+    public boolean isListed(String id, Entity entity) {
+        return this.acl.isListed(id, entity);
     }
 
     /**
@@ -62,14 +88,7 @@ public class RRCInstance {
      * @param e Types of access
      */
     public void grant(String entityId, Entity type, Event e) {
-        ArrayList<Event> events;
-        if (this.acl.containsKey(entityId + "," + type.toString())) {
-            events = (ArrayList<Event>) this.acl.get(entityId + "," + type.toString());
-        } else {
-            events = new ArrayList<>();
-        }
-        events.add(e);
-        this.acl.put(entityId + "," + type.toString(), events);
+        this.acl.grant(entityId, type, e);
     }
 
     /**
@@ -80,23 +99,42 @@ public class RRCInstance {
      * @param e Types of access
      */
     public void revoke(String entityId, Entity type, Event e) {
-        this.acl.entrySet().stream().map((entry) -> {
-            if (entry.getKey().equals(entityId + "," + type.toString()) && entry.getValue().contains(e)) {
-                entry.getValue().remove(e);
-            }
-            return entry;
-        }).filter((entry) -> (entry.getValue().isEmpty())).forEachOrdered((entry) -> {
-            this.acl.remove(entry.getKey());
-        });
+        this.acl.revoke(entityId, type, e);
+    }
+
+    /**
+     * Returns the sequence number of the next log entry and increases the log
+     * size
+     *
+     * @return Sequence number
+     */
+    public int nextSequence() {
+        return this.logSize++;
+    }
+
+    /**
+     * Removes the log stored in the document (after the entries are moved to
+     * separate keys)
+     */
+    public void clearLog() {
+        this.log = null;
+    }
+
+    /**
+     * Marks the RRC as read without the log stored in the document
+     */
+    void markPartial() {
+        this.partial = true;
     }
 
     /**
-     * Adds a new log entry to the log
+     * Returns true if the log stored in the document was skipped when reading
+     * the RRC, in which case it must not be written back
      *
-     * @param entry New log entry
+     * @return True if partial
      */
-    public void addLogEntry(LogEntry entry) {
-        this.log.add(entry);
+    public boolean isPartial() {
+        return this.partial;
     }
 
     /**
@@ -113,19 +151,28 @@ public class RRCInstance {
      *
      * @return Access Control List
      */
-    public Map<String, List<Event>> getACL() {
+    public AccessControlList getACL() {
         return this.acl;
     }
 
     /**
-     * Returns log
+     * Returns log stored in the document
      *
-     * @return Log
+     * @return Log or null if the log is stored separately
      */
     public List<LogEntry> getLog() {
         return this.log;
     }
 
+    /**
+     * Returns the number of entries in the separately stored log
+     *
+     * @return Log size
+     */
+    public int getLogSize() {
+        return this.logSize;
+    }
+
     /**
      * Gets significance value
      *
@@ -136,16 +183,21 @@ public class RRCInstance {
     }
 
     /**
-     * Gets entity object of the RRC creator
+     * Gets id of the RRC creator
      *
      * @return RRC creator
      */
     public String getCreator() {
-        for (Map.Entry<String, List<Event>> entry : this.acl.entrySet()) {
-            if (entry.getValue().contains(Event.CREATE)) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return this.acl.getCreator();
+    }
+
+    @Override
+    public int getSchemaVersion() {
+        return this.schemaVersion == null ? 0 : this.schemaVersion;
+    }
+
+    @Override
+    public void setSchemaVersion(int schemaVersion) {
+        this.schemaVersion = schemaVersion;
     }
 }
@@ -0,0 +1,231 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import main.java.com.example.contractruntime.StateCodec;
+
+/**
+ * Codec of RRC documents. In binary form entity types and events are written
+ * as ordinals, client ids as the bytes of their fingerprint and timestamps in
+ * epoch nanoseconds. JSON documents are read with a streaming parser. A head
+ * read (decodeHead) skips over a log stored in the document without
+ * materializing it, for handlers that only need the ACL and significance; the
+ * RRC is then marked partial and cannot be written back.
+ *
+ * @author karthik
+ */
+public class RRCInstanceCodec extends StateCodec<RRCInstance> {
+
+    private static final Event[] EVENTS = Event.values();
+    private static final Entity[] ENTITIES = Entity.values();
+    private static final AccessControlList.Adapter ACL_ADAPTER = new AccessControlList.Adapter();
+
+    public RRCInstanceCodec() {
+        super(RRCInstance.class);
+    }
+
+    @Override
+    protected void write(CodedOutputStream out, RRCInstance rrc) throws IOException {
+        Map<Entity, Map<String, Integer>> entries = rrc.getACL().getEntries();
+        out.writeUInt32NoTag(entries.values().stream().mapToInt(Map::size).sum());
+        for (Map.Entry<Entity, Map<String, Integer>> ids : entries.entrySet()) {
+            for (Map.Entry<String, Integer> id : ids.getValue().entrySet()) {
+                out.writeUInt32NoTag(ids.getKey().ordinal());
+                writeId(out, id.getKey());
+                out.writeUInt32NoTag(id.getValue());
+            }
+        }
+        out.writeSInt32NoTag(rrc.getSignificance());
+        out.writeUInt32NoTag(rrc.getLogSize());
+        List<LogEntry> log = rrc.getLog();
+        out.writeBoolNoTag(log != null);
+        if (log != null) {
+            out.writeUInt32NoTag(log.size());
+            for (LogEntry entry : log) {
+                writeEvent(out, entry.getEvent());
+                writeString(out, entry.getEntry());
+                writeId(out, entry.getInvokerId());
+                writeTimestamp(out, entry.getTimestamp());
+            }
+        }
+    }
+
+    @Override
+    protected RRCInstance read(CodedInputStream in) throws IOException {
+        return read(in, true);
+    }
+
+    @Override
+    protected RRCInstance read(CodedInputStream in, boolean full) throws IOException {
+        AccessControlList acl = new AccessControlList();
+        int entries = in.readUInt32();
+        for (int i = 0; i < entries; i++) {
+            Entity entity = ENTITIES[in.readUInt32()];
+            String id = readId(in);
+            acl.setEvents(id, entity, in.readUInt32());
+        }
+        int significance = in.readSInt32();
+        int logSize = in.readUInt32();
+        List<LogEntry> log = null;
+        boolean partial = false;
+        if (in.readBool()) {
+            int size = in.readUInt32();
+            if (full) {
+                log = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String event = readEvent(in);
+                    String entry = readString(in);
+                    String invokerId = readId(in);
+                    log.add(new LogEntry(event, entry, invokerId, readTimestamp(in)));
+                }
+            } else {
+                // the log is the last field, so the remaining bytes are left unread
+                partial = true;
+            }
+        }
+        RRCInstance rrc = new RRCInstance(acl, significance, log, logSize);
+        if (partial) {
+            rrc.markPartial();
+        }
+        return rrc;
+    }
+
+    @Override
+    protected RRCInstance readJSON(byte[] value, boolean full) throws IOException {
+        AccessControlList acl = null;
+        int significance = 0;
+        List<LogEntry> log = null;
+        int logSize = 0;
+        Integer schemaVersion = null;
+        boolean partial = false;
+        JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(value), StandardCharsets.UTF_8));
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "acl":
+                    acl = ACL_ADAPTER.read(in);
+                    break;
+                case "significance":
+                    significance = in.nextInt();
+                    break;
+                case "logSize":
+                    logSize = in.nextInt();
+                    break;
+                case "schemaVersion":
+                    schemaVersion = in.nextInt();
+                    break;
+                case "log":
+                    if (full) {
+                        log = readLog(in);
+                    } else {
+                        in.skipValue();
+                        partial = true;
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        RRCInstance rrc = new RRCInstance(acl, significance, log, logSize);
+        if (schemaVersion != null) {
+            rrc.setSchemaVersion(schemaVersion);
+        }
+        if (partial) {
+            rrc.markPartial();
+        }
+        return rrc;
+    }
+
+    /**
+     * Read JSON array of log entries
+     *
+     * @param in JSON reader positioned at the array
+     * @return Log entries
+     * @throws IOException If the array is malformed
+     */
+    private static List<LogEntry> readLog(JsonReader in) throws IOException {
+        List<LogEntry> log = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String event = null;
+            String entry = null;
+            String invokerId = null;
+            String timestamp = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "event":
+                        event = in.nextString();
+                        break;
+                    case "entry":
+                        entry = in.nextString();
+                        break;
+                    case "invokerId":
+                        invokerId = in.nextString();
+                        break;
+                    case "timestamp":
+                        timestamp = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            log.add(new LogEntry(event, entry, invokerId, timestamp));
+        }
+        in.endArray();
+        return log;
+    }
+
+    /**
+     * Write event as ordinal (offset by one), or as string if it is not an
+     * Event (e.g. an SQL action)
+     *
+     * @param out Output stream
+     * @param event Event
+     * @throws IOException If the stream cannot be written
+     */
+    private static void writeEvent(CodedOutputStream out, String event) throws IOException {
+        for (Event e : EVENTS) {
+            if (e.name().equals(event)) {
+                out.writeUInt32NoTag(e.ordinal() + 1);
+                return;
+            }
+        }
+        out.writeUInt32NoTag(0);
+        writeString(out, event);
+    }
+
+    /**
+     * Read event written by writeEvent
+     *
+     * @param in Input stream
+     * @return Event
+     * @throws IOException If the stream is malformed
+     */
+    private static String readEvent(CodedInputStream in) throws IOException {
+        int ordinal = in.readUInt32();
+        return ordinal == 0 ? readString(in) : EVENTS[ordinal - 1].name();
+    }
+}
@@ -0,0 +1,23 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.recordrelationshipcontract;
+
+/**
+ * Enum class for the ways reads of an RRC are audited
+ *
+ * @author karthik
+ */
+public enum ReadAudit {
+    LOG("LOG"), // reads are appended to the log of the RRC
+    KEYED("KEYED"); // reads are written to separate audit keys, leaving the RRC untouched
+
+    private final String mode;
+
+    ReadAudit(String mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public String toString() {
+        return this.mode;
+    }
+}
@@ -8,12 +8,39 @@ package main.java.com.example.recordrelationshipcontract;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Base64;
-import com.google.gson.Gson;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import com.google.gson.JsonObject;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.zip.GZIPOutputStream;
+import main.java.com.example.contractruntime.ArgType;
+import main.java.com.example.contractruntime.ChaincodeLauncher;
+import main.java.com.example.contractruntime.Dispatcher;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.contractruntime.Migrator;
+import main.java.com.example.contractruntime.RangeBatch;
+import main.java.com.example.contractruntime.TransactionContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeInvocationSpec;
+import org.hyperledger.fabric.protos.peer.Chaincode.ChaincodeSpec;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.ChaincodeProposalPayload;
+import org.hyperledger.fabric.protos.peer.ProposalPackage.Proposal;
 import org.hyperledger.fabric.shim.ChaincodeBase;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
 /**
  * Class to handle Record Relationship Contract invocation
@@ -21,18 +48,73 @@ import org.hyperledger.fabric.shim.ChaincodeStub;
 public class RecordRelationshipContract extends ChaincodeBase {
 
     private static final Log LOG = LogFactory.getLog(RecordRelationshipContract.class);
+    private static final String CONFIG = "config"; // object type of the contract configuration entries
+    private static final String REWARD = "reward"; // object type of the accrued endorser rewards
+    private static final List<String> FIELDS = Arrays.asList("acl", "significance", "log"); // fields a query can be projected to
+    private static final int GZIP_THRESHOLD = 16 * 1024; // size in bytes above which paged query responses are compressed
+    private static final RRCInstanceCodec CODEC = new RRCInstanceCodec();
+    private static final Migrator<RRCInstance> MIGRATOR = new Migrator<>(CODEC)
+            // 1: register the identities of clients stored by serialized identity (the ACL is read with their ids)
+            .step((stub, rrcRef, rrc) -> IdentityRegistry.register(stub, rrc.getACL().getLegacyIdentities()))
+            // 2: add the fields of the rich queries to the log entries and audited reads
+            .step((stub, rrcRef, rrc) -> LogStore.reindex(stub, rrcRef));
+
+    private final Dispatcher dispatcher = new Dispatcher("RecordRelationshipContract")
+            .register("create", this::create, ArgType.STRING, ArgType.STRING, ArgType.INT)
+            .register("log", this::log, ArgType.STRING, ArgType.STRING, ArgType.STRING)
+            .register("update", this::update, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.STRING)
+            .register("delete", this::delete, ArgType.STRING)
+            .register("query", this::query, 2, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.INT, ArgType.STRING)
+            .register("batch", this::batch, ArgType.STRING)
+            .register("audit", this::audit, ArgType.STRING)
+            .register("queryLog", this::queryLog, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.STRING, ArgType.INT, ArgType.STRING)
+            .register("identity", this::identity, 1, ArgType.STRING, ArgType.STRING)
+            .register("drainRewards", this::drainRewards, ArgType.INT)
+            .register("migrateRange", MIGRATOR::migrateRange, ArgType.INT, ArgType.STRING)
+            .register("migrationStatus", MIGRATOR::migrationStatus, ArgType.INT, ArgType.STRING);
 
     @Override
     public Response init(ChaincodeStub stub) {
         try {
             LOG.info("Init RecordRelationshipContract");
             String func = stub.getFunction();
+            if (func.equals("setEncoding")) {
+                // the encoding can only be changed when the chaincode is instantiated or upgraded
+                return Encoding.configure(new TransactionContext(stub), stub.getParameters());
+            }
+            if (func.equals("setIncentiveMechanism")) {
+                // expecting 2 arguments: chaincode name and channel of the Incentive Mechanism
+                List<String> args = stub.getParameters();
+                if (args.size() != 2) {
+                    return newErrorResponse("Incorrect number of arguments. Expecting 2");
+                }
+                stub.putStringState(getConfigKey(stub, "incentiveChaincode"), args.get(0));
+                stub.putStringState(getConfigKey(stub, "incentiveChannel"), args.get(1));
+                LOG.info(String.format("Significance is updated and rewards are drained by %s on channel %s", args.get(0), args.get(1)));
+                return newSuccessResponse("Init finished successfully");
+            }
+            if (func.equals("setHost")) {
+                // expecting 1 argument: chaincode name of the combined deployment of the contracts
+                List<String> args = stub.getParameters();
+                if (args.size() != 1) {
+                    return newErrorResponse("Incorrect number of arguments. Expecting 1");
+                }
+                stub.putStringState(getConfigKey(stub, "hostChaincode"), args.get(0));
+                LOG.info(String.format("Contracts are hosted by %s", args.get(0)));
+                return newSuccessResponse("Init finished successfully");
+            }
             if (!func.equals("init")) {
                 return newErrorResponse("Function not supported!");
             }
             List<String> args = stub.getParameters();
-            if (!args.isEmpty()) {
-                newErrorResponse("Incorrect number of arguments. Expecting 0");
+            if (args.size() > 1) {
+                // expecting 0 or 1 argument: readAudit (LOG or KEYED)
+                return newErrorResponse("Incorrect number of arguments. Expecting 0 or 1");
+            }
+            if (args.size() == 1) {
+                ReadAudit mode = ReadAudit.valueOf(args.get(0).toUpperCase());
+                stub.putStringState(getConfigKey(stub, "readAudit"), mode.toString());
+                LOG.info(String.format("Reads are audited in %s mode", mode));
             }
             return newSuccessResponse("Init finished successfully");
         } catch (Throwable e) {
@@ -42,43 +124,19 @@ public class RecordRelationshipContract extends ChaincodeBase {
 
     @Override
     public Response invoke(ChaincodeStub stub) {
-        try {
-            LOG.info("Invoke RecordRelationshipContract");
-            String func = stub.getFunction();
-            List<String> args = stub.getParameters();
-            if (func.equals("create")) {
-                return create(stub, args);
-            }
-            if (func.equals("log")) {
-                return log(stub, args);
-            }
-            if (func.equals("update")) {
-                return update(stub, args);
-            }
-            if (func.equals("delete")) {
-                return delete(stub, args);
-            }
-            if (func.equals("query")) {
-                return query(stub, args);
-            }
-            return newErrorResponse("Invalid invoke function name. Expecting one of: [\"create\", \"log\", \"delete\", \"query\"]");
-        } catch (Throwable e) {
-            return newErrorResponse(e);
-        }
+        LOG.info("Invoke RecordRelationshipContract");
+        return dispatcher.dispatch(stub);
     }
 
     /**
      * Create new Record Relationship Contract
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC Reference, UserId and initial Significance
      * @return Error or Success Response
      */
-    private Response create(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 3) {
-            // expecting 3 arguments in the following order: rrcRef, userId, initialSignificance
-            return newErrorResponse("Incorrect number of arguments. Expecting 3");
-        }
+    private Response create(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
         if (!(args.get(1).matches("[0-9]+")) && !(args.get(1).length() == 11)) {
             // expecting user id to be of length 11 and digits only
             return newErrorResponse("User ID format is not valid");
@@ -87,15 +145,17 @@ public class RecordRelationshipContract extends ChaincodeBase {
         String rrcRef = args.get(0);
         String userId = args.get(1);
         int initialSignificance = Integer.parseInt(args.get(2));
-        String timestamp = stub.getTxTimestamp().toString();
-        String creatorCert = Base64.getEncoder().encodeToString(stub.getCreator());
-        String msp = new String(stub.getCreator()).split("MSP")[0].replaceFirst("\\n", "").replaceFirst("\\f", "").replaceAll("[\u0000-\u001f]", "");
+        String timestamp = ctx.getTimestamp();
+        String invokerId = IdentityRegistry.register(ctx);
+        String msp = ctx.getMspId();
         // create new RRC
-        RRCInstance rrc = new RRCInstance(creatorCert, msp, initialSignificance);
-        LogEntry entry = new LogEntry(Event.CREATE.toString(), "", Base64.getEncoder().encodeToString(stub.getCreator()), timestamp);
-        rrc.addLogEntry(entry);
-        stub.putStringState(rrcRef, JSONParser.getJSON(rrc));
-        LOG.info(String.format("Created new RRC with ref %s for UserID %s with Provider %s", rrcRef, userId, msp));
+        RRCInstance rrc = new RRCInstance(invokerId, msp, initialSignificance);
+        LogEntry entry = new LogEntry(Event.CREATE.toString(), "", invokerId, timestamp);
+        LogStore.append(stub, rrcRef, rrc, entry);
+        putRRC(stub, rrcRef, rrc);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Created new RRC with ref %s for UserID %s with Provider %s", rrcRef, userId, msp));
+        }
         // update corresponding Summary Contract (return error if user already has an RRC with the provider)
         List<byte[]> invokeArgs = new ArrayList<>();
         invokeArgs.add("add".getBytes());
@@ -111,28 +171,27 @@ public class RecordRelationshipContract extends ChaincodeBase {
         invokeArgs.add("update".getBytes());
         invokeArgs.add(msp.getBytes());
         invokeArgs.add(Integer.toString(rrc.getSignificance()).getBytes());
-        stub.invokeChaincode("IncentiveMechanism", invokeArgs, "providerschannel");
-        LOG.info("Increased significance for " + msp + " by " + rrc.getSignificance());
-        rewardEndorser(stub, 100);
+        invokeArgs.add(rrcRef.getBytes());
+        stub.invokeChaincode(getConfig(stub, "incentiveChaincode", "IncentiveMechanism"), invokeArgs, getConfig(stub, "incentiveChannel", "providerschannel"));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Increased significance for " + msp + " by " + rrc.getSignificance());
+        }
+        rewardEndorser(ctx, 100);
         return newSuccessResponse("Invoke Success");
     }
 
     /**
      * Add new log to the RRC
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC Reference, SQL Action and Entry
      * @return Error or Success Response
      */
-    private Response log(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 3) {
-            // expecting 3 arguments in the following order: rrcRef, SQLAction, entry
-            return newErrorResponse("Incorrect number of arguments. Expecting 3");
-        }
-        LogEntry entry = new LogEntry(args.get(1), args.get(2), Base64.getEncoder().encodeToString(stub.getCreator()), stub.getTxTimestamp().toString());
-        String rrcJSON = stub.getStringState(args.get(0));
-        RRCInstance rrc = getFromJSON(rrcJSON);
-        rrc.addLogEntry(entry); // add new log entry to the RRC
+    private Response log(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        LogEntry entry = new LogEntry(args.get(1), args.get(2), IdentityRegistry.register(ctx), ctx.getTimestamp());
+        RRCInstance rrc = MIGRATOR.get(stub, args.get(0));
+        LogStore.append(stub, args.get(0), rrc, entry); // add new log entry to the RRC
         if (!entry.getEvent().equals(Event.READ.toString())) {
             // for each edit to the record, increase its significance with 10
             rrc.addSignificance(10);
@@ -143,168 +202,636 @@ public class RecordRelationshipContract extends ChaincodeBase {
             invokeArgs.add(args.get(0).getBytes());
             stub.invokeChaincode("SummaryContract", invokeArgs, "providerschannel");
         }
-        stub.putStringState(args.get(0), JSONParser.getJSON(rrc)); // put updated RRC back in state
-        LOG.info(String.format("Added new log entry to RRC ref %s", args.get(0)));
-        rewardEndorser(stub, 100);
+        putRRC(stub, args.get(0), rrc); // put updated RRC back in state
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Added new log entry to RRC ref %s", args.get(0)));
+        }
+        rewardEndorser(ctx, 100);
         return newSuccessResponse("Log Success", JSONParser.getJSON(entry).getBytes());
     }
 
     /**
      * Grant or revoke access to RRC
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC Reference, client ID, flag (0 for revoke, 1 for grant),
      * flag (0 for client, 1 for MSP) and access type (READ or WRITE)
      * @return Error or Success Response
      */
-    private Response update(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 5) {
-            // expecting 5 arguments in the following order: rrcRef, clientID, flag (0 for revoke, 1 for grant), flag (0 for client, 1 for MSP), accessType (READ or WRITE)
-            return newErrorResponse("Incorrect number of arguments. Expecting 5");
-        }
-        String rrcJSON = stub.getStringState(args.get(0));
-        RRCInstance rrc = getFromJSON(rrcJSON);
-        String creator = rrc.getCreator().split(",")[0];
+    private Response update(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        RRCInstance rrc = MIGRATOR.get(stub, args.get(0));
+        Entity entity = args.get(3).equals("0") ? Entity.CLIENT : Entity.MSP;
+        LogEntry entry;
+        try {
+            entry = changeAccess(ctx, rrc, IdentityRegistry.register(ctx), args.get(1), entity, args.get(2).equals("0"), args.get(4));
+        } catch (IllegalArgumentException e) {
+            return newErrorResponse(e.getMessage());
+        }
+        LogStore.append(stub, args.get(0), rrc, entry);
+        // write to state database
+        putRRC(stub, args.get(0), rrc);
+        rewardEndorser(ctx, 100);
+        return newSuccessResponse("Update Success");
+    }
+
+    /**
+     * Grant or revoke access to RRC in memory
+     *
+     * @param ctx Context of the transaction
+     * @param rrc RRC
+     * @param invokerId Id of the invoking client
+     * @param entityId Client or MSP id (client ids may be given as id or as
+     * base64 encoded serialized identity)
+     * @param entity Entity type
+     * @param grant True to grant, false to revoke
+     * @param access Access type
+     * @return Log entry of the change
+     * @throws IllegalArgumentException If the change is not allowed
+     */
+    private LogEntry changeAccess(TransactionContext ctx, RRCInstance rrc, String invokerId, String entityId, Entity entity, boolean grant, String access) throws IllegalArgumentException {
+        String id = entity == Entity.CLIENT ? IdentityRegistry.normalize(entityId) : entityId;
+        Event event = Event.valueOf(access);
         // if invoker does not have CREATE access or invoker is trying to edit his own ACL, deny edit
-        if ((!rrc.hasAccess(Base64.getEncoder().encodeToString(stub.getCreator()), Entity.CLIENT, Event.CREATE)) || (creator.equals(args.get(1)))) {
-            return newErrorResponse("Edit denied");
+        if ((!rrc.hasAccess(invokerId, Entity.CLIENT, Event.CREATE)) || (id.equals(rrc.getCreator()))) {
+            throw new IllegalArgumentException("Edit denied");
         }
-        String event = "";
-        Entity entity;
-        if (args.get(3).equals("0")) {
-            entity = Entity.CLIENT;
+        if (grant) {
+            // grant permission
+            if (rrc.hasAccess(id, entity, event)) {
+                throw new IllegalArgumentException("Client already has permission");
+            }
+            rrc.grant(id, entity, event);
         } else {
-            entity = Entity.MSP;
+            // revoke permission
+            if (!rrc.hasAccess(id, entity, event)) {
+                throw new IllegalArgumentException("Client does not have this permission");
+            }
+            rrc.revoke(id, entity, event);
         }
-        switch (args.get(2)) {
-            case "0":
-                // grant permission
-                if (rrc.hasAccess(args.get(1), entity, Event.valueOf(args.get(4)))) {
-                    return newErrorResponse("Client already has permission");
-                }
-                rrc.grant(args.get(1), entity, Event.valueOf(args.get(4)));
-                event = Event.GRANT.toString();
-                break;
-            case "1":
-                // revoke permission
-                if (!rrc.hasAccess(args.get(1), entity, Event.valueOf(args.get(4)))) {
-                    return newErrorResponse("Client does not have this permission");
+        // create log entry
+        String edit = access + " access for " + id;
+        return new LogEntry((grant ? Event.GRANT : Event.REVOKE).toString(), edit, invokerId, ctx.getTimestamp());
+    }
+
+    /**
+     * Apply an ordered list of log, grant and revoke operations on one or more
+     * RRCs in a single transaction. Each RRC is read and written once, the
+     * Summary Contract is notified once per edited RRC and the endorser is
+     * rewarded once for all applied operations. Operations that fail are
+     * skipped and reported in the response.
+     *
+     * @param ctx Context of the transaction
+     * @param args JSON array of operations
+     * @return Error or Success Response with JSON array of operation results
+     */
+    private Response batch(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        BatchOperation[] operations = JSONParser.getFromJSON(args.get(0), BatchOperation[].class);
+        String invokerId = IdentityRegistry.register(ctx);
+        Map<String, RRCInstance> rrcs = new LinkedHashMap<>(); // RRCs read by the batch
+        Set<String> changed = new LinkedHashSet<>(); // RRCs to write back
+        Set<String> edited = new LinkedHashSet<>(); // RRCs to update the last edit of in the Summary Contract
+        List<BatchResult> results = new ArrayList<>();
+        int applied = 0;
+        for (BatchOperation op : operations) {
+            String rrcRef = op.getRrcRef();
+            RRCInstance rrc = rrcs.computeIfAbsent(rrcRef, (ref) -> MIGRATOR.get(stub, ref));
+            if (rrc == null) {
+                results.add(new BatchResult(String.format("RRC with ref %s does not exist", rrcRef)));
+                continue;
+            }
+            LogEntry entry;
+            try {
+                switch (op.getOp()) {
+                    case "log":
+                        entry = new LogEntry(op.getAction(), op.getEntry(), invokerId, ctx.getTimestamp());
+                        if (!entry.getEvent().equals(Event.READ.toString())) {
+                            // for each edit to the record, increase its significance with 10
+                            rrc.addSignificance(10);
+                            edited.add(rrcRef);
+                        }
+                        break;
+                    case "grant":
+                        entry = changeAccess(ctx, rrc, invokerId, op.getId(), Entity.valueOf(op.getEntity()), true, op.getAccess());
+                        break;
+                    case "revoke":
+                        entry = changeAccess(ctx, rrc, invokerId, op.getId(), Entity.valueOf(op.getEntity()), false, op.getAccess());
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Invalid operation %s. Expecting one of: [\"log\", \"grant\", \"revoke\"]", op.getOp()));
                 }
-                rrc.revoke(args.get(1), entity, Event.valueOf(args.get(4)));
-                event = Event.REVOKE.toString();
-                break;
+            } catch (IllegalArgumentException | NullPointerException e) {
+                results.add(new BatchResult(e.getMessage() == null ? "Invalid operation" : e.getMessage()));
+                continue;
+            }
+            LogStore.append(stub, rrcRef, rrc, entry);
+            changed.add(rrcRef);
+            results.add(new BatchResult(entry));
+            applied++;
         }
-        // create log entry
-        String edit = args.get(4) + " access for " + args.get(1);
-        LogEntry entry = new LogEntry(event, edit, Base64.getEncoder().encodeToString(stub.getCreator()), stub.getTxTimestamp().toString());
-        rrc.addLogEntry(entry);
-        // write to state database
-        stub.putStringState(args.get(0), JSONParser.getJSON(rrc));
-        rewardEndorser(stub, 100);
-        return newSuccessResponse("Update Success");
+        for (String rrcRef : changed) {
+            putRRC(stub, rrcRef, rrcs.get(rrcRef));
+        }
+        for (String rrcRef : edited) {
+            //update last edit of RRC in Summary Contract
+            List<byte[]> invokeArgs = new ArrayList<>();
+            invokeArgs.add("update".getBytes());
+            invokeArgs.add(rrcRef.getBytes());
+            stub.invokeChaincode("SummaryContract", invokeArgs, "providerschannel");
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Applied %s of %s operations on %s RRCs", applied, operations.length, changed.size()));
+        }
+        if (applied > 0) {
+            rewardEndorser(ctx, 100 * applied);
+        }
+        return newSuccessResponse("Batch Success", JSONParser.getJSON(results).getBytes());
     }
 
     /**
      * Delete RRC and corresponding reference in Summary Contract
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC reference
      * @return Error or Success Response
      */
-    private Response delete(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: rrcRef
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
-        }
-        String rrcJSON = stub.getStringState(args.get(0));
-        RRCInstance rrc = getFromJSON(rrcJSON);
-        String creator = rrc.getCreator().split(",")[0];
+    private Response delete(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        RRCInstance rrc = getRRC(stub, args.get(0), false);
+        if (rrc == null) {
+            return newErrorResponse(String.format("RRC with ref %s does not exist", args.get(0)));
+        }
+        String creator = rrc.getCreator();
         if (!rrc.hasAccess(creator, Entity.CLIENT, Event.CREATE)) {
             return newErrorResponse("Delete denied");
         }
         stub.delState(args.get(0)); // delete RRC
+        LogStore.delete(stub, args.get(0));
         List<byte[]> invokeArgs = new ArrayList<>(); // arguments to invoke Summary Contract with
         String invoke = "deleteReference";
         invokeArgs.add(invoke.getBytes());
         invokeArgs.add(args.get(0).getBytes());
         stub.invokeChaincode("SummaryContract", invokeArgs, "providerschannel"); // delete reference in Summary Contract
-        LOG.info(String.format("Deleted RRC with ref %s", args.get(0)));
-        rewardEndorser(stub, 100);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Deleted RRC with ref %s", args.get(0)));
+        }
+        rewardEndorser(ctx, 100);
         return newSuccessResponse("Delete Success");
     }
 
     /**
-     * Query for RecordRelationshipInstance object
+     * Query for RecordRelationshipInstance object. The read is appended to the
+     * log of the RRC, or in KEYED read audit mode written to its own audit key
+     * so that concurrent reads of the RRC do not conflict.
      *
-     * @param stub Interface between chaincode and peer
-     * @param args RRC Reference and Override flag (1 for override)
+     * The optional arguments project the response to a comma separated list
+     * of fields (acl, significance, log; empty for all) and page the log: at
+     * most limit entries (0 for no limit), either the last ones or, given a
+     * cursor, the ones after that sequence number. A paged log is returned
+     * with the total logSize and the cursor of its last entry. Responses to
+     * queries with optional arguments are gzip compressed above 16 KiB, which
+     * is indicated in the response message.
+     *
+     * @param ctx Context of the transaction
+     * @param args RRC Reference, Override flag (1 for override) and optionally
+     * fields, limit and cursor
      * @return Error or Success Response with JSON representation
      */
-    private Response query(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 2) {
-            // expecting 2 argument: rrcRef, override
-            return newErrorResponse("Incorrect number of arguments. Expecting 2");
+    private Response query(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        List<String> fields = FIELDS;
+        if ((args.size() > 2) && (!args.get(2).isEmpty())) {
+            fields = Arrays.asList(args.get(2).split(","));
+            for (String field : fields) {
+                if (!FIELDS.contains(field)) {
+                    return newErrorResponse(String.format("Unknown field %s. Expecting one of: %s", field, FIELDS));
+                }
+            }
+        }
+        int limit = args.size() > 3 ? Integer.parseInt(args.get(3)) : 0;
+        if (limit < 0) {
+            return newErrorResponse("Limit must not be negative");
+        }
+        Integer cursor = null;
+        if ((args.size() > 4) && (!args.get(4).isEmpty())) {
+            try {
+                cursor = Integer.parseInt(args.get(4));
+            } catch (NumberFormatException e) {
+                return newErrorResponse(String.format("Invalid cursor %s", args.get(4)));
+            }
         }
-        if ((stub.getStringState(args.get(0))) == null || (stub.getStringState(args.get(0)).equalsIgnoreCase(""))) {
+        // the ACL check only needs the head of the RRC
+        RRCInstance rrc = getRRC(stub, args.get(0), false);
+        if (rrc == null) {
             return newErrorResponse(String.format("RRC with ref %s does not exist", args.get(0)));
         }
-        RRCInstance rrc = getFromJSON(stub.getStringState(args.get(0)));
-        String msp = new String(stub.getCreator()).split("MSP")[0].replaceFirst("\\n", "").replaceFirst("\\f", "").replaceAll("[\u0000-\u001f]", "");
+        String msp = ctx.getMspId();
+        String invokerId = IdentityRegistry.register(ctx);
         LogEntry entry;
-        if ((rrc.hasAccess(Base64.getEncoder().encodeToString(stub.getCreator()), Entity.CLIENT, Event.READ)) || (rrc.hasAccess(msp, Entity.MSP, Event.READ))) {
+        if ((rrc.hasAccess(invokerId, Entity.CLIENT, Event.READ)) || (rrc.hasAccess(msp, Entity.MSP, Event.READ))) {
             // if client is authorized in ACL
-            entry = new LogEntry(Event.READ.toString(), "", Base64.getEncoder().encodeToString(stub.getCreator()), stub.getTxTimestamp().toString());
+            entry = new LogEntry(Event.READ.toString(), "", invokerId, ctx.getTimestamp());
         } else if (args.get(1).equalsIgnoreCase("1")) {
             // if client has asked for override
-            entry = new LogEntry(Event.OVERRIDE.toString(), Event.OVERRIDE.toString() + " " + Event.READ.toString(), Base64.getEncoder().encodeToString(stub.getCreator()), stub.getTxTimestamp().toString());
-            LOG.info(String.format("ACL override initiated by %s", Base64.getEncoder().encodeToString(stub.getCreator())));
+            entry = new LogEntry(Event.OVERRIDE.toString(), Event.OVERRIDE.toString() + " " + Event.READ.toString(), invokerId, ctx.getTimestamp());
+            if (LOG.isInfoEnabled()) {
+                LOG.info(String.format("ACL override initiated by %s", invokerId));
+            }
         } else {
-            return newErrorResponse(String.format("Client %s is not authorized to read this RRC", Base64.getEncoder().encodeToString(stub.getCreator())));
+            return newErrorResponse(String.format("Client %s is not authorized to read this RRC", invokerId));
+        }
+        ReadAudit audit = getReadAudit(stub);
+        // the log in the document is needed to respond with it, or to move it to separate keys when the read is appended
+        if ((rrc.isPartial()) && ((fields.contains("log")) || (audit == ReadAudit.LOG))) {
+            rrc = getRRC(stub, args.get(0), true);
+        }
+        // the response holds the RRC as it was before this read was logged
+        String response;
+        if (args.size() == 2) {
+            response = getJSON(rrc, LogStore.read(stub, args.get(0), rrc));
+        } else {
+            response = getJSON(stub, args.get(0), rrc, fields, limit, cursor);
+        }
+        if (audit == ReadAudit.KEYED) {
+            LogStore.audit(stub, args.get(0), entry);
+        } else {
+            LogStore.append(stub, args.get(0), rrc, entry);
+            putRRC(stub, args.get(0), rrc);
+        }
+        rewardEndorser(ctx, 100);
+        byte[] payload = response.getBytes(StandardCharsets.UTF_8);
+        if ((args.size() > 2) && (payload.length > GZIP_THRESHOLD)) {
+            return newSuccessResponse("Query Success (gzip)", gzip(payload));
+        }
+        return newSuccessResponse("Query Success", payload);
+    }
+
+    /**
+     * Query for the reads of an RRC audited in KEYED read audit mode
+     *
+     * @param ctx Context of the transaction
+     * @param args RRC Reference
+     * @return Error or Success Response with JSON array of log entries
+     */
+    private Response audit(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        RRCInstance rrc = getRRC(stub, args.get(0), false);
+        if (rrc == null) {
+            return newErrorResponse(String.format("RRC with ref %s does not exist", args.get(0)));
+        }
+        String msp = ctx.getMspId();
+        if ((!rrc.hasAccess(IdentityRegistry.register(ctx), Entity.CLIENT, Event.READ)) && (!rrc.hasAccess(msp, Entity.MSP, Event.READ))) {
+            return newErrorResponse("Client is not authorized to read this RRC");
+        }
+        return newSuccessResponse("Query Success", JSONParser.getJSON(LogStore.readAudit(stub, args.get(0))).getBytes());
+    }
+
+    /**
+     * Query the log entries and audited reads of all RRCs by RRC, invoker,
+     * event and time window using the CouchDB indexes packaged with the
+     * chaincode. Only entries of RRCs the client can read are returned, so a
+     * page may hold fewer entries than requested. Rich queries are not
+     * re-executed when the transaction is validated; this is meant to be
+     * evaluated, not submitted. Fabric rejects writes in transactions with
+     * paginated queries, so the query is strictly read-only: the client is
+     * not registered and RRCs in an older schema version are checked without
+     * being migrated (their entries are found once migrateRange has added
+     * the indexed fields).
+     *
+     * @param ctx Context of the transaction
+     * @param args RRC reference, invoker id, event, start and end of the time
+     * window (ISO-8601, end exclusive), each empty for any, page size and
+     * bookmark (empty string for the first page)
+     * @return Error or Success Response with JSON object of the entries and
+     * the bookmark of the next page
+     */
+    private Response queryLog(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(5));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
+        }
+        Instant from;
+        Instant to;
+        try {
+            from = args.get(3).isEmpty() ? null : Instant.parse(args.get(3));
+            to = args.get(4).isEmpty() ? null : Instant.parse(args.get(4));
+        } catch (DateTimeParseException e) {
+            return newErrorResponse(String.format("Invalid timestamp %s. Expecting ISO-8601", e.getParsedString()));
+        }
+        String invokerId = ctx.getCreatorFingerprint();
+        String msp = ctx.getMspId();
+        Map<String, Boolean> readable = new HashMap<>(); // RRCs checked for read access
+        List<JsonObject> entries = new ArrayList<>();
+        QueryResultsIteratorWithMetadata<KeyValue> page = LogStore.query(stub, emptyToNull(args.get(0)), emptyToNull(args.get(1)), emptyToNull(args.get(2)), from, to, pageSize, args.get(6));
+        for (KeyValue kv : page) {
+            JsonObject json = JSONParser.getFromJSON(kv.getStringValue(), JsonObject.class);
+            String rrcRef = json.get("rrcRef").getAsString();
+            boolean access = readable.computeIfAbsent(rrcRef, (ref) -> {
+                RRCInstance rrc = CODEC.decodeHead(stub.getState(ref));
+                return (rrc != null) && ((rrc.hasAccess(invokerId, Entity.CLIENT, Event.READ)) || (rrc.hasAccess(msp, Entity.MSP, Event.READ)));
+            });
+            if (access) {
+                JsonObject entry = JSONParser.getJSONTree(JSONParser.getFromJSON(kv.getStringValue(), LogEntry.class)).getAsJsonObject();
+                entry.addProperty("rrcRef", rrcRef);
+                entries.add(entry);
+            }
         }
-        rrc.addLogEntry(entry);
-        stub.putStringState(args.get(0), JSONParser.getJSON(rrc));
-        rewardEndorser(stub, 100);
-        return newSuccessResponse("Query Success", stub.getStringState(args.get(0)).getBytes());
+        String bookmark = page.getMetadata().getFetchedRecordsCount() < pageSize ? "" : page.getMetadata().getBookmark();
+        JsonObject response = new JsonObject();
+        response.add("entries", JSONParser.getJSONTree(entries));
+        response.addProperty("bookmark", bookmark);
+        return newSuccessResponse("Query Success", JSONParser.getJSON(response).getBytes());
     }
 
     /**
-     * Update significance for endorser organization
+     * Map empty argument to null
+     *
+     * @param arg Argument
+     * @return Argument or null if it is empty
+     */
+    private static String emptyToNull(String arg) {
+        return arg.isEmpty() ? null : arg;
+    }
+
+    /**
+     * Get the configured read audit mode (LOG if not configured)
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Read audit mode
+     */
+    private ReadAudit getReadAudit(ChaincodeStub stub) {
+        String mode = stub.getStringState(getConfigKey(stub, "readAudit"));
+        if ((mode == null) || (mode.isEmpty())) {
+            return ReadAudit.LOG;
+        }
+        return ReadAudit.valueOf(mode);
+    }
+
+    /**
+     * Get a configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param name Name of the entry
+     * @param defaultValue Value if the entry is not configured
+     * @return Configured or default value
+     */
+    private String getConfig(ChaincodeStub stub, String name, String defaultValue) {
+        String value = stub.getStringState(getConfigKey(stub, name));
+        return ((value == null) || (value.isEmpty())) ? defaultValue : value;
+    }
+
+    /**
+     * Get the key of a configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param name Name of the entry
+     * @return Composite key of the entry
+     */
+    private String getConfigKey(ChaincodeStub stub, String name) {
+        return stub.createCompositeKey(CONFIG, name).toString();
+    }
+
+    /**
+     * Put RRC in state in the current schema version
      *
      * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param rrc RRC
+     */
+    private void putRRC(ChaincodeStub stub, String rrcRef, RRCInstance rrc) {
+        if (rrc.isPartial()) {
+            throw new IllegalStateException(String.format("RRC %s was read without its log and cannot be written", rrcRef));
+        }
+        MIGRATOR.put(stub, rrcRef, rrc);
+    }
+
+    /**
+     * Get RRC in the current schema version. Without the log, a log stored in
+     * the document is skipped instead of parsed. Such a partial RRC cannot be
+     * written back, so if it is outdated it is returned without being
+     * upgraded: the migration steps only write other keys (identities and log
+     * entries) and do not change the ACL or significance. The document is
+     * upgraded by the next read with the log or by migrateRange.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param withLog False if only the ACL and significance are needed
+     * @return RRC or null if it does not exist
+     */
+    private RRCInstance getRRC(ChaincodeStub stub, String rrcRef, boolean withLog) {
+        if (!withLog) {
+            RRCInstance rrc = CODEC.decodeHead(stub.getState(rrcRef));
+            return ((rrc == null) || (rrc.isPartial())) ? rrc : MIGRATOR.upgrade(stub, rrcRef, rrc);
+        }
+        return MIGRATOR.get(stub, rrcRef);
+    }
+
+    /**
+     * Resolve identity id to the serialized identity. Clients can resolve
+     * their own id, and the ids of the clients listed in the ACL of an RRC
+     * they are authorized to read.
+     *
+     * @param ctx Context of the transaction
+     * @param args Identity id and RRC Reference (if not the id of the invoker)
+     * @return Error or Success Response with base64 encoded serialized identity
+     */
+    private Response identity(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        if (!args.get(0).equals(ctx.getCreatorFingerprint())) {
+            if (args.size() < 2) {
+                return newErrorResponse("Client is not authorized to resolve this identity");
+            }
+            RRCInstance rrc = getRRC(stub, args.get(1), false);
+            if (rrc == null) {
+                return newErrorResponse(String.format("RRC with ref %s does not exist", args.get(1)));
+            }
+            if ((!rrc.hasAccess(ctx.getCreatorFingerprint(), Entity.CLIENT, Event.READ)) && (!rrc.hasAccess(ctx.getMspId(), Entity.MSP, Event.READ))) {
+                return newErrorResponse("Client is not authorized to read this RRC");
+            }
+            if (!rrc.isListed(args.get(0), Entity.CLIENT)) {
+                return newErrorResponse("Client is not authorized to resolve this identity");
+            }
+        }
+        String identity = IdentityRegistry.resolve(stub, args.get(0));
+        if (identity == null) {
+            return newErrorResponse(String.format("Identity %s is not registered", args.get(0)));
+        }
+        return newSuccessResponse("Query Success", identity.getBytes());
+    }
+
+    /**
+     * Accrue significance for the endorser organization. The reward is written
+     * to its own key and settled later by the Incentive Mechanism, which
+     * selects the endorser and updates its significance. Keys start with the
+     * zero-padded transaction time, so the oldest rewards are drained first.
+     *
+     * @param ctx Context of the transaction
      * @param significance Significance increase
      */
-    private void rewardEndorser(ChaincodeStub stub, int significance) {
-        List<byte[]> invokeArgs = new ArrayList<>();
-        invokeArgs.clear();
-        invokeArgs.add("selectEndorser".getBytes());
-        Response response = stub.invokeChaincode("IncentiveMechanism", invokeArgs, "providerschannel");
-        byte[] endorser = response.getPayload();
-        invokeArgs.clear();
-        invokeArgs.add("update".getBytes());
-        invokeArgs.add(endorser);
-        invokeArgs.add(Integer.toString(significance).getBytes());
-        stub.invokeChaincode("IncentiveMechanism", invokeArgs, "providerschannel");
-        LOG.info("Increased significance for " + new String(endorser) + " by " + significance);
+    private void rewardEndorser(TransactionContext ctx, int significance) {
+        ChaincodeStub stub = ctx.getStub();
+        String msp = ctx.getMspId();
+        Reward reward = new Reward(msp, significance, ctx.getTimestamp());
+        Instant time = ctx.getTxTimestamp();
+        String nanos = String.format("%019d", time.getEpochSecond() * 1_000_000_000L + time.getNano());
+        stub.putStringState(stub.createCompositeKey(REWARD, nanos, stub.getTxId()).toString(), JSONParser.getJSON(reward));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Accrued reward of " + significance + " for endorser of transaction " + stub.getTxId());
+        }
+    }
+
+    /**
+     * Remove and return accrued rewards. Only allowed when invoked by the
+     * Incentive Mechanism (configured with setIncentiveMechanism when
+     * instantiating or upgrading the chaincode) while settling rewards.
+     *
+     * @param ctx Context of the transaction
+     * @param args Maximum number of rewards
+     * @return Error or Success Response with JSON array of rewards
+     */
+    private Response drainRewards(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        if (!getConfig(stub, "incentiveChaincode", "IncentiveMechanism").equals(getProposalChaincode(stub))) {
+            return newErrorResponse("Rewards can only be drained by the Incentive Mechanism");
+        }
+        int max = Integer.parseInt(args.get(0));
+        List<Reward> rewards = new ArrayList<>();
+        QueryResultsIterator<KeyValue> accrued = stub.getStateByPartialCompositeKey(stub.createCompositeKey(REWARD));
+        for (KeyValue kv : accrued) {
+            if (rewards.size() >= max) {
+                break;
+            }
+            rewards.add(JSONParser.getFromJSON(kv.getStringValue(), Reward.class));
+            stub.delState(kv.getKey());
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Drained %s rewards", rewards.size()));
+        }
+        return newSuccessResponse("Drain Success", JSONParser.getJSON(rewards).getBytes());
+    }
+
+    /**
+     * Get name of the chaincode targeted by the transaction proposal (differs
+     * from this chaincode when invoked by another chaincode). When the
+     * proposal targets the combined chaincode (configured with setHost when
+     * instantiating or upgrading the chaincode, CombinedContract by default),
+     * it invokes a function qualified with the contract name, which is
+     * returned instead. Qualified
+     * function names in proposals to any other chaincode are ignored, so they
+     * cannot pose as a hosted contract.
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Chaincode name or null if the proposal cannot be read
+     */
+    private String getProposalChaincode(ChaincodeStub stub) {
+        try {
+            Proposal proposal = Proposal.parseFrom(stub.getSignedProposal().getProposalBytes());
+            ChaincodeProposalPayload payload = ChaincodeProposalPayload.parseFrom(proposal.getPayload());
+            ChaincodeSpec spec = ChaincodeInvocationSpec.parseFrom(payload.getInput()).getChaincodeSpec();
+            if ((getConfig(stub, "hostChaincode", "CombinedContract").equals(spec.getChaincodeId().getName())) && (spec.getInput().getArgsCount() > 0)) {
+                String function = spec.getInput().getArgs(0).toStringUtf8();
+                if (function.indexOf(':') > 0) {
+                    return function.substring(0, function.indexOf(':'));
+                }
+            }
+            return spec.getChaincodeId().getName();
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get JSON representation of the RRC including its log
+     *
+     * @param rrc RRC
+     * @param log Log entries of the RRC
+     * @return JSON representation of the RRC
+     */
+    private String getJSON(RRCInstance rrc, List<LogEntry> log) {
+        JsonObject json = JSONParser.getJSONTree(rrc).getAsJsonObject();
+        json.add("log", JSONParser.getJSONTree(log));
+        return JSONParser.getJSON(json);
+    }
+
+    /**
+     * Get JSON representation of the selected fields of the RRC with a page of
+     * its log
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC reference
+     * @param rrc RRC
+     * @param fields Fields to include
+     * @param limit Maximum number of log entries (0 for no limit)
+     * @param cursor Sequence number after which log entries are returned, or
+     * null for the last entries
+     * @return JSON representation of the RRC
+     */
+    private String getJSON(ChaincodeStub stub, String rrcRef, RRCInstance rrc, List<String> fields, int limit, Integer cursor) {
+        JsonObject json = new JsonObject();
+        if (fields.contains("acl")) {
+            json.add("acl", JSONParser.getJSONTree(rrc.getACL()));
+        }
+        if (fields.contains("significance")) {
+            json.addProperty("significance", rrc.getSignificance());
+        }
+        if (fields.contains("log")) {
+            int size = LogStore.size(rrc);
+            int from;
+            int to;
+            if (cursor == null) {
+                to = size;
+                from = limit == 0 ? 0 : Math.max(size - limit, 0);
+            } else {
+                from = Math.max(cursor + 1, 0);
+                to = limit == 0 ? size : (int) Math.min((long) from + limit, size);
+            }
+            List<LogEntry> log = LogStore.read(stub, rrcRef, rrc, from, Math.max(from, to));
+            json.add("log", JSONParser.getJSONTree(log));
+            json.addProperty("logSize", size);
+            json.addProperty("cursor", log.isEmpty() ? (cursor == null ? size - 1 : cursor) : from + log.size() - 1);
+        }
+        return JSONParser.getJSON(json);
+    }
+
+    /**
+     * Compress response payload
+     *
+     * @param payload Payload
+     * @return Gzip compressed payload
+     */
+    private static byte[] gzip(byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by in-memory streams
+        }
+        return out.toByteArray();
     }
 
     /**
-     * Gets object from JSON string
+     * Warm up the codecs and the dispatch table before accepting transactions
      *
-     * @param json JSON string
-     * @return RecordRelationshipContractInstance object
+     * @param rounds Number of round trips
      */
-    private RRCInstance getFromJSON(String json) {
-        Gson gson = new Gson();
-        return (RRCInstance) gson.fromJson(json, RRCInstance.class);
+    public void warmUp(int rounds) {
+        CODEC.warmUp(new RRCInstance("warmup", "warmup", 1), rounds);
+        dispatcher.warmUp(rounds);
     }
 
     /**
      * Main method
      *
      * @param args Arguments
+     * @throws IOException if the chaincode server cannot be started
+     * @throws InterruptedException if interrupted while serving
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         LOG.info("RecordRelationshipContract main method called");
-        new RecordRelationshipContract().start(args);
+        RecordRelationshipContract chaincode = new RecordRelationshipContract();
+        ChaincodeLauncher.launch(chaincode, chaincode::warmUp, args);
     }
 }
@@ -0,0 +1,120 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package test.java.com.example.recordrelationshipcontract;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.recordrelationshipcontract.AccessControlList;
+import main.java.com.example.recordrelationshipcontract.Entity;
+import main.java.com.example.recordrelationshipcontract.Event;
+import main.java.com.example.recordrelationshipcontract.IdentityRegistry;
+import main.java.com.example.recordrelationshipcontract.RRCInstance;
+import main.java.com.example.recordrelationshipcontract.RRCInstanceCodec;
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the bitmask representation of the ACL, its JSON form and the
+ * decoding of ACLs written by earlier versions
+ *
+ * @author karthik
+ */
+public class AccessControlListTest {
+
+    private static final AccessControlList.Adapter ADAPTER = new AccessControlList.Adapter();
+    private static final String CLIENT = IdentityRegistry.fingerprint("client".getBytes(StandardCharsets.UTF_8));
+    private static final String OTHER = IdentityRegistry.fingerprint("other".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void testGrantAndRevoke() {
+        AccessControlList acl = new AccessControlList();
+        acl.grant(CLIENT, Entity.CLIENT, Event.READ);
+        acl.grant(CLIENT, Entity.CLIENT, Event.WRITE);
+        acl.grant("Org1", Entity.MSP, Event.READ);
+        assertTrue(acl.hasAccess(CLIENT, Entity.CLIENT, Event.READ));
+        assertTrue(acl.hasAccess(CLIENT, Entity.CLIENT, Event.WRITE));
+        assertFalse(acl.hasAccess(CLIENT, Entity.CLIENT, Event.GRANT));
+        assertFalse(acl.hasAccess(CLIENT, Entity.MSP, Event.READ));
+        assertTrue(acl.hasAccess("Org1", Entity.MSP, Event.READ));
+        assertFalse(acl.isListed(OTHER, Entity.CLIENT));
+
+        acl.revoke(CLIENT, Entity.CLIENT, Event.READ);
+        assertFalse(acl.hasAccess(CLIENT, Entity.CLIENT, Event.READ));
+        assertTrue(acl.isListed(CLIENT, Entity.CLIENT));
+        acl.revoke(CLIENT, Entity.CLIENT, Event.WRITE);
+        assertFalse(acl.isListed(CLIENT, Entity.CLIENT));
+        // revoking access that was never granted is a no-op
+        acl.revoke(OTHER, Entity.CLIENT, Event.READ);
+        assertFalse(acl.isListed(OTHER, Entity.CLIENT));
+    }
+
+    @Test
+    public void testCreator() {
+        AccessControlList acl = new AccessControlList();
+        assertNull(acl.getCreator());
+        acl.grant(CLIENT, Entity.CLIENT, Event.CREATE);
+        acl.grant(OTHER, Entity.CLIENT, Event.CREATE);
+        assertEquals(CLIENT, acl.getCreator());
+        acl.revoke(CLIENT, Entity.CLIENT, Event.CREATE);
+        assertEquals(OTHER, acl.getCreator());
+        acl.revoke(OTHER, Entity.CLIENT, Event.CREATE);
+        assertNull(acl.getCreator());
+    }
+
+    @Test
+    public void testJSONForm() throws IOException {
+        AccessControlList acl = new AccessControlList();
+        acl.grant(CLIENT, Entity.CLIENT, Event.WRITE);
+        acl.grant(CLIENT, Entity.CLIENT, Event.READ);
+        acl.grant("Org1", Entity.MSP, Event.READ);
+        assertEquals(String.format("{\"%s,CLIENT\":[\"READ\",\"WRITE\"],\"Org1,MSP\":[\"READ\"]}", CLIENT), ADAPTER.toJson(acl));
+
+        AccessControlList read = ADAPTER.fromJson(ADAPTER.toJson(acl));
+        assertTrue(read.hasAccess(CLIENT, Entity.CLIENT, Event.READ));
+        assertTrue(read.hasAccess(CLIENT, Entity.CLIENT, Event.WRITE));
+        assertTrue(read.hasAccess("Org1", Entity.MSP, Event.READ));
+        assertTrue(read.getLegacyIdentities().isEmpty());
+    }
+
+    @Test
+    public void testLegacyDecode() throws IOException {
+        // earlier documents stored clients by their base64 encoded serialized identity
+        byte[] serialized = SerializedIdentity.newBuilder().setMspid("Org1MSP")
+                .setIdBytes(ByteString.copyFromUtf8("-----BEGIN CERTIFICATE-----\nMIIB\n-----END CERTIFICATE-----\n")).build().toByteArray();
+        String legacy = Base64.getEncoder().encodeToString(serialized);
+        String id = IdentityRegistry.fingerprint(serialized);
+        AccessControlList acl = ADAPTER.fromJson(String.format("{\"%s,CLIENT\":[\"READ\",\"CREATE\"],\"test,CLIENT\":[\"READ\"],\"Org1,MSP\":[\"READ\"]}", legacy));
+        assertTrue(acl.hasAccess(id, Entity.CLIENT, Event.READ));
+        assertEquals(id, acl.getCreator());
+        assertFalse(acl.isListed(legacy, Entity.CLIENT));
+        assertEquals(legacy, acl.getLegacyIdentities().get(id));
+        // strings that are not serialized identities are kept as they are
+        assertTrue(acl.hasAccess("test", Entity.CLIENT, Event.READ));
+        assertEquals(1, acl.getLegacyIdentities().size());
+        assertTrue(acl.hasAccess("Org1", Entity.MSP, Event.READ));
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        RRCInstanceCodec codec = new RRCInstanceCodec();
+        RRCInstance rrc = new RRCInstance(CLIENT, "Org1", 5);
+        rrc.grant("test", Entity.CLIENT, Event.READ);
+        for (Encoding encoding : Encoding.values()) {
+            RRCInstance read = codec.decode(codec.encode(rrc, encoding));
+            assertEquals(CLIENT, read.getCreator());
+            assertTrue(read.hasAccess(CLIENT, Entity.CLIENT, Event.WRITE));
+            assertFalse(read.hasAccess(CLIENT, Entity.CLIENT, Event.GRANT));
+            assertTrue(read.hasAccess("test", Entity.CLIENT, Event.READ));
+            assertTrue(read.hasAccess("Org1", Entity.MSP, Event.READ));
+            assertFalse(read.hasAccess("Org1", Entity.MSP, Event.WRITE));
+            assertEquals(5, read.getSignificance());
+        }
+    }
+}
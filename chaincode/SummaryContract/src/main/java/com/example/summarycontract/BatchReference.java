@@ -0,0 +1,47 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+/**
+ * Class to represent one RRC reference of a batch registration
+ *
+ * @author karthik
+ */
+public class BatchReference {
+
+    private String userId; // id of the user the RRC belongs to
+    private String rrcRef; // RRC reference
+    private String providerId; // id of the provider of the RRC
+
+    /**
+     * Constructor for BatchReference object
+     */
+    public BatchReference() {
+    }
+
+    /**
+     * Returns user id
+     *
+     * @return User id
+     */
+    public String getUserId() {
+        return this.userId;
+    }
+
+    /**
+     * Returns RRC reference
+     *
+     * @return RRC reference
+     */
+    public String getRrcRef() {
+        return this.rrcRef;
+    }
+
+    /**
+     * Returns provider id
+     *
+     * @return Provider id
+     */
+    public String getProviderId() {
+        return this.providerId;
+    }
+}
@@ -0,0 +1,49 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+/**
+ * Class to represent the result of one reference of a batch registration
+ *
+ * @author karthik
+ */
+public class BatchResult {
+
+    private final int status; // 200 if the reference was added, 500 otherwise
+    private final String message; // result message
+
+    /**
+     * Constructor for BatchResult object of an added reference
+     */
+    public BatchResult() {
+        this.status = 200;
+        this.message = "Success";
+    }
+
+    /**
+     * Constructor for BatchResult object of a rejected reference
+     *
+     * @param message Error message
+     */
+    public BatchResult(String message) {
+        this.status = 500;
+        this.message = message;
+    }
+
+    /**
+     * Returns status
+     *
+     * @return Status code
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns message
+     *
+     * @return Result message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+}
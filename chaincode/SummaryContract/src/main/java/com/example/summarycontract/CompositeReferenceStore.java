@@ -0,0 +1,149 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import main.java.com.example.contractruntime.JSONParser;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Stores each RRC reference of a Summary Contract under its own composite
+ * key, so edits to different RRCs of the same user do not conflict
+ *
+ * @author karthik
+ */
+public class CompositeReferenceStore implements ReferenceStore {
+
+    public static final String REFERENCE = "user~rrcRef"; // object type of the reference entries
+    public static final String PROVIDER = "user~provider"; // object type of the provider entries
+
+    @Override
+    public boolean hasProvider(ChaincodeStub stub, String userId, String providerId) {
+        String rrcRef = stub.getStringState(getProviderKey(stub, userId, providerId));
+        return (rrcRef != null) && (!rrcRef.isEmpty());
+    }
+
+    @Override
+    public void addReference(ChaincodeStub stub, String userId, String rrcRef, String providerId, String timestamp) {
+        stub.putStringState(getReferenceKey(stub, userId, rrcRef), JSONParser.getJSON(new String[]{providerId, timestamp}));
+        stub.putStringState(getProviderKey(stub, userId, providerId), rrcRef);
+    }
+
+    @Override
+    public boolean[] addReferences(ChaincodeStub stub, String userId, List<String[]> references, String timestamp) {
+        // references are stored under their own keys, so there is no document to share between them
+        boolean[] added = new boolean[references.size()];
+        Set<String> providers = new HashSet<>(); // providers added in this call (the stub may not return its own writes)
+        for (int i = 0; i < references.size(); i++) {
+            String[] reference = references.get(i);
+            if ((!providers.contains(reference[1].toLowerCase())) && (!hasProvider(stub, userId, reference[1]))) {
+                providers.add(reference[1].toLowerCase());
+                addReference(stub, userId, reference[0], reference[1], timestamp);
+                added[i] = true;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public String updateLastEdit(ChaincodeStub stub, String userId, String rrcRef, String timestamp) {
+        String[] reference = getReference(stub, userId, rrcRef);
+        if (reference == null) {
+            return null;
+        }
+        reference[1] = timestamp;
+        stub.putStringState(getReferenceKey(stub, userId, rrcRef), JSONParser.getJSON(reference));
+        return reference[0];
+    }
+
+    @Override
+    public void removeReference(ChaincodeStub stub, String userId, String rrcRef) {
+        String[] reference = getReference(stub, userId, rrcRef);
+        if (reference != null) {
+            stub.delState(getReferenceKey(stub, userId, rrcRef));
+            stub.delState(getProviderKey(stub, userId, reference[0]));
+        }
+    }
+
+    @Override
+    public Set<String> delete(ChaincodeStub stub, String userId) {
+        SCInstance sc = get(stub, userId);
+        if (sc == null) {
+            return new HashSet<>();
+        }
+        for (String rrcRef : sc.getReferences().keySet()) {
+            stub.delState(getReferenceKey(stub, userId, rrcRef));
+            stub.delState(getProviderKey(stub, userId, sc.getReference(rrcRef)[0]));
+        }
+        return sc.getReferences().keySet();
+    }
+
+    @Override
+    public SCInstance get(ChaincodeStub stub, String userId) {
+        SCInstance sc = new SCInstance();
+        QueryResultsIterator<KeyValue> references = stub.getStateByPartialCompositeKey(stub.createCompositeKey(REFERENCE, userId));
+        for (KeyValue kv : references) {
+            String[] reference = JSONParser.getFromJSON(kv.getStringValue(), String[].class);
+            sc.addReference(reference[0], stub.splitCompositeKey(kv.getKey()).getAttributes().get(1), reference[1]);
+        }
+        return sc.getReferences().isEmpty() ? null : sc;
+    }
+
+    @Override
+    public ReferencePage getPage(ChaincodeStub stub, String userId, int pageSize, String bookmark) {
+        ReferencePage page = new ReferencePage();
+        QueryResultsIteratorWithMetadata<KeyValue> references = stub.getStateByPartialCompositeKeyWithPagination(stub.createCompositeKey(REFERENCE, userId), pageSize, bookmark);
+        for (KeyValue kv : references) {
+            page.addReference(stub.splitCompositeKey(kv.getKey()).getAttributes().get(1), JSONParser.getFromJSON(kv.getStringValue(), String[].class));
+        }
+        if (references.getMetadata().getFetchedRecordsCount() == pageSize) {
+            page.setBookmark(references.getMetadata().getBookmark());
+        }
+        return page;
+    }
+
+    /**
+     * Get reference entry of the user's RRC
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param rrcRef RRC reference
+     * @return Array with provider id and last edit timestamp or null
+     */
+    private String[] getReference(ChaincodeStub stub, String userId, String rrcRef) {
+        String json = stub.getStringState(getReferenceKey(stub, userId, rrcRef));
+        if ((json == null) || (json.isEmpty())) {
+            return null;
+        }
+        return JSONParser.getFromJSON(json, String[].class);
+    }
+
+    /**
+     * Get the composite key of a reference entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param rrcRef RRC reference
+     * @return Composite key
+     */
+    private String getReferenceKey(ChaincodeStub stub, String userId, String rrcRef) {
+        return stub.createCompositeKey(REFERENCE, userId, rrcRef).toString();
+    }
+
+    /**
+     * Get the composite key of a provider entry (provider ids are compared
+     * case-insensitively)
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param providerId Provider id
+     * @return Composite key
+     */
+    private String getProviderKey(ChaincodeStub stub, String userId, String providerId) {
+        return stub.createCompositeKey(PROVIDER, userId, providerId.toLowerCase()).toString();
+    }
+}
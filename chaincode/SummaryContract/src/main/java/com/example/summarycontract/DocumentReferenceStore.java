@@ -0,0 +1,122 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import main.java.com.example.contractruntime.CachingChaincodeStub;
+import main.java.com.example.contractruntime.Migrator;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Stores each Summary Contract as one JSON document under the user id
+ *
+ * @author karthik
+ */
+public class DocumentReferenceStore implements ReferenceStore {
+
+    static final SCInstanceCodec CODEC = new SCInstanceCodec();
+    static final Migrator<SCInstance> MIGRATOR = new Migrator<>(CODEC)
+            // 1: index the RRC references of Summary Contracts written before the index existed
+            .step((stub, userId, sc) -> sc.getReferences().keySet().forEach((rrcRef) -> SummaryContract.putIndex(stub, rrcRef, userId)));
+
+    @Override
+    public boolean hasProvider(ChaincodeStub stub, String userId, String providerId) {
+        SCInstance sc = get(stub, userId);
+        return (sc != null) && sc.getReferences().values().stream().anyMatch((s) -> (s[0].equalsIgnoreCase(providerId)));
+    }
+
+    @Override
+    public void addReference(ChaincodeStub stub, String userId, String rrcRef, String providerId, String timestamp) {
+        SCInstance sc = get(stub, userId);
+        if (sc == null) {
+            sc = new SCInstance(rrcRef, providerId, timestamp);
+        } else {
+            sc.addReference(providerId, rrcRef, timestamp);
+        }
+        MIGRATOR.put(stub, userId, sc);
+    }
+
+    @Override
+    public boolean[] addReferences(ChaincodeStub stub, String userId, List<String[]> references, String timestamp) {
+        // one read and one write of the document for all references of the user
+        SCInstance sc = get(stub, userId);
+        if (sc == null) {
+            sc = new SCInstance();
+        }
+        boolean[] added = new boolean[references.size()];
+        for (int i = 0; i < references.size(); i++) {
+            String providerId = references.get(i)[1];
+            if (sc.getReferences().values().stream().noneMatch((s) -> (s[0].equalsIgnoreCase(providerId)))) {
+                sc.addReference(providerId, references.get(i)[0], timestamp);
+                added[i] = true;
+            }
+        }
+        if (!sc.getReferences().isEmpty()) {
+            MIGRATOR.put(stub, userId, sc);
+        }
+        return added;
+    }
+
+    @Override
+    public String updateLastEdit(ChaincodeStub stub, String userId, String rrcRef, String timestamp) {
+        SCInstance sc = get(stub, userId);
+        if ((sc == null) || (sc.getReference(rrcRef) == null)) {
+            return null;
+        }
+        sc.updateLastEdit(rrcRef, timestamp);
+        MIGRATOR.put(stub, userId, sc);
+        return sc.getReference(rrcRef)[0];
+    }
+
+    @Override
+    public void removeReference(ChaincodeStub stub, String userId, String rrcRef) {
+        SCInstance sc = get(stub, userId);
+        if (sc != null) {
+            sc.removeReference(rrcRef);
+            MIGRATOR.put(stub, userId, sc);
+        }
+    }
+
+    @Override
+    public Set<String> delete(ChaincodeStub stub, String userId) {
+        SCInstance sc = get(stub, userId);
+        stub.delState(userId);
+        return sc == null ? Collections.emptySet() : sc.getReferences().keySet();
+    }
+
+    @Override
+    public SCInstance get(ChaincodeStub stub, String userId) {
+        return MIGRATOR.upgrade(stub, userId, CachingChaincodeStub.getObject(stub, userId, CODEC));
+    }
+
+    @Override
+    public ReferencePage getPage(ChaincodeStub stub, String userId, int pageSize, String bookmark) {
+        ReferencePage page = new ReferencePage();
+        SCInstance sc = get(stub, userId);
+        if (sc == null) {
+            return page;
+        }
+        // the whole document is read anyway, the page only bounds the response; the bookmark is the last reference returned
+        SortedMap<String, String[]> references = new TreeMap<>(sc.getReferences());
+        if (!bookmark.isEmpty()) {
+            // continue after the last reference of the previous page
+            references = references.tailMap(new String(Base64.getUrlDecoder().decode(bookmark), StandardCharsets.UTF_8) + "\0");
+        }
+        String last = null;
+        for (Map.Entry<String, String[]> reference : references.entrySet()) {
+            if (page.getReferences().size() == pageSize) {
+                page.setBookmark(Base64.getUrlEncoder().withoutPadding().encodeToString(last.getBytes(StandardCharsets.UTF_8)));
+                break;
+            }
+            page.addReference(reference.getKey(), reference.getValue());
+            last = reference.getKey();
+        }
+        return page;
+    }
+}
@@ -0,0 +1,61 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class to represent one page of the RRC references of a Summary Contract
+ *
+ * @author karthik
+ */
+public class ReferencePage {
+
+    private final Map<String, String[]> references; // map of RRC references in the page
+    private String bookmark; // bookmark of the next page (empty if this is the last page)
+
+    /**
+     * Constructor for ReferencePage object
+     */
+    public ReferencePage() {
+        this.references = new LinkedHashMap<>();
+        this.bookmark = "";
+    }
+
+    /**
+     * Add RRC reference to the page
+     *
+     * @param rrcRef RRC reference
+     * @param reference Array with provider id and last edit timestamp
+     */
+    public void addReference(String rrcRef, String[] reference) {
+        this.references.put(rrcRef, reference);
+    }
+
+    /**
+     * Get RRC reference map of the page
+     *
+     * @return RRC reference map
+     */
+    public Map<String, String[]> getReferences() {
+        return this.references;
+    }
+
+    /**
+     * Set bookmark of the next page
+     *
+     * @param bookmark Bookmark (empty if this is the last page)
+     */
+    public void setBookmark(String bookmark) {
+        this.bookmark = bookmark;
+    }
+
+    /**
+     * Get bookmark of the next page
+     *
+     * @return Bookmark (empty if this is the last page)
+     */
+    public String getBookmark() {
+        return this.bookmark;
+    }
+}
@@ -0,0 +1,101 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+import java.util.List;
+import java.util.Set;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Interface for reading and writing the RRC references of Summary Contracts
+ *
+ * @author karthik
+ */
+public interface ReferenceStore {
+
+    /**
+     * Returns true if the user already has an RRC with the provider
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param providerId Provider id
+     * @return True if an RRC with the provider exists
+     */
+    boolean hasProvider(ChaincodeStub stub, String userId, String providerId);
+
+    /**
+     * Add RRC reference to the user's Summary Contract, creating the contract
+     * if it does not exist
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param rrcRef RRC reference
+     * @param providerId Provider id
+     * @param timestamp Timestamp
+     */
+    void addReference(ChaincodeStub stub, String userId, String rrcRef, String providerId, String timestamp);
+
+    /**
+     * Add RRC references to the user's Summary Contract, creating the contract
+     * if it does not exist. A reference is skipped if the user already has an
+     * RRC with its provider, including one added earlier in the same call.
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param references Arrays with RRC reference and provider id
+     * @param timestamp Timestamp
+     * @return For each reference, true if it was added
+     */
+    boolean[] addReferences(ChaincodeStub stub, String userId, List<String[]> references, String timestamp);
+
+    /**
+     * Update last edit timestamp of the user's RRC
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param rrcRef RRC reference
+     * @param timestamp New last edit
+     * @return Provider id of the RRC or null if the reference does not exist
+     */
+    String updateLastEdit(ChaincodeStub stub, String userId, String rrcRef, String timestamp);
+
+    /**
+     * Remove RRC reference from the user's Summary Contract
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param rrcRef RRC reference
+     */
+    void removeReference(ChaincodeStub stub, String userId, String rrcRef);
+
+    /**
+     * Delete the user's Summary Contract
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @return RRC references that were removed
+     */
+    Set<String> delete(ChaincodeStub stub, String userId);
+
+    /**
+     * Get the user's Summary Contract
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @return Summary Contract or null if it does not exist
+     */
+    SCInstance get(ChaincodeStub stub, String userId);
+
+    /**
+     * Get one page of the RRC references of the user's Summary Contract in
+     * order of RRC reference. Stores may read more than the page (see
+     * DocumentReferenceStore).
+     *
+     * @param stub Interface between chaincode and peer
+     * @param userId User id
+     * @param pageSize Maximum number of references in the page
+     * @param bookmark Bookmark returned with the previous page (empty string
+     * for the first page)
+     * @return Page of references with the bookmark of the next page
+     */
+    ReferencePage getPage(ChaincodeStub stub, String userId, int pageSize, String bookmark);
+}
@@ -3,20 +3,23 @@ package main.java.com.example.summarycontract;
 
 import java.util.HashMap;
 import java.util.Map;
+import main.java.com.example.contractruntime.Versioned;
 
 /**
  * Class to represent a Summary Contract instance
  *
  * @author karthik
  */
-public class SCInstance {
+public class SCInstance implements Versioned {
 
     private Map<String, String[]> references; // map of RRC references
+    private Integer schemaVersion; // schema version of the Summary Contract
 
     /**
      * Constructor for SCInstance object
      */
     public SCInstance() {
+        this.references = new HashMap<>();
     }
 
     /**
@@ -82,4 +85,14 @@ public class SCInstance {
     public Map<String, String[]> getReferences() {
         return this.references;
     }
+
+    @Override
+    public int getSchemaVersion() {
+        return this.schemaVersion == null ? 0 : this.schemaVersion;
+    }
+
+    @Override
+    public void setSchemaVersion(int schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
 }
@@ -0,0 +1,43 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import main.java.com.example.contractruntime.StateCodec;
+
+/**
+ * Codec of Summary Contract documents. In binary form each reference is
+ * written as RRC reference, provider id and last edit in epoch nanoseconds.
+ *
+ * @author karthik
+ */
+public class SCInstanceCodec extends StateCodec<SCInstance> {
+
+    public SCInstanceCodec() {
+        super(SCInstance.class);
+    }
+
+    @Override
+    protected void write(CodedOutputStream out, SCInstance sc) throws IOException {
+        out.writeUInt32NoTag(sc.getReferences().size());
+        for (Map.Entry<String, String[]> reference : sc.getReferences().entrySet()) {
+            writeString(out, reference.getKey());
+            writeString(out, reference.getValue()[0]);
+            writeTimestamp(out, reference.getValue()[1]);
+        }
+    }
+
+    @Override
+    protected SCInstance read(CodedInputStream in) throws IOException {
+        SCInstance sc = new SCInstance();
+        int references = in.readUInt32();
+        for (int i = 0; i < references; i++) {
+            String rrcRef = readString(in);
+            String providerId = readString(in);
+            sc.addReference(providerId, rrcRef, readTimestamp(in));
+        }
+        return sc;
+    }
+}
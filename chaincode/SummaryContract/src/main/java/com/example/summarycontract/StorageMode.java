@@ -0,0 +1,32 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package main.java.com.example.summarycontract;
+
+/**
+ * Enum class for the layouts used to store Summary Contracts
+ *
+ * @author karthik
+ */
+public enum StorageMode {
+    DOCUMENT("DOCUMENT"), // one SCInstance document per user
+    COMPOSITE("COMPOSITE"); // one composite key per RRC reference
+
+    private final String mode;
+
+    StorageMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the store implementing the storage mode
+     *
+     * @return Reference store
+     */
+    public ReferenceStore getStore() {
+        return this == COMPOSITE ? new CompositeReferenceStore() : new DocumentReferenceStore();
+    }
+
+    @Override
+    public String toString() {
+        return this.mode;
+    }
+}
@@ -6,14 +6,23 @@ SPDX-License-Identifier: Apache-2.0
  */
 package main.java.com.example.summarycontract;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import main.java.com.example.contractruntime.ArgType;
+import main.java.com.example.contractruntime.ChaincodeLauncher;
+import main.java.com.example.contractruntime.Dispatcher;
+import main.java.com.example.contractruntime.Encoding;
+import main.java.com.example.contractruntime.JSONParser;
+import main.java.com.example.contractruntime.RangeBatch;
+import main.java.com.example.contractruntime.TransactionContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hyperledger.fabric.shim.ChaincodeBase;
 import org.hyperledger.fabric.shim.ChaincodeStub;
-import org.hyperledger.fabric.shim.ledger.KeyValue;
-import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
 
 /**
  * Class to handle Summary Contract invocation
@@ -21,18 +30,42 @@ import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
 public class SummaryContract extends ChaincodeBase {
 
     private static final Log LOG = LogFactory.getLog(SummaryContract.class);
+    private static final String RRC_INDEX = "rrc~user"; // object type of the RRC reference to user id index
+    private static final String CONFIG = "config"; // object type of the contract configuration entries
+
+    private final Dispatcher dispatcher = new Dispatcher("SummaryContract")
+            .register("add", this::add, ArgType.STRING, ArgType.STRING, ArgType.STRING)
+            .register("addBatch", this::addBatch, ArgType.STRING)
+            .register("update", this::update, ArgType.STRING)
+            .register("delete", this::delete, ArgType.STRING)
+            .register("deleteReference", this::deleteReference, ArgType.STRING)
+            .register("query", this::query, ArgType.STRING)
+            .register("queryPage", this::queryPage, ArgType.STRING, ArgType.INT, ArgType.STRING)
+            .register("buildIndex", this::buildIndex, ArgType.INT, ArgType.STRING)
+            .register("migrateRange", DocumentReferenceStore.MIGRATOR::migrateRange, ArgType.INT, ArgType.STRING)
+            .register("migrationStatus", DocumentReferenceStore.MIGRATOR::migrationStatus, ArgType.INT, ArgType.STRING);
 
     @Override
     public Response init(ChaincodeStub stub) {
         try {
             LOG.info("Init SummaryContract");
             String func = stub.getFunction();
+            if (func.equals("setEncoding")) {
+                // the encoding can only be changed when the chaincode is instantiated or upgraded
+                return Encoding.configure(new TransactionContext(stub), stub.getParameters());
+            }
             if (!func.equals("init")) {
                 return newErrorResponse("Function not supported!");
             }
             List<String> args = stub.getParameters();
-            if (!args.isEmpty()) {
-                newErrorResponse("Incorrect number of arguments. Expecting 0");
+            if (args.size() > 1) {
+                // expecting 0 or 1 argument: storageMode (DOCUMENT or COMPOSITE)
+                return newErrorResponse("Incorrect number of arguments. Expecting 0 or 1");
+            }
+            if (args.size() == 1) {
+                StorageMode mode = StorageMode.valueOf(args.get(0).toUpperCase());
+                stub.putStringState(getConfigKey(stub, "storageMode"), mode.toString());
+                LOG.info(String.format("Summary Contracts are stored in %s mode", mode));
             }
             return newSuccessResponse("Init finished successfully");
         } catch (Throwable e) {
@@ -42,190 +75,321 @@ public class SummaryContract extends ChaincodeBase {
 
     @Override
     public Response invoke(ChaincodeStub stub) {
-        try {
-            LOG.info("Invoke SummaryContract");
-            String func = stub.getFunction();
-            List<String> args = stub.getParameters();
-            if (func.equals("add")) {
-                return add(stub, args);
-            }
-            if (func.equals("update")) {
-                return update(stub, args);
-            }
-            if (func.equals("delete")) {
-                return delete(stub, args);
-            }
-            if (func.equals("deleteReference")) {
-                return deleteReference(stub, args);
-            }
-            if (func.equals("query")) {
-                return query(stub, args);
-            }
-            return newErrorResponse("Function not supported! Supported functions are \"create\", \"update\", \"delete\", \"deleteReference\" or \"query\"");
-        } catch (Throwable e) {
-            return newErrorResponse(e);
-        }
+        LOG.info("Invoke SummaryContract");
+        return dispatcher.dispatch(stub);
     }
 
     /**
      * Create a Summary Contract for the user if it does not already exist and
      * add RRC reference to the contract
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args UserId, RRCRef and ProviderId
      * @return Error or Success Response
      */
-    private Response add(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 3) {
-            // expecting 3 arguments in the following order: userId, rrcRef, providerId
-            return newErrorResponse("Incorrect number of arguments. Expecting 3");
-        }
+    private Response add(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
         // get arguments
-        SCInstance sc;
+        ReferenceStore store = getStore(stub);
         String userId = args.get(0);
         String rrcRef = args.get(1);
         String providerId = args.get(2);
-        String timestamp = stub.getTxTimestamp().toString();
+        String timestamp = ctx.getTimestamp();
         // check if the user already has a Summary Contract and if the user already has an RRC with the provider
-        if ((stub.getStringState(userId) == null) || (stub.getStringState(userId).equalsIgnoreCase(""))) {
-            sc = new SCInstance(rrcRef, providerId, timestamp);
-            stub.putStringState(userId, JSONParser.getJSON(sc));
-            LOG.info(String.format("SummaryContract for UserID %s not found. Created new SummaryContract: %s", userId, JSONParser.getJSON(sc)));
-        } else if (JSONParser.getFromJSON(stub.getStringState(userId)).getReferences().values().stream().anyMatch((s) -> (s[0].equalsIgnoreCase(providerId)))) {
+        if (store.hasProvider(stub, userId, providerId)) {
             return newErrorResponse(String.format("UserID %s already has an RRC with ProviderID %s", userId, providerId));
-        } else {
-            sc = JSONParser.getFromJSON(stub.getStringState(userId));
-            sc.addReference(providerId, rrcRef, timestamp);
-            stub.putStringState(userId, JSONParser.getJSON(sc));
-            LOG.info(String.format("Summary Contract already exists. No existing RRC with ProviderID %s for UserID %s was found. Added new RRCRef: %s", providerId, userId, rrcRef));
+        }
+        store.addReference(stub, userId, rrcRef, providerId, timestamp);
+        putIndex(stub, rrcRef, userId);
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("No existing RRC with ProviderID %s for UserID %s was found. Added new RRCRef: %s", providerId, userId, rrcRef));
         }
         return newSuccessResponse("Invoke Success");
     }
 
+    /**
+     * Add many RRC references in a single transaction. References are grouped
+     * by user so that each Summary Contract is read and written once.
+     * References to a provider the user already has an RRC with are skipped
+     * and reported in the response.
+     *
+     * @param ctx Context of the transaction
+     * @param args JSON array of references (userId, rrcRef and providerId)
+     * @return Error or Success Response with JSON array of reference results
+     */
+    private Response addBatch(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        BatchReference[] references = JSONParser.getFromJSON(args.get(0), BatchReference[].class);
+        ReferenceStore store = getStore(stub);
+        String timestamp = ctx.getTimestamp();
+        BatchResult[] results = new BatchResult[references.length];
+        Map<String, List<Integer>> users = new LinkedHashMap<>(); // positions of the references of each user
+        for (int i = 0; i < references.length; i++) {
+            BatchReference reference = references[i];
+            if ((reference.getUserId() == null) || (reference.getRrcRef() == null) || (reference.getProviderId() == null)) {
+                results[i] = new BatchResult("Expecting userId, rrcRef and providerId");
+                continue;
+            }
+            users.computeIfAbsent(reference.getUserId(), (userId) -> new ArrayList<>()).add(i);
+        }
+        int added = 0;
+        for (Map.Entry<String, List<Integer>> user : users.entrySet()) {
+            String userId = user.getKey();
+            List<String[]> additions = new ArrayList<>(user.getValue().size());
+            for (int i : user.getValue()) {
+                additions.add(new String[]{references[i].getRrcRef(), references[i].getProviderId()});
+            }
+            boolean[] result = store.addReferences(stub, userId, additions, timestamp);
+            for (int j = 0; j < result.length; j++) {
+                BatchReference reference = references[user.getValue().get(j)];
+                if (result[j]) {
+                    putIndex(stub, reference.getRrcRef(), userId);
+                    results[user.getValue().get(j)] = new BatchResult();
+                    added++;
+                } else {
+                    results[user.getValue().get(j)] = new BatchResult(String.format("UserID %s already has an RRC with ProviderID %s", userId, reference.getProviderId()));
+                }
+            }
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Added %s of %s RRC references for %s users", added, references.length, users.size()));
+        }
+        return newSuccessResponse("Batch Success", JSONParser.getJSON(results).getBytes());
+    }
+
     /**
      * Update last edit timestamp of the selected RRC
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC Reference
      * @return Error or Success Response
      */
-    private Response update(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: rrcRef
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
-        }
+    private Response update(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
         // get arguments
-        SCInstance sc;
         String rrcRef = args.get(0);
-        String timestamp = stub.getTxTimestamp().toString();
+        String timestamp = ctx.getTimestamp();
         String userId = getUserId(stub, rrcRef);
+        if (userId == null) {
+            return newErrorResponse(String.format("RRC ref %s is not associated with any Summary Contract", rrcRef));
+        }
         // update last edit timestamp
-        sc = JSONParser.getFromJSON(stub.getStringState(userId));
-        sc.updateLastEdit(rrcRef, timestamp);
-        stub.putStringState(userId, JSONParser.getJSON(sc));
+        String providerId = getStore(stub).updateLastEdit(stub, userId, rrcRef, timestamp);
+        if (providerId == null) {
+            return newErrorResponse(String.format("Summary Contract for UserID %s has no reference to RRC %s", userId, rrcRef));
+        }
         // check for update in provider's total significance
         List<byte[]> invokeArgs = new ArrayList<>();
         invokeArgs.add("update".getBytes());
-        invokeArgs.add(sc.getReference(rrcRef)[0].getBytes());
+        invokeArgs.add(providerId.getBytes());
         invokeArgs.add("10".getBytes());
+        invokeArgs.add(rrcRef.getBytes()); // distinguishes updates of the provider within one transaction
         stub.invokeChaincode("IncentiveMechanism", invokeArgs, "providerschannel");
-        LOG.info(String.format("Updated last edit for UserID %s RRC %s", userId, rrcRef));
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Updated last edit for UserID %s RRC %s", userId, rrcRef));
+        }
         return newSuccessResponse("Invoke Success");
     }
 
     /**
      * Return user id associated with the RRC reference
      *
+     * @param stub Interface between chaincode and peer
      * @param rrcRef RRC Reference
-     * @return User ID associated with the RRC
+     * @return User ID associated with the RRC or null if the RRC is not indexed
      */
     private String getUserId(ChaincodeStub stub, String rrcRef) {
-        String userId = null;
-        QueryResultsIterator<KeyValue> stateByRange = stub.getQueryResult("{\n"
-                + "   \"selector\": {\n"
-                + "      \"_id\": {\n"
-                + "         \"$gt\": null\n"
-                + "      }\n"
-                + "   }\n"
-                + "}");
-        for (KeyValue kv : stateByRange) {
-            SCInstance sc = JSONParser.getFromJSON(kv.getStringValue());
-            try {
-                sc.getReference(rrcRef);
-                userId = kv.getKey();
-            } catch (NullPointerException e) {
-            }
+        String userId = stub.getStringState(getIndexKey(stub, rrcRef));
+        if ((userId == null) || (userId.isEmpty())) {
+            return null;
         }
         return userId;
     }
 
     /**
-     * Delete Summary Contract associated with the user
+     * Add RRC reference to user id entry to the index
      *
      * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC Reference
+     * @param userId User ID associated with the RRC
+     */
+    static void putIndex(ChaincodeStub stub, String rrcRef, String userId) {
+        stub.putStringState(getIndexKey(stub, rrcRef), userId);
+    }
+
+    /**
+     * Get the index key of the RRC reference
+     *
+     * @param stub Interface between chaincode and peer
+     * @param rrcRef RRC Reference
+     * @return Composite key pointing to the user id
+     */
+    static String getIndexKey(ChaincodeStub stub, String rrcRef) {
+        return stub.createCompositeKey(RRC_INDEX, rrcRef).toString();
+    }
+
+    /**
+     * Get the store for the configured storage mode (DOCUMENT if not
+     * configured)
+     *
+     * @param stub Interface between chaincode and peer
+     * @return Reference store
+     */
+    private ReferenceStore getStore(ChaincodeStub stub) {
+        String mode = stub.getStringState(getConfigKey(stub, "storageMode"));
+        if ((mode == null) || (mode.isEmpty())) {
+            return StorageMode.DOCUMENT.getStore();
+        }
+        return StorageMode.valueOf(mode).getStore();
+    }
+
+    /**
+     * Get the key of a configuration entry
+     *
+     * @param stub Interface between chaincode and peer
+     * @param name Name of the entry
+     * @return Composite key of the entry
+     */
+    private String getConfigKey(ChaincodeStub stub, String name) {
+        return stub.createCompositeKey(CONFIG, name).toString();
+    }
+
+    /**
+     * Build the RRC reference index for Summary Contracts written before the
+     * index existed. Processes up to the given number of Summary Contracts per
+     * call, starting at the given key (see RangeBatch), and returns the key to
+     * continue from (empty when done). Only needed in DOCUMENT mode, as the index is written with every
+     * COMPOSITE reference.
+     *
+     * @param ctx Context of the transaction
+     * @param args Batch size and start key (empty string for the first batch)
+     * @return Error or Success Response with the next start key
+     */
+    private Response buildIndex(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(0));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
+        }
+        RangeBatch batch = RangeBatch.process(stub, args.get(1), pageSize, (userId, value) -> {
+            SCInstance sc = DocumentReferenceStore.CODEC.decode(value);
+            for (String rrcRef : sc.getReferences().keySet()) {
+                putIndex(stub, rrcRef, userId);
+            }
+            return sc.getReferences().size();
+        });
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Indexed %s RRC references. Next key: %s", batch.getProcessed(), batch.getNext()));
+        }
+        return newSuccessResponse("Index Success", batch.getNext().getBytes());
+    }
+
+    /**
+     * Delete Summary Contract associated with the user
+     *
+     * @param ctx Context of the transaction
      * @param args UserId
      * @return Error or Success Response
      */
-    private Response delete(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: userId
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
+    private Response delete(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        // remove the index entries of all RRCs referenced by the Summary Contract
+        for (String rrcRef : getStore(stub).delete(stub, args.get(0))) {
+            stub.delState(getIndexKey(stub, rrcRef));
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Deleted Summary Contract for UserID %s", args.get(0)));
         }
-        stub.delState(args.get(0));
-        LOG.info(String.format("Deleted Summary Contract for UserID %s", args.get(0)));
         return newSuccessResponse("Delete Success");
     }
 
     /**
      * Delete reference to user's RRC with a specified provider
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args RRC Reference
      * @return Error or Success Response
      */
-    private Response deleteReference(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: rrcRef
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
-        }
+    private Response deleteReference(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
         String rrcRef = args.get(0);
         String userId = getUserId(stub, rrcRef);
         if (userId == null) {
             return newErrorResponse(String.format("RRC ref %s is not associated with any Summary Contract", rrcRef));
         }
-        SCInstance sc = JSONParser.getFromJSON(stub.getStringState(userId));
-        sc.removeReference(rrcRef);
-        stub.putStringState(userId, JSONParser.getJSON(sc));
-        LOG.info(String.format("Deleted reference to RRC %s for UserID %s", rrcRef, userId));
+        getStore(stub).removeReference(stub, userId, rrcRef);
+        stub.delState(getIndexKey(stub, rrcRef));
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Deleted reference to RRC %s for UserID %s", rrcRef, userId));
+        }
         return newSuccessResponse("Delete Success");
     }
 
     /**
      * Query for SummaryContractInstance object
      *
-     * @param stub Interface between chaincode and peer
+     * @param ctx Context of the transaction
      * @param args UserId
      * @return Error or Success Response with JSON representation
      */
-    private Response query(ChaincodeStub stub, List<String> args) {
-        if (args.size() != 1) {
-            // expecting 1 argument: userId
-            return newErrorResponse("Incorrect number of arguments. Expecting 1");
+    private Response query(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        SCInstance sc = getStore(stub).get(stub, args.get(0));
+        if (sc == null) {
+            // if user has no summary contract
+            return newErrorResponse(String.format("Summary Contract for UserID %s does not exist", args.get(0)));
+        }
+        return newSuccessResponse("Query Success", JSONParser.getJSON(sc).getBytes());
+    }
+
+    /**
+     * Query for one page of the RRC references of the user's Summary Contract.
+     * Pages are ordered by RRC reference; the bookmark in the response is
+     * opaque and empty on the last page. Only in COMPOSITE mode are just the
+     * references of the page read. In DOCUMENT mode every page reads the whole
+     * Summary Contract, so paging only bounds the size of the response.
+     *
+     * @param ctx Context of the transaction
+     * @param args UserId, page size and bookmark (empty string for the first
+     * page)
+     * @return Error or Success Response with JSON representation of the page
+     */
+    private Response queryPage(TransactionContext ctx, List<String> args) {
+        ChaincodeStub stub = ctx.getStub();
+        int pageSize = Integer.parseInt(args.get(1));
+        Response invalid = RangeBatch.checkPageSize(pageSize);
+        if (invalid != null) {
+            return invalid;
         }
-        if ((stub.getStringState(args.get(0))) == null || (stub.getStringState(args.get(0)).equalsIgnoreCase(""))) {
+        ReferencePage page = getStore(stub).getPage(stub, args.get(0), pageSize, args.get(2));
+        if ((page.getReferences().isEmpty()) && (args.get(2).isEmpty())) {
             // if user has no summary contract
             return newErrorResponse(String.format("Summary Contract for UserID %s does not exist", args.get(0)));
         }
-        return newSuccessResponse("Query Success", stub.getStringState(args.get(0)).getBytes());
+        return newSuccessResponse("Query Success", JSONParser.getJSON(page).getBytes());
+    }
+
+    /**
+     * Warm up the codecs and the dispatch table before accepting transactions
+     *
+     * @param rounds Number of round trips
+     */
+    public void warmUp(int rounds) {
+        DocumentReferenceStore.CODEC.warmUp(new SCInstance("warmup", "warmup", Instant.EPOCH.toString()), rounds);
+        dispatcher.warmUp(rounds);
     }
 
     /**
      * Main method
      *
      * @param args Arguments
+     * @throws IOException if the chaincode server cannot be started
+     * @throws InterruptedException if interrupted while serving
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         LOG.info("SummaryContract main method called");
-        new SummaryContract().start(args);
+        SummaryContract chaincode = new SummaryContract();
+        ChaincodeLauncher.launch(chaincode, chaincode::warmUp, args);
     }
 }
@@ -3,6 +3,9 @@
 #Author: karthik
 
 #Installs chaincode on peers and instantiates it on channel
+#Chaincodes are installed from the prebuilt jars in chaincode/dist (run package-chaincode.sh on the host first)
+#To deploy the three contracts as one chaincode, install chaincode/dist/CombinedContract under the name CombinedContract instead
+#and instantiate it with '{"Args":["IncentiveMechanism:init", "hospital1", "pharmacy1", "practitioner1", "120", "80", "50"]}'
 
 export CHANNEL_NAME=providerschannel
 export CHAINCODE1_FOLDER_NAME=IncentiveMechanism
@@ -20,9 +23,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 export PEER_NAME=peer1
 export ORG_NAME=hospital1
@@ -31,9 +34,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 export PEER_NAME=peer0
 export ORG_NAME=pharmacy1
@@ -42,9 +45,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 export PEER_NAME=peer1
 export ORG_NAME=pharmacy1
@@ -53,9 +56,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 export PEER_NAME=peer0
 export ORG_NAME=practitioner1
@@ -64,9 +67,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 export PEER_NAME=peer1
 export ORG_NAME=practitioner1
@@ -75,9 +78,9 @@ CORE_PEER_MSPCONFIGPATH=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypt
 CORE_PEER_ADDRESS=$PEER_NAME.$ORG_NAME.example.com:7051
 CORE_PEER_LOCALMSPID=$MSPID
 CORE_PEER_TLS_ROOTCERT_FILE=/opt/gopath/src/github.com/hyperledger/fabric/peer/crypto/peerOrganizations/$ORG_NAME.example.com/peers/$PEER_NAME.$ORG_NAME.example.com/tls/ca.crt
-peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE1_FOLDER_NAME
-peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE2_FOLDER_NAME
-peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/$CHAINCODE3_FOLDER_NAME
+peer chaincode install -n $CHAINCODE1_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE1_FOLDER_NAME
+peer chaincode install -n $CHAINCODE2_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE2_FOLDER_NAME
+peer chaincode install -n $CHAINCODE3_NAME -v 1.0 -l java -p /opt/gopath/src/github.com/chaincode/dist/$CHAINCODE3_FOLDER_NAME
 
 echo "Install chaincode on peers:Done"
 echo "Instantiate chaincode on channel:Start"
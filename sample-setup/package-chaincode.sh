@@ -0,0 +1,19 @@
+#!/bin/bash
+#SPDX-License-Identifier: Apache-2.0
+#Author: karthik
+
+#Builds the chaincode jars on the host and lays them out for installation in chaincode/dist
+#The contracts share the ContractRuntime module and the parent POM in chaincode/, which a peer building a single
+#chaincode folder cannot resolve, so each chaincode is installed as a prebuilt chaincode.jar instead of its sources
+
+set -e
+CHAINCODES="SummaryContract RecordRelationshipContract IncentiveMechanism CombinedContract"
+mvn -B -q -f chaincode/pom.xml -pl SummaryContract,RecordRelationshipContract,IncentiveMechanism,CombinedContract -am package
+for CHAINCODE in $CHAINCODES; do
+    rm -rf chaincode/dist/$CHAINCODE
+    mkdir -p chaincode/dist/$CHAINCODE
+    cp chaincode/$CHAINCODE/target/chaincode.jar chaincode/dist/$CHAINCODE/
+done
+#CouchDB indexes of the log entries are installed with the chaincodes that store them
+cp -r chaincode/RecordRelationshipContract/META-INF chaincode/dist/RecordRelationshipContract/
+cp -r chaincode/RecordRelationshipContract/META-INF chaincode/dist/CombinedContract/
@@ -11,6 +11,9 @@ export COMPOSE_PROJECT_NAME=ehrnetwork
 export HOSPITAL1_CA_KEYFILE=`find crypto-config/peerOrganizations/hospital1.example.com/ca/*_sk -printf "%f\n"`
 export PHARMACY1_CA_KEYFILE=`find crypto-config/peerOrganizations/pharmacy1.example.com/ca/*_sk -printf "%f\n"`
 export PRACTITIONER1_CA_KEYFILE=`find crypto-config/peerOrganizations/practitioner1.example.com/ca/*_sk -printf "%f\n"`
+echo "Package chaincode:Start"
+sh ./sample-setup/package-chaincode.sh #build chaincode jars (requires Maven)
+echo "Package chaincode:Done"
 echo "Creating docker containers:Start"
 docker-compose -f compose-with-raft.yaml -f compose-with-couchdb.yaml up -d #create docker containers
 echo "Creating docker containers:Done"